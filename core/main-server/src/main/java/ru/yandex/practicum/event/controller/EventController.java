@@ -6,6 +6,7 @@ import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.event.dto.EventFullDto;
 import ru.yandex.practicum.event.dto.EventShortDto;
@@ -24,23 +25,23 @@ public class EventController {
     final EventService eventService;
 
     @GetMapping("/{id}")
-    public EventFullDto getEventById(@PathVariable Long id,
-                                     HttpServletRequest request) throws NotFoundException {
-        return eventService.getEventById(id, request.getRequestURI(), request.getRemoteAddr());
+    public ResponseEntity<EventFullDto> getEventById(@PathVariable Long id,
+                                                     HttpServletRequest request) throws NotFoundException {
+        return EventResponses.withStats(eventService.getEventById(id, request.getRequestURI()));
     }
 
     @GetMapping
-    public List<EventShortDto> getFilteredEvents(@RequestParam(required = false) String text,
-                                                 @RequestParam(required = false) List<Long> categories,
-                                                 @RequestParam(required = false) Boolean paid,
-                                                 @RequestParam(required = false) String rangeStart,
-                                                 @RequestParam(required = false) String rangeEnd,
-                                                 @RequestParam(required = false, defaultValue = "false") Boolean available,
-                                                 @RequestParam(required = false, defaultValue = "EVENT_DATE") String sort,
-                                                 @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
-                                                 @Positive @RequestParam(defaultValue = "10") Integer count,
-                                                 HttpServletRequest request) throws ValidationException {
-        return eventService.getFilteredEvents(text, categories, paid, rangeStart, rangeEnd, available, sort, from, count,
-                request.getRequestURI(), request.getRemoteAddr());
+    public ResponseEntity<List<EventShortDto>> getFilteredEvents(@RequestParam(required = false) String text,
+                                                                 @RequestParam(required = false) List<Long> categories,
+                                                                 @RequestParam(required = false) Boolean paid,
+                                                                 @RequestParam(required = false) String rangeStart,
+                                                                 @RequestParam(required = false) String rangeEnd,
+                                                                 @RequestParam(required = false, defaultValue = "false") Boolean available,
+                                                                 @RequestParam(required = false, defaultValue = "EVENT_DATE") String sort,
+                                                                 @PositiveOrZero @RequestParam(defaultValue = "0") Integer from,
+                                                                 @Positive @RequestParam(defaultValue = "10") Integer count,
+                                                                 @RequestParam(required = false) String cursor) throws ValidationException {
+        return EventResponses.page(
+                eventService.getFilteredEvents(text, categories, paid, rangeStart, rangeEnd, available, sort, from, count, cursor));
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.event.controller;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.StatsResult;
+
+import java.util.List;
+
+/**
+ * Ответы с событиями: курсор следующей страницы передается в заголовке {@link #NEXT_CURSOR},
+ * неполные просмотры из stats-server отмечаются заголовком {@link #STATS_DEGRADED}.
+ */
+@UtilityClass
+class EventResponses {
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+    static final String STATS_DEGRADED = "X-Stats-Degraded";
+
+    static <T> ResponseEntity<List<T>> page(EventPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR, page.nextCursor());
+        }
+        if (page.degraded()) {
+            response.header(STATS_DEGRADED, "true");
+        }
+        return response.body(page.events());
+    }
+
+    static <T> ResponseEntity<T> withStats(StatsResult<T> result) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.degraded()) {
+            response.header(STATS_DEGRADED, "true");
+        }
+        return response.body(result.body());
+    }
+}
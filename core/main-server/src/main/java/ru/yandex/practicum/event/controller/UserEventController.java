@@ -5,6 +5,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.event.dto.EventFullDto;
 import ru.yandex.practicum.event.dto.EventShortDto;
@@ -27,10 +28,11 @@ public class UserEventController {
     final UserEventService eventService;
 
     @GetMapping
-    public List<EventShortDto> getUserEvents(@PathVariable Long userId,
-                                             @RequestParam(defaultValue = "0") Integer from,
-                                             @RequestParam(defaultValue = "10") Integer count) throws NotFoundException {
-        return eventService.getUserEvents(userId, from, count);
+    public ResponseEntity<List<EventShortDto>> getUserEvents(@PathVariable Long userId,
+                                                             @RequestParam(defaultValue = "0") Integer from,
+                                                             @RequestParam(defaultValue = "10") Integer count,
+                                                             @RequestParam(required = false) String cursor) throws NotFoundException, ValidationException {
+        return EventResponses.page(eventService.getUserEvents(userId, from, count, cursor));
     }
 
     @PostMapping
@@ -41,15 +43,15 @@ public class UserEventController {
     }
 
     @GetMapping("/{eventId}")
-    public EventFullDto getEventById(@PathVariable Long userId,
-                                     @PathVariable Long eventId) throws ValidationException, NotFoundException {
-        return eventService.getEventById(userId, eventId);
+    public ResponseEntity<EventFullDto> getEventById(@PathVariable Long userId,
+                                                     @PathVariable Long eventId) throws ValidationException, NotFoundException {
+        return EventResponses.withStats(eventService.getEventById(userId, eventId));
     }
 
     @PatchMapping("/{eventId}")
-    public EventFullDto updateEvent(@PathVariable Long userId,
-                                    @PathVariable Long eventId,
-                                    @Valid @RequestBody UpdateEventUserRequest event) throws ValidationException, ConflictException, WrongDataException, NotFoundException {
-        return eventService.updateEvent(userId, eventId, event);
+    public ResponseEntity<EventFullDto> updateEvent(@PathVariable Long userId,
+                                                    @PathVariable Long eventId,
+                                                    @Valid @RequestBody UpdateEventUserRequest event) throws ValidationException, ConflictException, WrongDataException, NotFoundException {
+        return EventResponses.withStats(eventService.updateEvent(userId, eventId, event));
     }
 }
@@ -15,12 +15,12 @@ import static ru.yandex.practicum.utils.JsonFormatPattern.JSON_FORMAT_PATTERN_FO
 @UtilityClass
 public class EventMapper {
 
-    public static EventFullDto mapEventToFullDto(Event event, Long confirmed) {
+    public static EventFullDto mapEventToFullDto(Event event) {
         EventFullDto eventFullDto = new EventFullDto();
         eventFullDto.setId(event.getId());
         eventFullDto.setAnnotation(event.getAnnotation());
         eventFullDto.setCategory(CategoryMapper.mapCategory(event.getCategory()));
-        eventFullDto.setConfirmedRequests(confirmed);
+        eventFullDto.setConfirmedRequests(confirmedRequests(event));
         eventFullDto.setCreatedOn(getLocalDateTime(event.getCreatedOn()));
         eventFullDto.setDescription(event.getDescription());
         eventFullDto.setEventDate(getLocalDateTime(event.getEventDate()));
@@ -44,6 +44,7 @@ public class EventMapper {
         eventShortDto.setId(event.getId());
         eventShortDto.setPaid(event.getPaid());
         eventShortDto.setEventDate(event.getEventDate());
+        eventShortDto.setConfirmedRequests(confirmedRequests(event));
         return eventShortDto;
     }
 
@@ -61,6 +62,13 @@ public class EventMapper {
         return event;
     }
 
+    /**
+     * Только что сохранённое событие ещё не перечитано из БД, и значения по умолчанию у него нет.
+     */
+    static Long confirmedRequests(Event event) {
+        return event.getConfirmedRequests() == null ? 0L : event.getConfirmedRequests();
+    }
+
     static String getLocalDateTime(LocalDateTime time) {
         if (time == null) {
             return null;
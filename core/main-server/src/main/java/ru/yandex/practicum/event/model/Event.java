@@ -63,6 +63,18 @@ public class Event {
     @Column(nullable = false)
     String title;
 
+    /**
+     * Копия просмотров из stats-server для сортировки в БД, записывается только EventViewsSync.
+     */
+    @Column(insertable = false, updatable = false)
+    Long views;
+
+    /**
+     * Число занятых мест, меняется только запросами EventRepository#addConfirmedRequests.
+     */
+    @Column(name = "confirmed_requests", insertable = false, updatable = false)
+    Long confirmedRequests;
+
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "events_compilations",
             joinColumns = @JoinColumn(name = "compilation"),
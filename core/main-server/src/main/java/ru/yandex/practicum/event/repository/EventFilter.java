@@ -0,0 +1,26 @@
+package ru.yandex.practicum.event.repository;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import ru.yandex.practicum.event.model.EventState;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Условия поиска событий; null, пустой список или пустой текст означают, что условие не задано.
+ */
+@Getter
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class EventFilter {
+    String text;
+    List<Long> users;
+    List<EventState> states;
+    List<Long> categories;
+    Boolean paid;
+    LocalDateTime rangeStart;
+    LocalDateTime rangeEnd;
+}
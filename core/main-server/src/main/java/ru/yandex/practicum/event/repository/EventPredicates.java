@@ -0,0 +1,89 @@
+package ru.yandex.practicum.event.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import lombok.experimental.UtilityClass;
+import ru.yandex.practicum.event.model.QEvent;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Условия и порядки поиска событий для {@link EventSearchRepository}.
+ * <p>
+ * В запрос попадают только заданные условия фильтра, без {@code :param IS NULL OR ...} и COALESCE:
+ * у каждого набора фильтров свой текст запроса и свой план, в котором PostgreSQL может использовать индексы.
+ */
+@UtilityClass
+public class EventPredicates {
+    private static final QEvent event = QEvent.event;
+
+    /**
+     * По дате события от поздних к ранним; id делает порядок однозначным для {@link #after}.
+     */
+    public static final OrderSpecifier<?>[] BY_EVENT_DATE = {event.eventDate.desc(), event.id.desc()};
+
+    /**
+     * По возрастанию events.views, при равных просмотрах — от поздних событий к ранним.
+     */
+    public static final OrderSpecifier<?>[] BY_VIEWS = {event.views.asc(), event.eventDate.desc(), event.id.desc()};
+
+    public static Predicate of(EventFilter filter) {
+        BooleanBuilder where = new BooleanBuilder();
+        if (filter.getText() != null && !filter.getText().isBlank()) {
+            where.and(matches(filter.getText().strip()));
+        }
+        if (isSet(filter.getUsers())) {
+            where.and(event.initiator.id.in(filter.getUsers()));
+        }
+        if (isSet(filter.getStates())) {
+            where.and(event.state.in(filter.getStates()));
+        }
+        if (isSet(filter.getCategories())) {
+            where.and(event.category.id.in(filter.getCategories()));
+        }
+        if (filter.getPaid() != null) {
+            where.and(event.paid.eq(filter.getPaid()));
+        }
+        if (filter.getRangeStart() != null) {
+            where.and(event.eventDate.goe(filter.getRangeStart()));
+        }
+        if (filter.getRangeEnd() != null) {
+            where.and(event.eventDate.loe(filter.getRangeEnd()));
+        }
+        return where;
+    }
+
+    /**
+     * События после позиции (eventDate, id) в порядке {@link #BY_EVENT_DATE}: сравнение строк, которое
+     * PostgreSQL выполняет по индексу (event_date, id) без чтения предыдущих страниц.
+     */
+    public static Predicate after(Predicate where, LocalDateTime eventDate, long id) {
+        return new BooleanBuilder(where).and(Expressions.booleanTemplate("({0}, {1}) < ({2}, {3})",
+                event.eventDate, event.id, Expressions.constant(eventDate), Expressions.constant(id)));
+    }
+
+    /**
+     * По релевантности тексту поиска, при равной релевантности — от поздних событий к ранним.
+     */
+    public static OrderSpecifier<?>[] byRelevance(String text) {
+        return new OrderSpecifier<?>[]{
+                Expressions.numberTemplate(Float.class, EventSearchFunctions.RANK + "({0}, {1})",
+                        event.id, Expressions.constant(text.strip())).desc(),
+                event.eventDate.desc(),
+                event.id.desc()
+        };
+    }
+
+    private static BooleanExpression matches(String text) {
+        return Expressions.booleanTemplate(EventSearchFunctions.MATCH + "({0}, {1}) = true",
+                event.id, Expressions.constant(text));
+    }
+
+    private static boolean isSet(Collection<?> values) {
+        return values != null && !values.isEmpty();
+    }
+}
@@ -1,17 +1,20 @@
 package ru.yandex.practicum.event.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import ru.yandex.practicum.event.model.Event;
-import ru.yandex.practicum.event.model.EventState;
 import ru.yandex.practicum.user.model.User;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
-public interface EventRepository extends JpaRepository<Event, Long> {
+public interface EventRepository extends JpaRepository<Event, Long>, EventSearchRepository {
 
     List<Event> findAllByIdIn(List<Long> ids);
 
@@ -21,62 +24,35 @@ public interface EventRepository extends JpaRepository<Event, Long> {
 
     List<Event> findAllByInitiator(User user, Pageable page);
 
-    @Query(value = "SELECT e FROM Event e " +
-            "WHERE e.initiator IN :users " +
-            "AND e.state IN :states " +
-            "AND e.category IN :categories " +
-            "AND e.eventDate < :rangeStart " +
-            "LIMIT :limitSize", nativeQuery = true)
-    List<Event> findByParametersWithoutEnd(List<Long> users, List<String> states, List<Long> categories, String rangeStart, Integer limitSize);
-
-    @Query(value = "SELECT e FROM Event e " +
-            "WHERE e.initiator IN :users " +
-            "AND e.state IN :states " +
-            "AND e.category IN :categories " +
-            "AND e.eventDate < :rangeStart " +
-            "AND e.eventDate > :rangeEnd " +
-            "LIMIT :limitSize", nativeQuery = true)
-    List<Event> findByParametersWithEnd(List<Long> users, List<String> states, List<Long> categories, String rangeStart, String rangeEnd, Integer limitSize);
-
-    @Query("SELECT e FROM Event e WHERE e.initiator.id IN :users " +
-            "AND e.state in :states " +
-            "AND e.category.id in :categories " +
-            "AND e.eventDate between :rangeStart AND :rangeEnd ")
-    List<Event> findAllEventsWithDates(List<Long> users,
-                                       List<EventState> states,
-                                       List<Long> categories,
-                                       LocalDateTime rangeStart,
-                                       LocalDateTime rangeEnd,
-                                       Pageable page);
-
-    @Query("SELECT e FROM Event e " +
-            "WHERE e.category.id in :categories " +
-            "AND e.state = :state")
-    List<Event> findAllByCategoryIdPageable(List<Long> categories, EventState state, Pageable page);
-
-    @Query("SELECT e FROM Event e " +
-            "WHERE (lower(e.annotation) LIKE :text " +
-            "OR lower(e.description) LIKE :text) " +
-            "AND e.state = :state")
-    List<Event> findEventsByText(String text, EventState state, Pageable page);
-
-    @Query("SELECT e FROM Event e " +
-            "WHERE (lower(e.annotation) LIKE :text " +
-            "OR lower(e.description) LIKE :text) " +
-            "AND e.eventDate >= :startDate " +
-            "AND e.eventDate <= :endDate " +
-            "AND e.state = :state")
-    List<Event> findAllByTextAndDateRange(String text, LocalDateTime startDate, LocalDateTime endDate, EventState state, Pageable page);
-
-    @Query("SELECT DISTINCT e FROM Event e " +
-            "WHERE (e.annotation LIKE COALESCE(:text, e.annotation) OR e.description LIKE COALESCE(:text, e.description)) " +
-            "AND (:categories IS NULL OR e.category.id IN :categories) " +
-            "AND (:paid IS NULL OR e.paid = :paid) " +
-            "AND e.eventDate >= COALESCE(:rangeStart, e.eventDate) " +
-            "AND e.eventDate <= COALESCE(:rangeEnd, e.eventDate) " +
-            "AND e.state = :state " +
-            "ORDER BY e.eventDate DESC")
-    List<Event> findEventList(String text, List<Long> categories, Boolean paid, LocalDateTime rangeStart, LocalDateTime rangeEnd, EventState state);
+    /**
+     * Страница событий инициатора после курсора EventCursor: (event_date, id) < курсора
+     * по индексу events_initiator_event_date_id_idx, без пропуска предыдущих строк.
+     */
+    @Query(value = "SELECT e.* FROM events e " +
+            "WHERE e.initiator_id = :initiatorId " +
+            "AND (e.event_date, e.id) < (:cursorDate, :cursorId) " +
+            "ORDER BY e.event_date DESC, e.id DESC " +
+            "LIMIT :size", nativeQuery = true)
+    List<Event> findInitiatorPageAfter(long initiatorId, LocalDateTime cursorDate, long cursorId, int size);
 
     boolean existsByCategoryId(Long catId);
+
+    /**
+     * Событие с блокировкой строки до конца транзакции (SELECT ... FOR UPDATE). Заявки одного события меняются
+     * по очереди, и каждая транзакция видит статусы, записанные предыдущей: разница мест считается по ним.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Event e WHERE e.id = :eventId")
+    Optional<Event> findByIdForUpdate(long eventId);
+
+    /**
+     * Изменяет число занятых мест на delta одним UPDATE: проверка лимита и запись атомарны, две параллельные
+     * заявки не займут последнее место обе. Увеличение сверх participant_limit не выполняется — возвращается 0.
+     */
+    @Modifying
+    @Query(value = "UPDATE events SET confirmed_requests = confirmed_requests + :delta " +
+            "WHERE id = :eventId " +
+            "AND (:delta <= 0 OR participant_limit = 0 OR confirmed_requests + :delta <= participant_limit)",
+            nativeQuery = true)
+    int addConfirmedRequests(long eventId, long delta);
 }
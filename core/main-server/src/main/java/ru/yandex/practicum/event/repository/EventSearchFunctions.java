@@ -0,0 +1,91 @@
+package ru.yandex.practicum.event.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.query.ReturnableType;
+import org.hibernate.query.sqm.function.AbstractSqmSelfRenderingFunctionDescriptor;
+import org.hibernate.query.sqm.produce.function.FunctionParameterType;
+import org.hibernate.query.sqm.produce.function.StandardArgumentsValidators;
+import org.hibernate.query.sqm.produce.function.StandardFunctionArgumentTypeResolvers;
+import org.hibernate.query.sqm.produce.function.StandardFunctionReturnTypeResolvers;
+import org.hibernate.sql.ast.SqlAstTranslator;
+import org.hibernate.sql.ast.spi.SqlAppender;
+import org.hibernate.sql.ast.tree.SqlAstNode;
+import org.hibernate.sql.ast.tree.expression.ColumnReference;
+import org.hibernate.sql.ast.tree.expression.Expression;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.spi.TypeConfiguration;
+
+import java.util.List;
+
+/**
+ * Функции полнотекстового поиска PostgreSQL для JPQL и Querydsl, в которых нет оператора @@.
+ * Регистрируется через META-INF/services/org.hibernate.boot.model.FunctionContributor.
+ * <ul>
+ *     <li>{@value #MATCH}(event.id, text) — событие подходит под текст поиска, по индексу events_search_vector_idx;</li>
+ *     <li>{@value #RANK}(event.id, text) — релевантность события тексту поиска.</li>
+ * </ul>
+ * Столбец events.search_vector в сущности не отображается: Hibernate не знает тип tsvector и читал бы
+ * его с каждым событием. Первый аргумент — любой столбец events, обычно id; функция берет из него псевдоним
+ * таблицы и обращается к search_vector сама. Текст разбирается websearch_to_tsquery: слова, "фразы",
+ * or и -исключение.
+ */
+public class EventSearchFunctions implements FunctionContributor {
+    public static final String MATCH = "event_text_match";
+    public static final String RANK = "event_text_rank";
+
+    private static final String SEARCH_VECTOR = "search_vector";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        TypeConfiguration typeConfiguration = functionContributions.getTypeConfiguration();
+        functionContributions.getFunctionRegistry().register(MATCH, new SearchVectorFunction(MATCH,
+                "(", " @@ websearch_to_tsquery('russian', ", "))",
+                typeConfiguration, typeConfiguration.getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN)));
+        functionContributions.getFunctionRegistry().register(RANK, new SearchVectorFunction(RANK,
+                "ts_rank_cd(", ", websearch_to_tsquery('russian', ", "))",
+                typeConfiguration, typeConfiguration.getBasicTypeRegistry().resolve(StandardBasicTypes.FLOAT)));
+    }
+
+    /**
+     * prefix, search_vector таблицы первого аргумента, infix, текст поиска, suffix.
+     */
+    private static class SearchVectorFunction extends AbstractSqmSelfRenderingFunctionDescriptor {
+        private final String prefix;
+        private final String infix;
+        private final String suffix;
+
+        SearchVectorFunction(String name, String prefix, String infix, String suffix,
+                             TypeConfiguration typeConfiguration, BasicType<?> returnType) {
+            super(name,
+                    StandardArgumentsValidators.exactly(2),
+                    StandardFunctionReturnTypeResolvers.invariant(returnType),
+                    StandardFunctionArgumentTypeResolvers.invariant(typeConfiguration,
+                            FunctionParameterType.ANY, FunctionParameterType.STRING));
+            this.prefix = prefix;
+            this.infix = infix;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public void render(SqlAppender sqlAppender, List<? extends SqlAstNode> sqlAstArguments,
+                           ReturnableType<?> returnType, SqlAstTranslator<?> walker) {
+            ColumnReference column = sqlAstArguments.getFirst() instanceof Expression expression
+                    ? expression.getColumnReference()
+                    : null;
+            if (column == null) {
+                throw new IllegalArgumentException(getName() + " ожидает первым аргументом столбец events, например event.id");
+            }
+            sqlAppender.appendSql(prefix);
+            if (column.getQualifier() != null) {
+                sqlAppender.appendSql(column.getQualifier());
+                sqlAppender.appendSql('.');
+            }
+            sqlAppender.appendSql(SEARCH_VECTOR);
+            sqlAppender.appendSql(infix);
+            sqlAstArguments.get(1).accept(walker);
+            sqlAppender.appendSql(suffix);
+        }
+    }
+}
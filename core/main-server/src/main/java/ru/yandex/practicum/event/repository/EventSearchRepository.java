@@ -0,0 +1,18 @@
+package ru.yandex.practicum.event.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import ru.yandex.practicum.event.model.Event;
+
+import java.util.List;
+
+/**
+ * Поиск событий по условиям {@link EventPredicates}; подключается к {@link EventRepository}.
+ */
+public interface EventSearchRepository {
+
+    /**
+     * Страница событий: offset строк пропускается, возвращается не больше limit.
+     */
+    List<Event> search(Predicate where, long offset, int limit, OrderSpecifier<?>... order);
+}
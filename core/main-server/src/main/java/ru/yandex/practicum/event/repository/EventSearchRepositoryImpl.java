@@ -0,0 +1,30 @@
+package ru.yandex.practicum.event.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import ru.yandex.practicum.event.model.Event;
+import ru.yandex.practicum.event.model.QEvent;
+
+import java.util.List;
+
+public class EventSearchRepositoryImpl implements EventSearchRepository {
+    private final JPAQueryFactory queryFactory;
+
+    public EventSearchRepositoryImpl(EntityManager entityManager) {
+        // JPQLTemplates вместо HQLTemplates по умолчанию: шаблоны Querydsl для Hibernate 5 расходятся с Hibernate 6
+        this.queryFactory = new JPAQueryFactory(JPQLTemplates.DEFAULT, entityManager);
+    }
+
+    @Override
+    public List<Event> search(Predicate where, long offset, int limit, OrderSpecifier<?>... order) {
+        return queryFactory.selectFrom(QEvent.event)
+                .where(where)
+                .orderBy(order)
+                .offset(offset)
+                .limit(limit)
+                .fetch();
+    }
+}
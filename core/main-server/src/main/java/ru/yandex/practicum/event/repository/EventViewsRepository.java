@@ -0,0 +1,111 @@
+package ru.yandex.practicum.event.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Столбец events.views — копия просмотров из stats-server для сортировки GET /events?sort=VIEWS в БД.
+ * В {@link ru.yandex.practicum.event.model.Event} отображается только для чтения, чтобы сохранение события не затирало его.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventViewsRepository {
+    /**
+     * Ключ сессионной advisory-блокировки синхронизации: "evsync" в ASCII.
+     */
+    private static final long SYNC_LOCK_KEY = 0x65767379_6e63L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Выполняет task, если сессионную advisory-блокировку синхронизации не держит другой экземпляр.
+     * Блокировка держится на отдельном соединении до конца task и снимается при его закрытии,
+     * даже если экземпляр упал.
+     *
+     * @return false, если синхронизацию уже выполняет другой экземпляр
+     */
+    public boolean runExclusively(Runnable task) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(?)")) {
+                return false;
+            }
+            try {
+                task.run();
+                return true;
+            } finally {
+                advisoryLock(connection, "SELECT pg_advisory_unlock(?)");
+            }
+        }));
+    }
+
+    /**
+     * Время создания опубликованных событий с id больше afterId, по возрастанию id.
+     */
+    public Map<Long, LocalDateTime> findPublishedAfter(long afterId, int limit) {
+        Map<Long, LocalDateTime> createdOn = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, created_on FROM events " +
+                        "WHERE state = 'PUBLISHED' AND created_on IS NOT NULL AND id > ? " +
+                        "ORDER BY id LIMIT ?",
+                rs -> {
+                    createdOn.put(rs.getLong("id"), rs.getTimestamp("created_on").toLocalDateTime());
+                },
+                afterId, limit);
+        return createdOn;
+    }
+
+    /**
+     * Время создания тех из событий ids, что опубликованы.
+     */
+    public Map<Long, LocalDateTime> findPublished(Collection<Long> ids) {
+        Map<Long, LocalDateTime> createdOn = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return createdOn;
+        }
+        jdbcTemplate.query("SELECT id, created_on FROM events " +
+                        "WHERE state = 'PUBLISHED' AND created_on IS NOT NULL " +
+                        "AND id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") ORDER BY id",
+                rs -> {
+                    createdOn.put(rs.getLong("id"), rs.getTimestamp("created_on").toLocalDateTime());
+                },
+                ids.toArray());
+        return createdOn;
+    }
+
+    /**
+     * Записывает просмотры одним пакетом; строки с тем же значением не переписываются.
+     *
+     * @return число измененных событий
+     */
+    public int updateViews(Map<Long, Long> views) {
+        List<Object[]> args = views.entrySet().stream()
+                .map(e -> new Object[]{e.getValue(), e.getKey(), e.getValue()})
+                .toList();
+        int updated = 0;
+        for (int rows : jdbcTemplate.batchUpdate("UPDATE events SET views = ? WHERE id = ? AND views <> ?", args)) {
+            updated += Math.max(rows, 0);
+        }
+        return updated;
+    }
+
+    private static boolean advisoryLock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, SYNC_LOCK_KEY);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
@@ -6,14 +6,16 @@ import ru.yandex.practicum.exception.ConflictException;
 import ru.yandex.practicum.exception.NotFoundException;
 import ru.yandex.practicum.exception.ValidationException;
 import ru.yandex.practicum.exception.WrongDataException;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.StatsResult;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 public interface AdminEventService {
 
-    List<EventFullDto> getEvents(List<Long> users, List<String> states, List<Long> categories, LocalDateTime rangeStart, LocalDateTime rangeEnd, Integer from, Integer size) throws ValidationException;
+    EventPage<EventFullDto> getEvents(List<Long> users, List<String> states, List<Long> categories, LocalDateTime rangeStart, LocalDateTime rangeEnd, Integer from, Integer size, String cursor) throws ValidationException;
 
-    EventFullDto updateEvent(Long eventId, UpdateEventAdminRequest event) throws ConflictException, ValidationException, NotFoundException, WrongDataException;
+    StatsResult<EventFullDto> updateEvent(Long eventId, UpdateEventAdminRequest event) throws ConflictException, ValidationException, NotFoundException, WrongDataException;
 
 }
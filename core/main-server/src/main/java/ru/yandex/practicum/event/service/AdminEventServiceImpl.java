@@ -1,28 +1,28 @@
 package ru.yandex.practicum.event.service;
 
+import com.querydsl.core.types.Predicate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.category.model.Category;
 import ru.yandex.practicum.category.repository.CategoryRepository;
-import ru.yandex.practicum.client.StatsClientImpl;
-import ru.yandex.practicum.dto.StatsRequestParamsDto;
 import ru.yandex.practicum.event.dto.EventFullDto;
 import ru.yandex.practicum.event.dto.EventMapper;
 import ru.yandex.practicum.event.dto.UpdateEventAdminRequest;
 import ru.yandex.practicum.event.model.Event;
 import ru.yandex.practicum.event.model.EventState;
 import ru.yandex.practicum.event.model.StateAction;
+import ru.yandex.practicum.event.repository.EventFilter;
+import ru.yandex.practicum.event.repository.EventPredicates;
 import ru.yandex.practicum.event.repository.EventRepository;
 import ru.yandex.practicum.event.repository.LocationRepository;
 import ru.yandex.practicum.exception.ConflictException;
 import ru.yandex.practicum.exception.NotFoundException;
 import ru.yandex.practicum.exception.ValidationException;
 import ru.yandex.practicum.exception.WrongDataException;
-import ru.yandex.practicum.request.model.EventRequest;
-import ru.yandex.practicum.request.repository.RequestRepository;
+import ru.yandex.practicum.util.EventCursor;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.StatsResult;
 import ru.yandex.practicum.utils.JsonFormatPattern;
 
 import java.time.LocalDateTime;
@@ -35,26 +35,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AdminEventServiceImpl implements AdminEventService {
     final EventRepository eventRepository;
-    final RequestRepository requestRepository;
     final CategoryRepository categoryRepository;
     final LocationRepository locationRepository;
 
-    final StatsClientImpl statsClient;
-
-    private static StatsRequestParamsDto getStatsRequestParamsDto(LocalDateTime start, Optional<LocalDateTime> end, ArrayList<String> urls) {
-        return StatsRequestParamsDto.builder()
-                .start(start)
-                .end(end.orElse(LocalDateTime.now()))
-                .uris(urls)
-                .unique(true)
-                .build();
-    }
+    final EventViewsCache eventViewsCache;
 
     @Override
-    public List<EventFullDto> getEvents(List<Long> users, List<String> states, List<Long> categories, LocalDateTime rangeStart, LocalDateTime rangeEnd, Integer from, Integer size) throws ValidationException {
+    public EventPage<EventFullDto> getEvents(List<Long> users, List<String> states, List<Long> categories, LocalDateTime rangeStart, LocalDateTime rangeEnd, Integer from, Integer size, String cursor) throws ValidationException {
 
         List<EventFullDto> eventDtos;
-        List<EventState> eventStateList;
 
         if (rangeStart != null && rangeEnd != null) {
             if (rangeStart.isAfter(rangeEnd)) {
@@ -62,74 +51,52 @@ public class AdminEventServiceImpl implements AdminEventService {
             }
         }
 
-        if ((states == null) || (states.isEmpty())) {
-            eventStateList = Arrays.stream(EventState.values()).collect(Collectors.toList());
-        } else {
-            eventStateList = states.stream().map(EventState::valueOf).collect(Collectors.toList());
-        }
-
-        if (users == null && categories == null) {
-            List<Event> allEventsWithDates = new ArrayList<>(eventRepository.findAll(PageRequest.of(from / size, size)).getContent());
-            List<EventRequest> requestsByEventIds = requestRepository.findByEventIds(allEventsWithDates.stream()
-                    .mapToLong(Event::getId).boxed().collect(Collectors.toList()));
-            eventDtos = allEventsWithDates.stream()
-                    .map(e -> EventMapper.mapEventToFullDto(e,
-                            requestsByEventIds.stream()
-                                    .filter(r -> r.getEvent().getId().equals(e.getId()))
-                                    .count()))
-                    .toList();
+        Predicate where = EventPredicates.of(EventFilter.builder()
+                .users(users)
+                .states(states == null ? null : parseStates(states))
+                .categories(categories)
+                .rangeStart(rangeStart)
+                .rangeEnd(rangeEnd)
+                .build());
+        EventPage<Event> allEventsWithDates;
+        if (cursor != null) {
+            EventCursor after = EventCursor.decode(cursor);
+            allEventsWithDates = EventCursor.page(eventRepository.search(
+                    EventPredicates.after(where, after.eventDate(), after.id()), 0, size + 1, EventPredicates.BY_EVENT_DATE), size);
         } else {
-            List<Event> allEventsWithDates = eventRepository.findAllEventsWithDates(users,
-                    eventStateList, categories, rangeStart, rangeEnd,
-                    PageRequest.of(from / size, size, Sort.by(Sort.Direction.DESC, "e.eventDate")));
-
-            List<EventRequest> requestsByEventIds = requestRepository.findByEventIds(allEventsWithDates.stream()
-                    .mapToLong(Event::getId).boxed().collect(Collectors.toList()));
-            eventDtos = allEventsWithDates.stream()
-                    .map(e -> EventMapper.mapEventToFullDto(e,
-                            requestsByEventIds.stream()
-                                    .filter(r -> r.getEvent().getId().equals(e.getId()))
-                                    .count()))
-                    .toList();
+            allEventsWithDates = EventPage.of(eventRepository.search(where, from, size, EventPredicates.BY_EVENT_DATE));
         }
+        eventDtos = allEventsWithDates.events().stream()
+                .map(EventMapper::mapEventToFullDto)
+                .toList();
 
         if (!eventDtos.isEmpty()) {
-            HashMap<Long, Integer> eventIdsWithViewsCounter = new HashMap<>();
-            LocalDateTime startTime = LocalDateTime.parse(eventDtos.getFirst().getCreatedOn().replace(" ", "T"));
-            ArrayList<String> uris = new ArrayList<>();
-            for (EventFullDto dto : eventDtos) {
-                eventIdsWithViewsCounter.put(dto.getId(), 0);
-                uris.add("/events/" + dto.getId().toString());
-                if (startTime.isAfter(LocalDateTime.parse(dto.getCreatedOn().replace(" ", "T")))) {
-                    startTime = LocalDateTime.parse(dto.getCreatedOn().replace(" ", "T"));
-                }
-            }
-
-
-            StatsRequestParamsDto statsRequestParamsDto = getStatsRequestParamsDto(startTime, Optional.empty(), uris);
+            EventViews views = eventViewsCache.getViews(eventDtos.stream()
+                    .collect(Collectors.toMap(EventFullDto::getId,
+                            dto -> LocalDateTime.parse(dto.getCreatedOn(), JsonFormatPattern.DATE_TIME_FORMATTER),
+                            (a, b) -> a)));
+            return allEventsWithDates.with(eventDtos.stream()
+                    .peek(dto -> dto.setViews(Math.toIntExact(views.views().getOrDefault(dto.getId(), 0L))))
+                    .collect(Collectors.toList()), views.degraded());
+        } else {
+            return EventPage.of(Collections.emptyList());
+        }
+    }
 
-            var viewsCounter = statsClient.getAllStats(statsRequestParamsDto);
-            for (var statsDto : viewsCounter) {
-                String[] split = statsDto.getUri().split("/");
-                eventIdsWithViewsCounter.put(Long.parseLong(split[2]), Math.toIntExact(statsDto.getHits()));
+    private static List<EventState> parseStates(List<String> states) throws ValidationException {
+        List<EventState> parsed = new ArrayList<>(states.size());
+        for (String state : states) {
+            try {
+                parsed.add(EventState.valueOf(state));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Неизвестное состояние события: " + state);
             }
-            ArrayList<Long> longs = new ArrayList<>(eventIdsWithViewsCounter.keySet());
-            List<EventRequest> requests = requestRepository.findByEventIdsAndStatus(longs, "CONFIRMED");
-            return eventDtos.stream()
-                    .peek(dto -> dto.setConfirmedRequests(
-                            requests.stream()
-                                    .filter((request -> request.getEvent().getId().equals(dto.getId())))
-                                    .count()
-                    ))
-                    .peek(dto -> dto.setViews(eventIdsWithViewsCounter.get(dto.getId())))
-                    .collect(Collectors.toList());
-        } else {
-            return Collections.emptyList();
         }
+        return parsed;
     }
 
     @Override
-    public EventFullDto updateEvent(Long eventId, UpdateEventAdminRequest updateRequest) throws ConflictException, ValidationException, NotFoundException, WrongDataException {
+    public StatsResult<EventFullDto> updateEvent(Long eventId, UpdateEventAdminRequest updateRequest) throws ConflictException, ValidationException, NotFoundException, WrongDataException {
         log.info("Редактирование данных события и его статуса");
         Event event = eventRepository.findById(eventId).orElseThrow(
                 () -> new NotFoundException("Событие не существует " + eventId));
@@ -155,8 +122,7 @@ public class AdminEventServiceImpl implements AdminEventService {
     }
 
     EventFullDto getEventFullDto(Event event) {
-        Long confirmed = requestRepository.countByEventAndStatuses(event.getId(), List.of("CONFIRMED"));
-        return EventMapper.mapEventToFullDto(event, confirmed);
+        return EventMapper.mapEventToFullDto(event);
     }
 
     Event getEventById(Long eventId) throws NotFoundException {
@@ -214,16 +180,12 @@ public class AdminEventServiceImpl implements AdminEventService {
         log.info("Локация сохранена {}", event.getLocation().getId());
     }
 
-    EventFullDto getViewsCounter(EventFullDto eventFullDto) {
-        ArrayList<String> urls = new ArrayList<>(List.of("/events/" + eventFullDto.getId()));
+    StatsResult<EventFullDto> getViewsCounter(EventFullDto eventFullDto) {
         LocalDateTime start = LocalDateTime.parse(eventFullDto.getCreatedOn(), JsonFormatPattern.DATE_TIME_FORMATTER);
-        LocalDateTime end = LocalDateTime.now();
-
-        StatsRequestParamsDto statsRequestParamsDto = getStatsRequestParamsDto(start, Optional.of(end), urls);
 
-        Integer views = statsClient.getAllStats(statsRequestParamsDto).size();
-        eventFullDto.setViews(views);
-        return eventFullDto;
+        EventViews views = eventViewsCache.getViews(Map.of(eventFullDto.getId(), start));
+        eventFullDto.setViews(Math.toIntExact(views.views().get(eventFullDto.getId())));
+        return new StatsResult<>(eventFullDto, views.degraded());
     }
 
 }
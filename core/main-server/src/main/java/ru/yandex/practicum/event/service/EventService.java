@@ -4,21 +4,22 @@ import ru.yandex.practicum.event.dto.EventFullDto;
 import ru.yandex.practicum.event.dto.EventShortDto;
 import ru.yandex.practicum.exception.NotFoundException;
 import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.StatsResult;
 
 import java.util.List;
 
 public interface EventService {
-    EventFullDto getEventById(Long eventId, String uri, String ip) throws NotFoundException;
+    StatsResult<EventFullDto> getEventById(Long eventId, String uri) throws NotFoundException;
 
-    List<EventShortDto> getFilteredEvents(String text,
-                                          List<Long> categories,
-                                          Boolean paid,
-                                          String rangeStart,
-                                          String rangeEnd,
-                                          Boolean onlyAvailable,
-                                          String sort,
-                                          Integer from,
-                                          Integer size,
-                                          String uri,
-                                          String ip) throws ValidationException;
+    EventPage<EventShortDto> getFilteredEvents(String text,
+                                               List<Long> categories,
+                                               Boolean paid,
+                                               String rangeStart,
+                                               String rangeEnd,
+                                               Boolean onlyAvailable,
+                                               String sort,
+                                               Integer from,
+                                               Integer size,
+                                               String cursor) throws ValidationException;
 }
@@ -1,28 +1,29 @@
 package ru.yandex.practicum.event.service;
 
+import com.querydsl.core.types.Predicate;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.client.StatsClient;
-import ru.yandex.practicum.dto.StatsRequestDto;
-import ru.yandex.practicum.dto.StatsRequestParamsDto;
 import ru.yandex.practicum.event.dto.EventFullDto;
 import ru.yandex.practicum.event.dto.EventMapper;
 import ru.yandex.practicum.event.dto.EventShortDto;
 import ru.yandex.practicum.event.model.Event;
 import ru.yandex.practicum.event.model.EventState;
+import ru.yandex.practicum.event.repository.EventFilter;
+import ru.yandex.practicum.event.repository.EventPredicates;
 import ru.yandex.practicum.event.repository.EventRepository;
 import ru.yandex.practicum.exception.NotFoundException;
 import ru.yandex.practicum.exception.ValidationException;
-import ru.yandex.practicum.request.repository.RequestRepository;
+import ru.yandex.practicum.util.EventCursor;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.StatsResult;
 import ru.yandex.practicum.utils.JsonFormatPattern;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,158 +33,87 @@ import java.util.stream.Collectors;
 public class EventServiceImpl implements EventService {
 
     final EventRepository eventRepository;
-    final RequestRepository requestRepository;
 
-    final StatsClient statsClient;
-
-    private static StatsRequestParamsDto getStatsRequestParamsDto(LocalDateTime start, LocalDateTime end, List<String> urls) {
-        return StatsRequestParamsDto.builder()
-                .start(start)
-                .end(end)
-                .uris(urls)
-                .unique(true)
-                .build();
-    }
+    final EventViewsCache eventViewsCache;
 
     @Override
-    public EventFullDto getEventById(Long eventId, String uri, String ip) throws NotFoundException {
-        statsClient.postStats(new StatsRequestDto("main-server",
-                uri,
-                ip,
-                LocalDateTime.now()));
+    public StatsResult<EventFullDto> getEventById(Long eventId, String uri) throws NotFoundException {
         Event event = eventRepository.findById(eventId).orElseThrow(
                 () -> new NotFoundException("Событие с id=" + eventId + " не найдено"));
 
         if (!event.getState().equals(EventState.PUBLISHED) && !uri.toLowerCase().contains("admin")) {
             throw new NotFoundException("Такого события не существует");
         }
-        var confirmed = requestRepository.countByEventAndStatuses(event.getId(), List.of("CONFIRMED"));
-        EventFullDto eventFullDto = EventMapper.mapEventToFullDto(event, confirmed);
-
-        List<String> urls = Collections.singletonList(uri);
-        LocalDateTime start = LocalDateTime.parse(eventFullDto.getCreatedOn(), JsonFormatPattern.DATE_TIME_FORMATTER);
-        LocalDateTime end = LocalDateTime.now();
-
-        StatsRequestParamsDto statsRequestParamsDto = getStatsRequestParamsDto(start, end, urls);
-
-        var views = statsClient.getAllStats(statsRequestParamsDto).size();
-        eventFullDto.setViews(views);
-        return eventFullDto;
+        var pendingViews = getViews(List.of(event));
+        EventFullDto eventFullDto = EventMapper.mapEventToFullDto(event);
+        EventViews views = pendingViews.join();
+        eventFullDto.setViews(Math.toIntExact(views.views().getOrDefault(event.getId(), 0L)));
+        return new StatsResult<>(eventFullDto, views.degraded());
     }
 
     @Override
-    public List<EventShortDto> getFilteredEvents(String text,
-                                                 List<Long> categories,
-                                                 Boolean paid,
-                                                 String rangeStart,
-                                                 String rangeEnd,
-                                                 Boolean onlyAvailable,
-                                                 String sort,
-                                                 Integer from,
-                                                 Integer size,
-                                                 String uri,
-                                                 String ip) throws ValidationException {
-        List<Event> events;
-        LocalDateTime startDate;
-        LocalDateTime endDate;
-        boolean sortDate = sort.equals("EVENT_DATE");
-        if (sortDate) {
-            if (rangeStart == null && rangeEnd == null && categories != null) {
-                //events = eventRepository.findAllByCategoryIdPageable(categories, EventState.PUBLISHED, PageRequest.of(from / size, size, Sort.Direction.DESC));
-                events = eventRepository.findAllByCategoryIdPageable(categories, EventState.PUBLISHED,
-                        PageRequest.of(from / size, size, Sort.by(Sort.Direction.DESC, "e.eventDate")));
-            } else {
-                if (rangeStart == null) {
-                    startDate = LocalDateTime.now();
-                } else {
-                    startDate = LocalDateTime.parse(rangeStart, JsonFormatPattern.DATE_TIME_FORMATTER);
-                }
-                if (text == null) {
-                    text = "";
-                }
-                if (rangeEnd == null) {
-                    events = eventRepository.findEventsByText("%" + text.toLowerCase() + "%", EventState.PUBLISHED,
-                            PageRequest.of(from / size, size, Sort.by(Sort.Direction.DESC, "e.eventDate")));
-                } else {
-                    endDate = LocalDateTime.parse(rangeEnd, JsonFormatPattern.DATE_TIME_FORMATTER);
-                    if (startDate.isAfter(endDate)) {
-                        throw new ValidationException("Дата и время начала поиска не должна быть позже даты и времени конца поиска");
-                    } else {
-                        events = eventRepository.findAllByTextAndDateRange("%" + text.toLowerCase() + "%",
-                                startDate,
-                                endDate,
-                                EventState.PUBLISHED,
-                                PageRequest.of(from / size, size, Sort.by(Sort.Direction.DESC, "e.eventDate")));
-                    }
-                }
-            }
-        } else {
-            if (rangeStart == null) {
-                startDate = LocalDateTime.now();
-            } else {
-                startDate = LocalDateTime.parse(rangeStart, JsonFormatPattern.DATE_TIME_FORMATTER);
-            }
-            if (rangeEnd == null) {
-                endDate = null;
-            } else {
-                endDate = LocalDateTime.parse(rangeEnd, JsonFormatPattern.DATE_TIME_FORMATTER);
-            }
-            if (rangeStart != null && rangeEnd != null) {
-                if (startDate.isAfter(endDate)) {
-                    throw new ValidationException("Дата и время начала поиска не должна быть позже даты и времени конца поиска");
-                }
-            }
-            events = eventRepository.findEventList(text, categories, paid, startDate, endDate, EventState.PUBLISHED);
+    public EventPage<EventShortDto> getFilteredEvents(String text,
+                                                      List<Long> categories,
+                                                      Boolean paid,
+                                                      String rangeStart,
+                                                      String rangeEnd,
+                                                      Boolean onlyAvailable,
+                                                      String sort,
+                                                      Integer from,
+                                                      Integer size,
+                                                      String cursor) throws ValidationException {
+        LocalDateTime startDate = rangeStart == null
+                ? LocalDateTime.now()
+                : LocalDateTime.parse(rangeStart, JsonFormatPattern.DATE_TIME_FORMATTER);
+        LocalDateTime endDate = rangeEnd == null ? null : LocalDateTime.parse(rangeEnd, JsonFormatPattern.DATE_TIME_FORMATTER);
+        if (endDate != null && startDate.isAfter(endDate)) {
+            throw new ValidationException("Дата и время начала поиска не должна быть позже даты и времени конца поиска");
         }
-        statsClient.postStats(new StatsRequestDto("main-server",
-                uri,
-                ip,
-                LocalDateTime.now()));
-        if (!sortDate) {
-            List<EventShortDto> shortEventDtos = createShortEventDtos(events);
-            shortEventDtos.sort(Comparator.comparing(EventShortDto::getViews));
-            if (shortEventDtos.size() > from) {
-                if (shortEventDtos.size() > from + size) {
-                    shortEventDtos = shortEventDtos.subList(from, from + size);
-                } else {
-                    shortEventDtos = shortEventDtos.subList(from, shortEventDtos.size());
-                }
-            } else {
-                shortEventDtos = Collections.emptyList();
+        Predicate where = EventPredicates.of(EventFilter.builder()
+                .text(text)
+                .categories(categories)
+                .paid(paid)
+                .states(List.of(EventState.PUBLISHED))
+                .rangeStart(startDate)
+                .rangeEnd(endDate)
+                .build());
+        boolean hasText = text != null && !text.isBlank();
+        EventPage<Event> events;
+        if (cursor != null) {
+            if (!sort.equals("EVENT_DATE")) {
+                throw new ValidationException("Постраничный обход по курсору поддерживается только для sort=EVENT_DATE");
             }
-            return shortEventDtos;
+            EventCursor after = EventCursor.decode(cursor);
+            events = EventCursor.page(eventRepository.search(EventPredicates.after(where, after.eventDate(), after.id()), 0,
+                    size + 1, EventPredicates.BY_EVENT_DATE), size);
+        } else if (sort.equals("EVENT_DATE")) {
+            events = EventPage.of(eventRepository.search(where, from, size, EventPredicates.BY_EVENT_DATE));
+        } else if (sort.equals("RELEVANCE")) {
+            events = EventPage.of(eventRepository.search(where, from, size,
+                    hasText ? EventPredicates.byRelevance(text) : EventPredicates.BY_EVENT_DATE));
+        } else {
+            // порядок по events.views из БД, сами просмотры в ответе — из EventViewsCache
+            events = EventPage.of(eventRepository.search(where, from, size, EventPredicates.BY_VIEWS));
         }
         return createShortEventDtos(events);
     }
 
-    List<EventShortDto> createShortEventDtos(List<Event> events) {
-        HashMap<Long, Integer> eventIdsWithViewsCounter = new HashMap<>();
-
-        LocalDateTime startTime = events.getFirst().getCreatedOn();
-        ArrayList<String> uris = new ArrayList<>();
-        for (Event event : events) {
-            uris.add("/events/" + event.getId().toString());
-            if (startTime.isAfter(event.getCreatedOn())) {
-                startTime = event.getCreatedOn();
-            }
-        }
-
-        StatsRequestParamsDto statsRequestParamsDto = getStatsRequestParamsDto(startTime, LocalDateTime.now(), uris);
-
-        var viewsCounter = statsClient.getAllStats(statsRequestParamsDto);
-        for (var statsDto : viewsCounter) {
-            String[] split = statsDto.getUri().split("/");
-            eventIdsWithViewsCounter.put(Long.parseLong(split[2]), Math.toIntExact(statsDto.getHits()));
-        }
-        var requests = requestRepository.findByEventIds(new ArrayList<>(eventIdsWithViewsCounter.keySet()));
-        return events.stream()
+    EventPage<EventShortDto> createShortEventDtos(EventPage<Event> events) {
+        var pendingViews = getViews(events.events());
+        EventViews views = pendingViews.join();
+        return events.with(events.events().stream()
                 .map(EventMapper::mapEventToShortDto)
-                .peek(dto -> dto.setConfirmedRequests(
-                        requests.stream()
-                                .filter((request -> request.getEvent().getId().equals(dto.getId())))
-                                .count()
-                ))
-                .peek(dto -> dto.setViews(eventIdsWithViewsCounter.get(dto.getId())))
-                .collect(Collectors.toList());
+                .peek(dto -> dto.setViews(Math.toIntExact(views.views().getOrDefault(dto.getId(), 0L))))
+                .collect(Collectors.toList()), views.degraded());
+    }
+
+    /**
+     * Уникальные просмотры событий, у каждого с момента его создания. Не блокирует поток,
+     * чтобы вызывающий мог выполнить запросы к БД, пока просмотры загружаются.
+     * Результат забирается в потоке запроса через join: он ограничен event-views.budget.
+     */
+    CompletableFuture<EventViews> getViews(List<Event> events) {
+        return eventViewsCache.getViewsAsync(events.stream()
+                .collect(Collectors.toMap(Event::getId, Event::getCreatedOn, (a, b) -> a)));
     }
 }
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.event.service;
+
+import java.util.Map;
+
+/**
+ * Просмотры событий из {@link EventViewsCache}.
+ *
+ * @param views    просмотры по id события, для каждого запрошенного события
+ * @param degraded часть значений не получена от stats-server: взяты последние известные или нули
+ */
+public record EventViews(Map<Long, Long> views, boolean degraded) {
+}
@@ -0,0 +1,223 @@
+package ru.yandex.practicum.event.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.client.StatsClient;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Near-cache уникальных просмотров событий, чтобы страницы событий не ждали stats-server на каждом запросе.
+ * <p>
+ * Запись старше event-views.cache.refresh-after-write отдается сразу, а ее обновление ставится в очередь;
+ * фоновый поток раз в refresh-batch-delay-ms обновляет все накопившиеся события одним запросом
+ * {@link StatsClient#getEventViews}. Запись старше expire-after-write удаляется, и следующий запрос
+ * ждет загрузки. Загрузка не блокирует поток: {@link #getViewsAsync(Map)} позволяет делать
+ * запросы к БД, пока просмотры загружаются. Если stats-server недоступен, при обновлении остается
+ * старое значение.
+ * <p>
+ * Ожидание загрузки ограничено event-views.budget. Если загрузка не уложилась в срок или stats-server недоступен
+ * (в том числе отключен автоматом stats-client), отдаются последние известные значения, а для событий
+ * без них — нули; такой результат помечается как degraded и не кешируется. Прерванная по сроку загрузка
+ * продолжается и заполнит кеш для следующих запросов.
+ * <p>
+ * Метрики: cache.* с тегом cache=event.views (попадания, промахи, загрузки), event.views.cache.staleness —
+ * возраст отданных значений, event.views.cache.refresh — длительность пакетного обновления,
+ * event.views.cache.degraded — число ответов с последними известными значениями.
+ */
+@Slf4j
+@Component
+public class EventViewsCache {
+    private final StatsClient statsClient;
+    private final AsyncLoadingCache<ViewsKey, Long> cache;
+    private final Cache<ViewsKey, Long> lastKnown;
+    private final Duration budget;
+    private final Map<ViewsKey, CompletableFuture<Long>> pendingRefreshes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+    private final int refreshBatchSize;
+    private final Timer staleness;
+    private final Timer refreshLatency;
+    private final Counter degraded;
+
+    public EventViewsCache(StatsClient statsClient,
+                           @Value("${event-views.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${event-views.cache.refresh-after-write:PT5S}") Duration refreshAfterWrite,
+                           @Value("${event-views.cache.expire-after-write:PT1M}") Duration expireAfterWrite,
+                           @Value("${event-views.cache.refresh-batch-delay-ms:100}") long refreshBatchDelayMs,
+                           @Value("${event-views.cache.refresh-batch-size:500}") int refreshBatchSize,
+                           @Value("${event-views.budget:PT0.3S}") Duration budget,
+                           MeterRegistry meterRegistry) {
+        this.statsClient = statsClient;
+        this.budget = budget;
+        this.refreshBatchSize = refreshBatchSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfterWrite)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync(new ViewsLoader());
+        this.lastKnown = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "event.views");
+        this.staleness = Timer.builder("event.views.cache.staleness")
+                .description("Возраст значений просмотров, отданных из кеша")
+                .register(meterRegistry);
+        this.refreshLatency = Timer.builder("event.views.cache.refresh")
+                .description("Длительность пакетного обновления просмотров")
+                .register(meterRegistry);
+        this.degraded = Counter.builder("event.views.cache.degraded")
+                .description("Ответы с последними известными просмотрами вместо значений stats-server")
+                .register(meterRegistry);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-views-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refresher.scheduleWithFixedDelay(this::refreshPending, refreshBatchDelayMs, refreshBatchDelayMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Просмотры событий с момента их создания.
+     *
+     * @param createdOnByEvent время создания по id события
+     * @return просмотры, завершается не позже чем через event-views.budget
+     */
+    public CompletableFuture<EventViews> getViewsAsync(Map<Long, LocalDateTime> createdOnByEvent) {
+        Set<ViewsKey> keys = createdOnByEvent.entrySet().stream()
+                .map(e -> new ViewsKey(e.getKey(), e.getValue()))
+                .collect(Collectors.toSet());
+        // срок ставится на копию: будущее самого кеша должно завершиться загрузкой, а не таймаутом
+        return cache.getAll(keys).copy()
+                .orTimeout(budget.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.warn("Просмотры {} событий не получены за {}: {}", keys.size(), budget, e.toString());
+                    return Map.of();
+                })
+                .thenApply(cached -> {
+                    Optional<Policy.FixedRefresh<ViewsKey, Long>> refreshPolicy =
+                            cache.synchronous().policy().refreshAfterWrite();
+                    Map<Long, Long> views = new HashMap<>();
+                    boolean incomplete = false;
+                    for (ViewsKey key : keys) {
+                        Long value = cached.get(key);
+                        if (value == null) {
+                            incomplete = true;
+                            value = Objects.requireNonNullElse(lastKnown.getIfPresent(key), 0L);
+                        } else {
+                            refreshPolicy.flatMap(policy -> policy.ageOf(key)).ifPresent(staleness::record);
+                        }
+                        views.put(key.eventId(), value);
+                    }
+                    if (incomplete) {
+                        degraded.increment();
+                    }
+                    return new EventViews(views, incomplete);
+                });
+    }
+
+    public EventViews getViews(Map<Long, LocalDateTime> createdOnByEvent) {
+        return getViewsAsync(createdOnByEvent).join();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Обновляет накопившиеся события пачками не больше refreshBatchSize. Выполняется в потоке refresher,
+     * вызовы не должны пересекаться.
+     */
+    void refreshPending() {
+        List<ViewsKey> keys = new ArrayList<>(pendingRefreshes.keySet());
+        for (int from = 0; from < keys.size(); from += refreshBatchSize) {
+            List<ViewsKey> batch = keys.subList(from, Math.min(from + refreshBatchSize, keys.size()));
+            Map<ViewsKey, Long> views = refreshLatency.record(() -> fetch(batch).join());
+            for (ViewsKey key : batch) {
+                CompletableFuture<Long> future = pendingRefreshes.remove(key);
+                Long value = views.get(key);
+                if (value != null) {
+                    future.complete(value);
+                } else {
+                    // исключение оставляет в кеше старое значение до следующей попытки
+                    future.completeExceptionally(new IllegalStateException(
+                            "Не удалось обновить просмотры события " + key.eventId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Просмотры из stats-server; события без значения stats-server не посчитал: он недоступен
+     * или не уложился в срок (иначе сервер возвращает значение для каждого запрошенного события).
+     */
+    private CompletableFuture<Map<ViewsKey, Long>> fetch(Iterable<? extends ViewsKey> keys) {
+        List<EventViewsRequestDto> windows = new ArrayList<>();
+        keys.forEach(key -> windows.add(new EventViewsRequestDto(key.eventId(), key.createdOn())));
+        return statsClient.getEventViewsAsync(windows, true)
+                .exceptionally(e -> {
+                    log.warn("Просмотры {} событий не получены: {}", windows.size(), e.toString());
+                    return Map.of();
+                })
+                .thenApply(views -> {
+                    Map<ViewsKey, Long> result = new HashMap<>();
+                    keys.forEach(key -> {
+                        Long value = views.get(key.eventId());
+                        if (value != null) {
+                            result.put(key, value);
+                            lastKnown.put(key, value);
+                        }
+                    });
+                    return result;
+                });
+    }
+
+    private class ViewsLoader implements AsyncCacheLoader<ViewsKey, Long> {
+        @Override
+        public CompletableFuture<Long> asyncLoad(ViewsKey key, Executor executor) {
+            return fetch(List.of(key)).thenApply(views -> views.get(key));
+        }
+
+        @Override
+        public CompletableFuture<Map<ViewsKey, Long>> asyncLoadAll(Set<? extends ViewsKey> keys, Executor executor) {
+            return fetch(keys);
+        }
+
+        @Override
+        public CompletableFuture<Long> asyncReload(ViewsKey key, Long oldValue, Executor executor) {
+            return pendingRefreshes.computeIfAbsent(key, k -> new CompletableFuture<>());
+        }
+    }
+
+    private record ViewsKey(Long eventId, LocalDateTime createdOn) {
+    }
+}
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.event.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.client.StatsClient;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
+import ru.yandex.practicum.dto.StatsRequestParamsDto;
+import ru.yandex.practicum.event.repository.EventViewsRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая синхронизация events.views с stats-server для сортировки GET /events?sort=VIEWS в БД.
+ * <p>
+ * Раз в event-views.sync.interval обновляет только события, у которых со времени прошлой синхронизации были
+ * хиты: их id берутся из потока статистики по uri /events/{id} за период с начала прошлой синхронизации
+ * минус event-views.sync.lookback (запас на хиты, которые шлюз и буфер stats-server доставляют с опозданием).
+ * Первый проход после запуска и затем раз в event-views.sync.full-interval — полный: обходит опубликованные
+ * события по возрастанию id, чтобы догнать хиты, опоздавшие больше чем на lookback.
+ * События обновляются пачками event-views.sync.batch-size: одна пачка — один запрос
+ * {@link StatsClient#getEventViewsAsync} и один пакетный UPDATE. Если stats-server недоступен, проход
+ * прерывается, а следующий начинается с того же момента.
+ * <p>
+ * Проход выполняется под advisory-блокировкой PostgreSQL, поэтому из нескольких экземпляров сервиса
+ * синхронизирует один; остальные пропускают цикл. Момент прошлой синхронизации у каждого экземпляра свой:
+ * экземпляр, который давно не получал блокировку, просто берет более длинный период.
+ * <p>
+ * Метрики: event.views.sync с тегами mode (full, incremental, skipped) и outcome — длительность прохода,
+ * event.views.sync.updated — измененные события.
+ */
+@Slf4j
+@Component
+public class EventViewsSync {
+    private static final String EVENT_URI_PREFIX = "/events/";
+
+    private final StatsClient statsClient;
+    private final EventViewsRepository eventViewsRepository;
+    private final int batchSize;
+    private final Duration lookback;
+    private final Duration fullInterval;
+    private final ScheduledExecutorService syncer;
+    private final MeterRegistry meterRegistry;
+    private final Counter updated;
+
+    /**
+     * Начало последнего успешного прохода и последнего успешного полного прохода; меняются только в потоке syncer.
+     */
+    private LocalDateTime lastSynced;
+    private LocalDateTime lastFullSynced;
+
+    public EventViewsSync(StatsClient statsClient,
+                          EventViewsRepository eventViewsRepository,
+                          @Value("${event-views.sync.interval:PT1M}") Duration interval,
+                          @Value("${event-views.sync.batch-size:500}") int batchSize,
+                          @Value("${event-views.sync.lookback:PT5M}") Duration lookback,
+                          @Value("${event-views.sync.full-interval:PT1H}") Duration fullInterval,
+                          MeterRegistry meterRegistry) {
+        this.statsClient = statsClient;
+        this.eventViewsRepository = eventViewsRepository;
+        this.batchSize = batchSize;
+        this.lookback = lookback;
+        this.fullInterval = fullInterval;
+        this.meterRegistry = meterRegistry;
+        this.updated = Counter.builder("event.views.sync.updated")
+                .description("События, у которых синхронизация изменила events.views")
+                .register(meterRegistry);
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-views-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.syncer.scheduleWithFixedDelay(this::sync, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncer.shutdownNow();
+    }
+
+    /**
+     * Один проход, если его не выполняет другой экземпляр. Выполняется только в потоке syncer.
+     */
+    void sync() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        LocalDateTime startedAt = LocalDateTime.now();
+        boolean full = lastSynced == null || !startedAt.isBefore(lastFullSynced.plus(fullInterval));
+        String mode = "skipped";
+        String outcome = "SUCCESS";
+        try {
+            if (eventViewsRepository.runExclusively(() -> {
+                int changed = full ? syncAll() : syncChanged(lastSynced.minus(lookback), startedAt);
+                log.debug("Синхронизация просмотров ({}): изменено {} событий", full ? "полная" : "по новым хитам", changed);
+            })) {
+                mode = full ? "full" : "incremental";
+                lastSynced = startedAt;
+                if (full) {
+                    lastFullSynced = startedAt;
+                }
+            }
+        } catch (Exception e) {
+            mode = full ? "full" : "incremental";
+            outcome = "ERROR";
+            log.warn("Синхронизация просмотров прервана: {}", e.toString());
+        } finally {
+            sample.stop(Timer.builder("event.views.sync")
+                    .description("Проход синхронизации events.views")
+                    .tag("mode", mode)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private int syncAll() {
+        long afterId = 0;
+        int changed = 0;
+        Map<Long, LocalDateTime> batch;
+        do {
+            batch = eventViewsRepository.findPublishedAfter(afterId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            changed += updateViews(batch);
+            afterId = batch.keySet().stream().mapToLong(Long::longValue).max().orElseThrow();
+        } while (batch.size() == batchSize);
+        return changed;
+    }
+
+    private int syncChanged(LocalDateTime start, LocalDateTime end) {
+        Set<Long> eventIds = new TreeSet<>();
+        StatsRequestParamsDto params = StatsRequestParamsDto.builder()
+                .start(start)
+                .end(end)
+                .unique(false)
+                .build();
+        statsClient.streamStatsAsync(params, row -> eventId(row.getUri()).ifPresent(eventIds::add)).join();
+        int changed = 0;
+        List<Long> ids = new ArrayList<>(eventIds);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            Map<Long, LocalDateTime> batch = eventViewsRepository.findPublished(
+                    ids.subList(from, Math.min(from + batchSize, ids.size())));
+            if (!batch.isEmpty()) {
+                changed += updateViews(batch);
+            }
+        }
+        return changed;
+    }
+
+    private int updateViews(Map<Long, LocalDateTime> createdOn) {
+        List<EventViewsRequestDto> windows = createdOn.entrySet().stream()
+                .map(e -> new EventViewsRequestDto(e.getKey(), e.getValue()))
+                .toList();
+        int changed = eventViewsRepository.updateViews(statsClient.getEventViewsAsync(windows, true).join());
+        updated.increment(changed);
+        return changed;
+    }
+
+    private static Optional<Long> eventId(String uri) {
+        if (uri == null || !uri.startsWith(EVENT_URI_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(uri.substring(EVENT_URI_PREFIX.length())));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import ru.yandex.practicum.exception.ConflictException;
 import ru.yandex.practicum.exception.NotFoundException;
 import ru.yandex.practicum.exception.ValidationException;
 import ru.yandex.practicum.exception.WrongDataException;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.StatsResult;
 
 import java.util.List;
 
@@ -15,9 +17,9 @@ public interface UserEventService {
 
     EventFullDto addEvent(Long userId, NewEventDto event) throws ValidationException, WrongDataException, NotFoundException;
 
-    EventFullDto updateEvent(Long userId, Long eventId, UpdateEventUserRequest event) throws ConflictException, NotFoundException, ValidationException, WrongDataException;
+    StatsResult<EventFullDto> updateEvent(Long userId, Long eventId, UpdateEventUserRequest event) throws ConflictException, NotFoundException, ValidationException, WrongDataException;
 
-    List<EventShortDto> getUserEvents(Long userId, Integer from, Integer count) throws NotFoundException;
+    EventPage<EventShortDto> getUserEvents(Long userId, Integer from, Integer count, String cursor) throws NotFoundException, ValidationException;
 
-    EventFullDto getEventById(Long userId, Long eventId) throws NotFoundException, ValidationException;
+    StatsResult<EventFullDto> getEventById(Long userId, Long eventId) throws NotFoundException, ValidationException;
 }
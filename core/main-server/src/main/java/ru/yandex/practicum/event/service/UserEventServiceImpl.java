@@ -4,12 +4,9 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.category.model.Category;
 import ru.yandex.practicum.category.repository.CategoryRepository;
-import ru.yandex.practicum.client.StatsClient;
-import ru.yandex.practicum.dto.StatsRequestParamsDto;
 import ru.yandex.practicum.event.dto.*;
 import ru.yandex.practicum.event.model.Event;
 import ru.yandex.practicum.event.model.EventState;
@@ -20,15 +17,16 @@ import ru.yandex.practicum.exception.ConflictException;
 import ru.yandex.practicum.exception.NotFoundException;
 import ru.yandex.practicum.exception.ValidationException;
 import ru.yandex.practicum.exception.WrongDataException;
-import ru.yandex.practicum.request.repository.RequestRepository;
 import ru.yandex.practicum.user.model.User;
 import ru.yandex.practicum.user.repository.UserRepository;
+import ru.yandex.practicum.util.EventCursor;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.OffsetPageRequest;
+import ru.yandex.practicum.util.StatsResult;
 import ru.yandex.practicum.utils.JsonFormatPattern;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 
 @Service
@@ -40,10 +38,9 @@ public class UserEventServiceImpl implements UserEventService {
     final EventRepository eventRepository;
     final UserRepository userRepository;
     final CategoryRepository categoryRepository;
-    final RequestRepository requestRepository;
     final LocationRepository locationRepository;
 
-    final StatsClient statsClient;
+    final EventViewsCache eventViewsCache;
 
     private static void validationEventDate(Event event) throws ValidationException, WrongDataException {
         if (LocalDateTime.now().isAfter(event.getEventDate().minusHours(1))) {
@@ -60,15 +57,6 @@ public class UserEventServiceImpl implements UserEventService {
         }
     }
 
-    private static StatsRequestParamsDto getStatsRequestParamsDto(LocalDateTime start, LocalDateTime end, ArrayList<String> urls) {
-        return StatsRequestParamsDto.builder()
-                .start(start)
-                .end(end)
-                .uris(urls)
-                .unique(true)
-                .build();
-    }
-
     @Override
     public EventFullDto addEvent(Long userId, NewEventDto eventDto) throws ValidationException, WrongDataException, NotFoundException {
         log.info("Users...");
@@ -86,8 +74,6 @@ public class UserEventServiceImpl implements UserEventService {
         event.setCreatedOn(LocalDateTime.now());
         event.setState(EventState.PENDING);
 
-        Long confirmedRequests = requestRepository.countByEventAndStatuses(event.getId(), List.of("CONFIRMED"));
-
         if (event.getPaid() == null) {
             event.setPaid(false);
         }
@@ -101,11 +87,11 @@ public class UserEventServiceImpl implements UserEventService {
         event = eventRepository.save(event);
         log.info("Событие сохранено {}", event.getId());
 
-        return EventMapper.mapEventToFullDto(event, confirmedRequests);
+        return EventMapper.mapEventToFullDto(event);
     }
 
     @Override
-    public EventFullDto updateEvent(Long userId, Long eventId, UpdateEventUserRequest eventDto) throws ConflictException, NotFoundException, ValidationException, WrongDataException {
+    public StatsResult<EventFullDto> updateEvent(Long userId, Long eventId, UpdateEventUserRequest eventDto) throws ConflictException, NotFoundException, ValidationException, WrongDataException {
         log.info("Users...");
         log.info("Редактирование данных события и его статуса");
         Event event = getEventById(eventId);
@@ -121,8 +107,7 @@ public class UserEventServiceImpl implements UserEventService {
         updateEventFromEventDto(event, eventDto);
         locationRepository.save(event.getLocation());
         eventRepository.save(event);
-        Long confirmed = requestRepository.countByEventAndStatuses(event.getId(), List.of("CONFIRMED"));
-        return getViewsCounter(EventMapper.mapEventToFullDto(event, confirmed));
+        return getViewsCounter(EventMapper.mapEventToFullDto(event));
     }
 
     private User getUserById(Long userId) throws NotFoundException {
@@ -131,24 +116,30 @@ public class UserEventServiceImpl implements UserEventService {
     }
 
     @Override
-    public List<EventShortDto> getUserEvents(Long userId, Integer from, Integer count) throws NotFoundException {
+    public EventPage<EventShortDto> getUserEvents(Long userId, Integer from, Integer count, String cursor)
+            throws NotFoundException, ValidationException {
         User user = getUserById(userId);
-        return eventRepository.findAllByInitiator(user, PageRequest.of(from / count, count)).stream()
-                .map(EventMapper::mapEventToShortDto)
-                .collect(Collectors.toList());
+        EventPage<Event> events;
+        if (cursor != null) {
+            EventCursor after = EventCursor.decode(cursor);
+            events = EventCursor.page(
+                    eventRepository.findInitiatorPageAfter(user.getId(), after.eventDate(), after.id(), count + 1), count);
+        } else {
+            events = EventPage.of(eventRepository.findAllByInitiator(user, OffsetPageRequest.of(from, count)));
+        }
+        return events.map(EventMapper::mapEventToShortDto);
     }
 
     // Вспомогательные функции
 
     @Override
-    public EventFullDto getEventById(Long userId, Long eventId) throws NotFoundException, ValidationException {
+    public StatsResult<EventFullDto> getEventById(Long userId, Long eventId) throws NotFoundException, ValidationException {
         User user = getUserById(userId);
         Event event = getEventById(eventId);
         if (!user.getId().equals(event.getInitiator().getId())) {
             throw new ValidationException("Пользователь " + userId + " не является инициатором события " + eventId);
         }
-        Long confirmed = requestRepository.countByEventAndStatuses(event.getId(), List.of("CONFIRMED"));
-        return getViewsCounter(EventMapper.mapEventToFullDto(event, confirmed));
+        return getViewsCounter(EventMapper.mapEventToFullDto(event));
     }
 
     Event getEventById(Long eventId) throws NotFoundException {
@@ -206,15 +197,11 @@ public class UserEventServiceImpl implements UserEventService {
         }
     }
 
-    EventFullDto getViewsCounter(EventFullDto eventFullDto) {
-        ArrayList<String> urls = new ArrayList<>(List.of("/events/" + eventFullDto.getId()));
+    StatsResult<EventFullDto> getViewsCounter(EventFullDto eventFullDto) {
         LocalDateTime start = LocalDateTime.parse(eventFullDto.getCreatedOn(), JsonFormatPattern.DATE_TIME_FORMATTER);
-        LocalDateTime end = LocalDateTime.now();
-
-        StatsRequestParamsDto statsRequestParamsDto = getStatsRequestParamsDto(start, end, urls);
 
-        Integer views = statsClient.getAllStats(statsRequestParamsDto).size();
-        eventFullDto.setViews(views);
-        return eventFullDto;
+        EventViews views = eventViewsCache.getViews(Map.of(eventFullDto.getId(), start));
+        eventFullDto.setViews(Math.toIntExact(views.views().get(eventFullDto.getId())));
+        return new StatsResult<>(eventFullDto, views.degraded());
     }
 }
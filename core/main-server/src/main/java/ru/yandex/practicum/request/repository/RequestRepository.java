@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Query;
 import ru.yandex.practicum.request.model.EventRequest;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface RequestRepository extends JpaRepository<EventRequest, Long> {
 
@@ -17,22 +18,12 @@ public interface RequestRepository extends JpaRepository<EventRequest, Long> {
             "WHERE r.event.id = :eventId")
     List<EventRequest> findByEventId(Long eventId);
 
-    @Query("SELECT r FROM EventRequest r " +
-            "WHERE r.event.id in :eventIds ")
-    List<EventRequest> findByEventIds(List<Long> eventIds);
+    @Query("SELECT r.event.id FROM EventRequest r " +
+            "WHERE r.id = :requestId")
+    Optional<Long> findEventIdById(Long requestId);
 
     List<EventRequest> findRequestByEventIdAndStatus(Long eventId, String status);
 
-    @Query("SELECT COUNT(r) FROM EventRequest r " +
-            "WHERE r.event.id = :eventId " +
-            "AND r.status in :statuses")
-    Long countByEventAndStatuses(Long eventId, List<String> statuses);
-
-    @Query("SELECT r FROM EventRequest r " +
-            "WHERE r.event.id in :eventIds " +
-            "AND r.status = :status")
-    List<EventRequest> findByEventIdsAndStatus(List<Long> eventIds, String status);
-
     @Query("SELECT r FROM EventRequest r " +
             "WHERE r.event.initiator.id = :userId")
     List<EventRequest> findByEventInitiatorId(Long userId);
@@ -6,6 +6,7 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import ru.yandex.practicum.event.model.Event;
 import ru.yandex.practicum.event.model.EventState;
 import ru.yandex.practicum.event.repository.EventRepository;
@@ -41,7 +42,7 @@ public class EventRequestServiceImpl implements EventRequestService {
     @Transactional
     public EventRequestDto addRequest(Long userId, Long eventId) throws ConflictException, NotFoundException {
         User user = userRepository.getUserById(userId);
-        Event event = getEventById(eventId);
+        Event event = getEventForUpdate(eventId);
 
         if (event.getInitiator().getId().equals(userId)) {
             throw new ConflictException("Создатель события не может подать заявку на участие");
@@ -49,7 +50,7 @@ public class EventRequestServiceImpl implements EventRequestService {
         if (!event.getState().equals(EventState.PUBLISHED)) {
             throw new ConflictException("Событие не опубликовано");
         }
-        List<EventRequest> requests = getEventRequestsByEventId(event.getId());
+        List<EventRequest> requests = requestRepository.findByEventId(eventId);
         if (participationLimitIsFull(event)) {
             throw new ConflictException("Превышен лимит заявок на участие в событии");
         }
@@ -60,6 +61,7 @@ public class EventRequestServiceImpl implements EventRequestService {
         }
 
         EventRequest newRequest = createNewEventRequest(user, event);
+        takePlaces(event, takesPlace(newRequest.getStatus()) ? 1 : 0);
         return eventRequestMapper.mapRequest(requestRepository.save(newRequest));
     }
 
@@ -86,58 +88,54 @@ public class EventRequestServiceImpl implements EventRequestService {
     public EventRequestDto updateRequest(Long userId,
                                          Long eventId,
                                          EventRequestDto updateRequest) throws ConflictException, ValidationException, NotFoundException {
-        Event event = getEventById(eventId);
-        List<EventRequest> requests = getEventRequestsByEventId(eventId);
-        long confirmedRequestsCounter = requests.stream().filter(r -> r.getStatus().equals(CONFIRMED_REQUEST)).count();
-
-        List<EventRequestDto> confirmedRequests = new ArrayList<>();
-        List<EventRequestDto> rejectedRequests = new ArrayList<>();
-
-        List<EventRequest> result = new ArrayList<>();
-
-        List<EventRequest> pending = requests.stream()
-                .filter(p -> p.getStatus().equals(PENDING_REQUEST)).collect(Collectors.toList());
-
+        Event event = getEventForUpdate(eventId);
+        List<EventRequest> requests = requestRepository.findByEventId(eventId);
+        String status = updateRequest.getStatus();
 
+        // ConflictException и ValidationException проверяемые и транзакцию не откатывают:
+        // все проверки выполняются до того, как меняется первый статус
         for (EventRequest request : requests) {
-            if (request.getStatus().equals(CONFIRMED_REQUEST) ||
-                    request.getStatus().equals(REJECTED_REQUEST) ||
-                    request.getStatus().equals(PENDING_REQUEST)) {
-
-                if (updateRequest.getStatus().equals(CONFIRMED_REQUEST) && event.getParticipantLimit() != 0) {
-                    if (event.getParticipantLimit() < confirmedRequestsCounter) {
-
-                        List<EventRequest> collect = pending.stream().peek(p -> p.setStatus(REJECTED_REQUEST)).toList();
-                        log.error("Превышено число возможных заявок на участие \n" + collect);
-
-                        throw new ConflictException("Превышено число возможных заявок на участие");
-                    }
-                }
-
-                if (updateRequest.getStatus().equals(REJECTED_REQUEST) && request.getStatus().equals(CONFIRMED_REQUEST)) {
-                    throw new ConflictException("Нельзя отменить подтверждённую заявку");
-                }
+            if (!CONFIRMED_REQUEST.equals(request.getStatus()) &&
+                    !REJECTED_REQUEST.equals(request.getStatus()) &&
+                    !PENDING_REQUEST.equals(request.getStatus())) {
+                throw new ValidationException("Неверный статус заявки");
+            }
+            if (REJECTED_REQUEST.equals(status) && CONFIRMED_REQUEST.equals(request.getStatus())) {
+                throw new ConflictException("Нельзя отменить подтверждённую заявку");
+            }
+        }
 
-                request.setStatus(updateRequest.getStatus());
-                EventRequestDto participationRequestDto = eventRequestMapper.mapRequest(request);
+        if (CONFIRMED_REQUEST.equals(status) && event.getParticipantLimit() != 0) {
+            long places = requests.stream().filter(r -> !takesPlace(r.getStatus())).count();
+            if (event.getConfirmedRequests() + places > event.getParticipantLimit()) {
+                // мест не хватает: неподтверждённые заявки отклоняются и сохраняются вместе с исключением,
+                // мест они не занимали, счётчик не меняется
+                List<EventRequest> pending = requests.stream()
+                        .filter(r -> PENDING_REQUEST.equals(r.getStatus())).toList();
+                pending.forEach(r -> r.setStatus(REJECTED_REQUEST));
+                requestRepository.saveAll(pending);
+                log.error("Превышено число возможных заявок на участие \n" + pending);
+                throw new ConflictException("Превышено число возможных заявок на участие");
+            }
+        }
 
-                if ("CONFIRMED".equals(participationRequestDto.getStatus())) {
-                    confirmedRequests.add(participationRequestDto);
-                } else if ("REJECTED".equals(participationRequestDto.getStatus())) {
-                    rejectedRequests.add(participationRequestDto);
-                }
+        List<String> previousStatuses = requests.stream().map(EventRequest::getStatus).toList();
+        List<EventRequestDto> confirmedRequests = new ArrayList<>();
+        List<EventRequestDto> rejectedRequests = new ArrayList<>();
 
-                result.add(request);
-                confirmedRequestsCounter++;
+        for (EventRequest request : requests) {
+            request.setStatus(status);
+            EventRequestDto participationRequestDto = eventRequestMapper.mapRequest(request);
 
-            } else {
-                throw new ValidationException("Неверный статус заявки");
+            if ("CONFIRMED".equals(participationRequestDto.getStatus())) {
+                confirmedRequests.add(participationRequestDto);
+            } else if ("REJECTED".equals(participationRequestDto.getStatus())) {
+                rejectedRequests.add(participationRequestDto);
             }
         }
 
-        requestRepository.saveAll(pending);
-
-        requestRepository.saveAll(result);
+        takePlaces(event, placesDelta(requests, previousStatuses));
+        requestRepository.saveAll(requests);
 
         return eventRequestMapper.mapRequestWithConfirmedAndRejected(confirmedRequests, rejectedRequests);
     }
@@ -150,12 +148,20 @@ public class EventRequestServiceImpl implements EventRequestService {
             throw new NotFoundException("Пользователь не найден userId=" + userId);
         }
 
+        Long eventId = requestRepository.findEventIdById(requestId).orElseThrow(
+                () -> new NotFoundException("Запрос не существует")
+        );
+        // статус читается после блокировки события, иначе отмена параллельно с подтверждением вернёт место дважды
+        getEventForUpdate(eventId);
         EventRequest request = requestRepository.findById(requestId).orElseThrow(
                 () -> new NotFoundException("Запрос не существует")
         );
         if (!request.getRequester().getId().equals(userId)) {
             throw new ValidationException("Создатель заявки не userId=" + userId);
         }
+        if (takesPlace(request.getStatus())) {
+            eventRepository.addConfirmedRequests(eventId, -1);
+        }
         request.setStatus(CANCELED_REQUEST);
         return eventRequestMapper.mapRequest(requestRepository.save(request));
     }
@@ -177,13 +183,38 @@ public class EventRequestServiceImpl implements EventRequestService {
     }
 
     private boolean participationLimitIsFull(Event event) throws ConflictException {
-        Long confirmedRequestsCounter = requestRepository.countByEventAndStatuses(event.getId(), List.of("CONFIRMED", "ACCEPTED"));
-        if (event.getParticipantLimit() != 0 && event.getParticipantLimit() <= confirmedRequestsCounter) {
+        if (event.getParticipantLimit() != 0 && event.getParticipantLimit() <= event.getConfirmedRequests()) {
             throw new ConflictException("Превышено число заявок на участие");
         }
         return false;
     }
 
+    /**
+     * Место в событии занимают подтверждённые инициатором и принятые без модерации заявки.
+     */
+    private static boolean takesPlace(String status) {
+        return CONFIRMED_REQUEST.equals(status) || ACCEPTED_REQUEST.equals(status);
+    }
+
+    private static long placesDelta(List<EventRequest> requests, List<String> previousStatuses) {
+        long delta = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            delta += (takesPlace(requests.get(i).getStatus()) ? 1 : 0) - (takesPlace(previousStatuses.get(i)) ? 1 : 0);
+        }
+        return delta;
+    }
+
+    /**
+     * Меняет events.confirmed_requests в текущей транзакции. Если мест не хватило, транзакция откатывается целиком:
+     * ConflictException проверяемое и сам по себе откат не вызывает.
+     */
+    private void takePlaces(Event event, long delta) throws ConflictException {
+        if (delta != 0 && eventRepository.addConfirmedRequests(event.getId(), delta) == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            throw new ConflictException("Превышено число заявок на участие");
+        }
+    }
+
     private List<EventRequest> getEventRequests(Long userId, Long eventId) throws ValidationException, NotFoundException {
         User user = userRepository.getUserById(userId);
         Event event = getEventById(eventId);
@@ -193,12 +224,12 @@ public class EventRequestServiceImpl implements EventRequestService {
         return requestRepository.findByEventInitiatorId(userId);
     }
 
-    private List<EventRequest> getEventRequestsByEventId(Long eventId) throws NotFoundException {
-        if (eventRepository.existsById(eventId)) {
-            return requestRepository.findByEventId(eventId);
-        } else {
-            throw new NotFoundException("Событие не найдено eventId=" + eventId);
-        }
+    /**
+     * Событие с блокировкой строки: заявки события и confirmed_requests меняет одна транзакция за раз.
+     */
+    private Event getEventForUpdate(Long eventId) throws NotFoundException {
+        return eventRepository.findByIdForUpdate(eventId).orElseThrow(
+                () -> new NotFoundException("Событие не найдено eventId=" + eventId));
     }
 
     private Event getEventById(Long eventId) throws NotFoundException {
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.util;
+
+import ru.yandex.practicum.event.model.Event;
+import ru.yandex.practicum.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Позиция в списке событий, упорядоченном по (event_date, id) по убыванию: следующая страница начинается
+ * строго после события с этой датой и id, поэтому запрос идет по индексу без пропуска from строк.
+ * <p>
+ * Клиент получает курсор следующей страницы в заголовке X-Next-Cursor и передает его как есть
+ * в параметре cursor; содержимое курсора не является частью API.
+ */
+public record EventCursor(LocalDateTime eventDate, long id) {
+    /**
+     * Позиция перед первым событием: больше любой даты события, которую принимает PostgreSQL.
+     */
+    public static final EventCursor FIRST = new EventCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    /**
+     * Разбирает параметр cursor; без него — первая страница.
+     *
+     * @throws ValidationException если курсор поврежден
+     */
+    public static EventCursor decode(String cursor) throws ValidationException {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("~", 2);
+            return new EventCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            throw new ValidationException("Некорректный курсор страницы: " + cursor);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((eventDate + "~" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Страница из первых size событий fetched. Вызывающий запрашивает на одно событие больше страницы:
+     * если оно нашлось, страница получает курсор после своего последнего события. Без курсора страниц больше нет.
+     */
+    public static EventPage<Event> page(List<Event> fetched, int size) {
+        if (fetched.size() <= size) {
+            return EventPage.of(fetched);
+        }
+        List<Event> page = fetched.subList(0, size);
+        if (page.isEmpty()) {
+            return EventPage.of(page);
+        }
+        Event last = page.getLast();
+        return new EventPage<>(page, new EventCursor(last.getEventDate(), last.getId()).encode(), false);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.util;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница событий и курсор следующей страницы для заголовка ответа.
+ *
+ * @param events     события страницы
+ * @param nextCursor курсор после последнего события; null, если страниц больше нет или страница выбрана по from
+ * @param degraded   просмотры в событиях страницы получены от stats-server не полностью
+ */
+public record EventPage<T>(List<T> events, String nextCursor, boolean degraded) {
+
+    public static <T> EventPage<T> of(List<T> events) {
+        return new EventPage<>(events, null, false);
+    }
+
+    public <R> EventPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new EventPage<>(events.stream().<R>map(mapper).toList(), nextCursor, degraded);
+    }
+
+    /**
+     * Та же страница с другими событиями, например с DTO, в которые уже записаны просмотры.
+     */
+    public <R> EventPage<R> with(List<R> events, boolean degraded) {
+        return new EventPage<>(events, nextCursor, degraded);
+    }
+}
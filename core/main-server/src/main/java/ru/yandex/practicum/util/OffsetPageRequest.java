@@ -0,0 +1,65 @@
+package ru.yandex.practicum.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Страница с произвольным смещением: from из параметров запроса не обязан делиться на size.
+ * {@code PageRequest.of(from / size, size)} при from = 5, size = 10 вернул бы строки с 0 по 9 вместо 5–14.
+ */
+public class OffsetPageRequest extends PageRequest {
+    private final long offset;
+
+    private OffsetPageRequest(long offset, int size, Sort sort) {
+        super((int) (offset / size), size, sort);
+        this.offset = offset;
+    }
+
+    public static OffsetPageRequest of(long from, int size) {
+        return of(from, size, Sort.unsorted());
+    }
+
+    public static OffsetPageRequest of(long from, int size, Sort sort) {
+        return new OffsetPageRequest(from, size, sort);
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public PageRequest next() {
+        return new OffsetPageRequest(offset + getPageSize(), getPageSize(), getSort());
+    }
+
+    @Override
+    public PageRequest previous() {
+        return hasPrevious() ? new OffsetPageRequest(Math.max(offset - getPageSize(), 0), getPageSize(), getSort()) : this;
+    }
+
+    @Override
+    public PageRequest first() {
+        return new OffsetPageRequest(0, getPageSize(), getSort());
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+
+    @Override
+    public PageRequest withSort(Sort sort) {
+        return new OffsetPageRequest(offset, getPageSize(), sort);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof OffsetPageRequest other && offset == other.offset && super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Long.hashCode(offset);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.util;
+
+/**
+ * Ответ с просмотрами из stats-server и признаком того, что часть просмотров не получена.
+ *
+ * @param body     тело ответа
+ * @param degraded просмотры в ответе устаревшие или нулевые: контроллер добавляет заголовок X-Stats-Degraded
+ */
+public record StatsResult<T>(T body, boolean degraded) {
+}
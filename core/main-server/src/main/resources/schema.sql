@@ -46,9 +46,25 @@ CREATE TABLE IF NOT EXISTS events (
     published_on       TIMESTAMP WITHOUT TIME ZONE,
     request_moderation BOOLEAN,
     state              VARCHAR(16),
-    title              VARCHAR(120)
+    title              VARCHAR(120),
+    -- копия уникальных просмотров из stats-server для GET /events?sort=VIEWS, обновляется EventViewsSync
+    views              BIGINT NOT NULL DEFAULT 0,
+    -- занятые места: заявки в статусах CONFIRMED и ACCEPTED, меняется EventRequestServiceImpl
+    -- в той же транзакции, что и статус заявки
+    confirmed_requests BIGINT NOT NULL DEFAULT 0,
+    -- поисковый вектор для GET /events?text=: вычисляется самой БД при вставке и любом изменении события,
+    -- вес слов убывает от названия к описанию
+    search_vector      TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(annotation, '')), 'B') ||
+        setweight(to_tsvector('russian', coalesce(description, '')), 'C')) STORED
 );
 
+CREATE INDEX IF NOT EXISTS events_search_vector_idx ON events USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS events_event_date_id_idx ON events (event_date, id);
+CREATE INDEX IF NOT EXISTS events_initiator_event_date_id_idx ON events (initiator_id, event_date, id);
+CREATE INDEX IF NOT EXISTS events_published_views_idx ON events (views, event_date DESC) WHERE state = 'PUBLISHED';
+
 CREATE TABLE IF NOT EXISTS events_compilations (
     event          BIGINT REFERENCES events (id) ON DELETE CASCADE,
     compilation    BIGINT REFERENCES compilations (id) ON DELETE CASCADE
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.event.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.util.EventPage;
+import ru.yandex.practicum.util.StatsResult;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventResponsesTest {
+
+    @Test
+    void pageCarriesCursorAndDegradedFlagInHeaders() {
+        ResponseEntity<List<String>> response = EventResponses.page(new EventPage<>(List.of("a", "b"), "cursor", true));
+
+        assertThat(response.getBody()).containsExactly("a", "b");
+        assertThat(response.getHeaders().getFirst(EventResponses.NEXT_CURSOR)).isEqualTo("cursor");
+        assertThat(response.getHeaders().getFirst(EventResponses.STATS_DEGRADED)).isEqualTo("true");
+    }
+
+    @Test
+    void completePageHasNoHeaders() {
+        ResponseEntity<List<String>> response = EventResponses.page(EventPage.of(List.of("a")));
+
+        assertThat(response.getHeaders().containsKey(EventResponses.NEXT_CURSOR)).isFalse();
+        assertThat(response.getHeaders().containsKey(EventResponses.STATS_DEGRADED)).isFalse();
+    }
+
+    @Test
+    void singleEventIsMarkedOnlyWhenViewsAreDegraded() {
+        assertThat(EventResponses.withStats(new StatsResult<>("event", true)).getHeaders()
+                .getFirst(EventResponses.STATS_DEGRADED)).isEqualTo("true");
+
+        ResponseEntity<String> complete = EventResponses.withStats(new StatsResult<>("event", false));
+        assertThat(complete.getBody()).isEqualTo("event");
+        assertThat(complete.getHeaders().containsKey(EventResponses.STATS_DEGRADED)).isFalse();
+    }
+}
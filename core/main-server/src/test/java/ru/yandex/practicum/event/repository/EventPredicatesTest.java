@@ -0,0 +1,103 @@
+package ru.yandex.practicum.event.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import ru.yandex.practicum.event.model.EventState;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventPredicatesTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 10, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2025, 6, 30, 22, 0);
+
+    /**
+     * Фильтр и признак его условия в тексте предиката.
+     */
+    private record Filter(Consumer<EventFilter.EventFilterBuilder> apply, String condition) {
+    }
+
+    private static final List<Filter> FILTERS = List.of(
+            new Filter(b -> b.text("концерт"), EventSearchFunctions.MATCH + "(event.id, концерт)"),
+            new Filter(b -> b.users(List.of(1L, 2L)), "event.initiator.id in [1, 2]"),
+            new Filter(b -> b.states(List.of(EventState.PUBLISHED)), "event.state = PUBLISHED"),
+            new Filter(b -> b.categories(List.of(3L)), "event.category.id = 3"),
+            new Filter(b -> b.paid(true), "event.paid = true"),
+            new Filter(b -> b.rangeStart(START), "event.eventDate >= " + START),
+            new Filter(b -> b.rangeEnd(END), "event.eventDate <= " + END)
+    );
+
+    static IntStream filterCombinations() {
+        return IntStream.range(0, 1 << FILTERS.size());
+    }
+
+    @ParameterizedTest
+    @MethodSource("filterCombinations")
+    void containsOnlySuppliedConditions(int combination) {
+        EventFilter.EventFilterBuilder builder = EventFilter.builder();
+        for (int i = 0; i < FILTERS.size(); i++) {
+            if ((combination & (1 << i)) != 0) {
+                FILTERS.get(i).apply().accept(builder);
+            }
+        }
+
+        Predicate where = EventPredicates.of(builder.build());
+
+        if (combination == 0) {
+            assertThat(((BooleanBuilder) where).hasValue()).isFalse();
+            return;
+        }
+        String text = where.toString();
+        for (int i = 0; i < FILTERS.size(); i++) {
+            String condition = FILTERS.get(i).condition();
+            if ((combination & (1 << i)) != 0) {
+                assertThat(text).contains(condition);
+            } else {
+                assertThat(text).doesNotContain(condition);
+            }
+        }
+        assertThat(text.split(" && ")).hasSize(Integer.bitCount(combination));
+    }
+
+    @Test
+    void blankTextAndEmptyListsAreNotConditions() {
+        Predicate where = EventPredicates.of(EventFilter.builder()
+                .text("  ")
+                .users(List.of())
+                .states(List.of())
+                .categories(List.of())
+                .build());
+
+        assertThat(((BooleanBuilder) where).hasValue()).isFalse();
+    }
+
+    @Test
+    void textIsStripped() {
+        Predicate where = EventPredicates.of(EventFilter.builder().text("  джаз ").build());
+
+        assertThat(where.toString()).isEqualTo(EventSearchFunctions.MATCH + "(event.id, джаз) = true");
+    }
+
+    @Test
+    void afterAddsRowComparisonToFilter() {
+        Predicate where = EventPredicates.of(EventFilter.builder().paid(false).build());
+
+        Predicate page = EventPredicates.after(where, END, 42L);
+
+        assertThat(page.toString()).isEqualTo("event.paid = false && (event.eventDate, event.id) < (" + END + ", 42)");
+    }
+
+    @Test
+    void afterWithoutFilterIsOnlyRowComparison() {
+        Predicate page = EventPredicates.after(new BooleanBuilder(), START, 7L);
+
+        assertThat(page.toString()).isEqualTo("(event.eventDate, event.id) < (" + START + ", 7)");
+    }
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.event.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.yandex.practicum.ExploreApplication;
+import ru.yandex.practicum.event.model.Event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Условия поиска {@link EventPredicates} через Hibernate на PostgreSQL: tsvector, websearch_to_tsquery
+ * и сравнение строк в H2 не проверить. Без Docker тест пропускается.
+ */
+@DataJpaTest
+@ContextConfiguration(classes = ExploreApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = "spring.config.location=classpath:/application.properties")
+class EventSearchRepositoryTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2030, 6, 1, 19, 0);
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO categories (id, name) VALUES (1, 'Музыка')");
+        jdbcTemplate.update("INSERT INTO users (id, name, email) VALUES (1, 'Организатор', 'org@example.com')");
+        jdbcTemplate.update("INSERT INTO locations (id, lat, lon) VALUES (1, 55.75, 37.62)");
+        insertEvent(1, "Джазовый концерт", "Вечер джаза в парке", "Играет квартет", DATE);
+        insertEvent(2, "Выставка картин", "Живопись", "После выставки будет концерт", DATE.plusDays(1));
+        insertEvent(3, "Лекция", "О живописи", "Без музыки", DATE);
+        insertEvent(4, "Концерты у воды", "Летние концерты", "Каждую субботу", DATE.minusDays(1));
+    }
+
+    @Test
+    void textMatchFindsWordFormsInAnyField() {
+        List<Event> events = eventRepository.search(EventPredicates.of(EventFilter.builder().text("концерт").build()),
+                0, 10, EventPredicates.BY_EVENT_DATE);
+
+        assertThat(events).extracting(Event::getId).containsExactly(2L, 1L, 4L);
+    }
+
+    @Test
+    void textMatchSupportsWebSearchSyntax() {
+        List<Event> events = eventRepository.search(
+                EventPredicates.of(EventFilter.builder().text("концерт -выставка").build()),
+                0, 10, EventPredicates.BY_EVENT_DATE);
+
+        assertThat(events).extracting(Event::getId).containsExactly(1L, 4L);
+    }
+
+    @Test
+    void relevanceRanksTitleAboveDescription() {
+        List<Event> events = eventRepository.search(EventPredicates.of(EventFilter.builder().text("концерт").build()),
+                0, 10, EventPredicates.byRelevance("концерт"));
+
+        // 2 упоминает концерт только в описании (вес C)
+        assertThat(events).extracting(Event::getId).last().isEqualTo(2L);
+        assertThat(events).extracting(Event::getId).containsExactlyInAnyOrder(1L, 2L, 4L);
+    }
+
+    @Test
+    void afterReturnsEventsStrictlyAfterCursorInPageOrder() {
+        List<Event> all = eventRepository.search(new BooleanBuilder(), 0, 10, EventPredicates.BY_EVENT_DATE);
+        assertThat(all).extracting(Event::getId).containsExactly(2L, 3L, 1L, 4L);
+
+        // события 1 и 3 в одно время: порядок между ними задает id
+        List<Event> page = eventRepository.search(EventPredicates.after(new BooleanBuilder(), DATE, 3L), 0, 10,
+                EventPredicates.BY_EVENT_DATE);
+
+        assertThat(page).extracting(Event::getId).containsExactly(1L, 4L);
+    }
+
+    private void insertEvent(long id, String title, String annotation, String description, LocalDateTime eventDate) {
+        jdbcTemplate.update("INSERT INTO events (id, title, annotation, description, category_id, initiator_id, " +
+                        "location_id, created_on, event_date, paid, participant_limit, request_moderation, state) " +
+                        "VALUES (?, ?, ?, ?, 1, 1, 1, ?, ?, false, 0, false, 'PUBLISHED')",
+                id, title, annotation, description, DATE.minusMonths(1), eventDate);
+    }
+}
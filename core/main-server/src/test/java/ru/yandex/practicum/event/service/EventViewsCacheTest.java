@@ -0,0 +1,128 @@
+package ru.yandex.practicum.event.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.client.StatsClient;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventViewsCacheTest {
+    private static final LocalDateTime CREATED_ON = LocalDateTime.of(2025, 6, 1, 10, 0);
+    // фоновое обновление не успевает сработать: тест вызывает refreshPending сам
+    private static final long REFRESH_BY_TEST = Duration.ofHours(1).toMillis();
+    private static final Map<Long, LocalDateTime> EVENTS = Map.of(1L, CREATED_ON, 2L, CREATED_ON, 3L, CREATED_ON);
+
+    private final StatsClient statsClient = mock(StatsClient.class);
+    // число событий в каждом запросе к stats-server
+    private final List<Integer> requests = new CopyOnWriteArrayList<>();
+    private final Map<Long, Long> serverViews = new ConcurrentHashMap<>();
+    private volatile Supplier<CompletableFuture<Map<Long, Long>>> server;
+    private EventViewsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        server = () -> CompletableFuture.completedFuture(Map.copyOf(serverViews));
+        when(statsClient.getEventViewsAsync(anyList(), eq(true))).thenAnswer(invocation -> {
+            List<EventViewsRequestDto> windows = invocation.getArgument(0);
+            requests.add(windows.size());
+            return server.get();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void refreshesStaleEventsInBatchesAndServesOldValuesMeanwhile() {
+        cache = cache(Duration.ofMillis(200), Duration.ofMinutes(1), 2);
+        serverViews.putAll(Map.of(1L, 10L, 2L, 20L, 3L, 30L));
+        assertThat(views()).isEqualTo(new EventViews(Map.of(1L, 10L, 2L, 20L, 3L, 30L), false));
+
+        serverViews.putAll(Map.of(1L, 11L, 2L, 21L, 3L, 31L));
+        sleep(300);
+
+        // устаревшие значения отдаются сразу, а обновление ставится в очередь
+        assertThat(views()).isEqualTo(new EventViews(Map.of(1L, 10L, 2L, 20L, 3L, 30L), false));
+        assertThat(requests).containsExactly(3);
+
+        cache.refreshPending();
+
+        // все три события обновлены пачками по refresh-batch-size
+        assertThat(requests.subList(1, requests.size())).containsExactlyInAnyOrder(2, 1);
+        assertThat(views()).isEqualTo(new EventViews(Map.of(1L, 11L, 2L, 21L, 3L, 31L), false));
+    }
+
+    @Test
+    void keepsLastKnownViewsWhenStatsServerFails() {
+        cache = cache(Duration.ofMillis(100), Duration.ofMillis(400), 500);
+        serverViews.putAll(Map.of(1L, 10L, 2L, 20L));
+        assertThat(cache.getViewsAsync(Map.of(1L, CREATED_ON, 2L, CREATED_ON)).join())
+                .isEqualTo(new EventViews(Map.of(1L, 10L, 2L, 20L), false));
+
+        server = () -> CompletableFuture.failedFuture(new IllegalStateException("stats-server is down"));
+        sleep(150);
+        assertThat(cache.getViewsAsync(Map.of(1L, CREATED_ON)).join())
+                .isEqualTo(new EventViews(Map.of(1L, 10L), false));
+        cache.refreshPending();
+
+        // неудачное обновление оставляет в кеше старое значение
+        assertThat(requests).containsExactly(2, 1);
+        assertThat(cache.getViewsAsync(Map.of(1L, CREATED_ON)).join())
+                .isEqualTo(new EventViews(Map.of(1L, 10L), false));
+
+        sleep(450);
+        // запись истекла, и загрузка не удалась: последние известные значения, для нового события — ноль
+        assertThat(views()).isEqualTo(new EventViews(Map.of(1L, 10L, 2L, 20L, 3L, 0L), true));
+    }
+
+    @Test
+    void answersWithinBudgetWhenStatsServerHangs() {
+        cache = cache(Duration.ofSeconds(5), Duration.ofMinutes(1), 500);
+        CompletableFuture<Map<Long, Long>> hanging = new CompletableFuture<>();
+        server = () -> hanging;
+
+        long started = System.nanoTime();
+        assertThat(views()).isEqualTo(new EventViews(Map.of(1L, 0L, 2L, 0L, 3L, 0L), true));
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+
+        // прерванная по сроку загрузка продолжается и заполняет кеш
+        hanging.complete(Map.of(1L, 10L, 2L, 20L, 3L, 30L));
+        assertThat(views()).isEqualTo(new EventViews(Map.of(1L, 10L, 2L, 20L, 3L, 30L), false));
+    }
+
+    private EventViewsCache cache(Duration refreshAfterWrite, Duration expireAfterWrite, int refreshBatchSize) {
+        return new EventViewsCache(statsClient, 100, refreshAfterWrite, expireAfterWrite, REFRESH_BY_TEST, refreshBatchSize,
+                Duration.ofMillis(200), new SimpleMeterRegistry());
+    }
+
+    private EventViews views() {
+        return cache.getViewsAsync(EVENTS).join();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.event.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.client.StatsClient;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
+import ru.yandex.practicum.dto.StatsRequestParamsDto;
+import ru.yandex.practicum.dto.StatsResponseDto;
+import ru.yandex.practicum.event.repository.EventViewsRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventViewsSyncTest {
+    private static final LocalDateTime CREATED_ON = LocalDateTime.of(2025, 6, 1, 10, 0);
+    // фоновый проход не успевает сработать: тест вызывает sync сам
+    private static final Duration SYNC_BY_TEST = Duration.ofHours(1);
+    private static final Duration LOOKBACK = Duration.ofMinutes(5);
+
+    private final StatsClient statsClient = mock(StatsClient.class);
+    private final EventViewsRepository eventViewsRepository = mock(EventViewsRepository.class);
+    private final AtomicBoolean lockFree = new AtomicBoolean(true);
+    // события каждого запроса просмотров и периоды запросов потока статистики
+    private final List<List<Long>> viewRequests = new ArrayList<>();
+    private final List<StatsRequestParamsDto> streamRequests = new ArrayList<>();
+    private List<String> hitUris = List.of();
+    private RuntimeException streamFailure;
+    private EventViewsSync sync;
+
+    @BeforeEach
+    void setUp() {
+        when(eventViewsRepository.runExclusively(any())).thenAnswer(invocation -> {
+            if (!lockFree.get()) {
+                return false;
+            }
+            invocation.<Runnable>getArgument(0).run();
+            return true;
+        });
+        when(eventViewsRepository.findPublishedAfter(anyLong(), anyInt())).thenAnswer(invocation ->
+                invocation.<Long>getArgument(0) == 0 ? Map.of(1L, CREATED_ON, 2L, CREATED_ON) : Map.of());
+        when(eventViewsRepository.findPublished(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            // событие 3 не опубликовано
+            return ids.stream().filter(id -> id != 3).collect(Collectors.toMap(id -> id, id -> CREATED_ON));
+        });
+        when(eventViewsRepository.updateViews(anyMap())).thenAnswer(invocation -> invocation.<Map<?, ?>>getArgument(0).size());
+        when(statsClient.getEventViewsAsync(anyList(), eq(true))).thenAnswer(invocation -> {
+            List<EventViewsRequestDto> windows = invocation.getArgument(0);
+            viewRequests.add(windows.stream().map(EventViewsRequestDto::getEventId).sorted().toList());
+            return CompletableFuture.completedFuture(windows.stream()
+                    .collect(Collectors.toMap(EventViewsRequestDto::getEventId, w -> 10L)));
+        });
+        when(statsClient.streamStatsAsync(any(), any())).thenAnswer(invocation -> {
+            streamRequests.add(invocation.getArgument(0));
+            if (streamFailure != null) {
+                return CompletableFuture.failedFuture(streamFailure);
+            }
+            Consumer<StatsResponseDto> consumer = invocation.getArgument(1);
+            hitUris.forEach(uri -> consumer.accept(new StatsResponseDto("main-server", uri, 1L)));
+            return CompletableFuture.completedFuture(null);
+        });
+        sync = new EventViewsSync(statsClient, eventViewsRepository, SYNC_BY_TEST, 500, LOOKBACK, Duration.ofHours(1),
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sync.shutdown();
+    }
+
+    @Test
+    void firstPassIsFullThenOnlyEventsWithNewHitsAreUpdated() {
+        sync.sync();
+
+        assertThat(viewRequests).containsExactly(List.of(1L, 2L));
+        verify(statsClient, never()).streamStatsAsync(any(), any());
+
+        hitUris = List.of("/events/2", "/events/3", "/events", "/events/abc", "/compilations/2", "/events/2");
+        sync.sync();
+
+        // 3 не опубликовано, остальные uri не относятся к событиям
+        assertThat(viewRequests).containsExactly(List.of(1L, 2L), List.of(2L));
+        verify(eventViewsRepository, times(1)).findPublishedAfter(anyLong(), anyInt());
+        assertThat(streamRequests).hasSize(1);
+        assertThat(streamRequests.getFirst().getUris()).isNull();
+        assertThat(streamRequests.getFirst().getStart()).isBefore(LocalDateTime.now().minus(LOOKBACK));
+    }
+
+    @Test
+    void skipsPassWhileAnotherInstanceHoldsTheLock() {
+        lockFree.set(false);
+        sync.sync();
+
+        assertThat(viewRequests).isEmpty();
+        verify(eventViewsRepository, never()).findPublishedAfter(anyLong(), anyInt());
+
+        lockFree.set(true);
+        sync.sync();
+
+        // пропущенный проход не считается выполненным: первый проход по-прежнему полный
+        assertThat(viewRequests).containsExactly(List.of(1L, 2L));
+    }
+
+    @Test
+    void failedPassIsRetriedFromTheSameStart() {
+        sync.sync();
+        streamFailure = new IllegalStateException("stats-server is down");
+        sync.sync();
+        streamFailure = null;
+        sync.sync();
+
+        assertThat(streamRequests).hasSize(2);
+        assertThat(streamRequests.get(1).getStart()).isEqualTo(streamRequests.get(0).getStart());
+    }
+}
@@ -0,0 +1,191 @@
+package ru.yandex.practicum.request.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import ru.yandex.practicum.event.model.Event;
+import ru.yandex.practicum.event.model.EventState;
+import ru.yandex.practicum.event.repository.EventRepository;
+import ru.yandex.practicum.exception.ConflictException;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.request.dto.EventRequestDto;
+import ru.yandex.practicum.request.dto.EventRequestMapper;
+import ru.yandex.practicum.request.model.EventRequest;
+import ru.yandex.practicum.request.repository.RequestRepository;
+import ru.yandex.practicum.user.model.User;
+import ru.yandex.practicum.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static ru.yandex.practicum.request.model.EventRequestStatus.*;
+
+class EventRequestServiceImplTest {
+    private static final long EVENT_ID = 1L;
+    private static final User INITIATOR = new User(1L, "Организатор", "org@example.com");
+    private static final User REQUESTER = new User(2L, "Участник", "guest@example.com");
+
+    private final EventRepository eventRepository = mock(EventRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final RequestRepository requestRepository = mock(RequestRepository.class);
+    private final EventRequestServiceImpl service =
+            new EventRequestServiceImpl(eventRepository, new EventRequestMapper(), userRepository, requestRepository);
+    private final Event event = new Event();
+
+    @BeforeEach
+    void setUp() {
+        event.setId(EVENT_ID);
+        event.setInitiator(INITIATOR);
+        event.setState(EventState.PUBLISHED);
+        event.setParticipantLimit(10);
+        event.setRequestModeration(true);
+        event.setConfirmedRequests(0L);
+        when(eventRepository.findByIdForUpdate(EVENT_ID)).thenReturn(Optional.of(event));
+        when(eventRepository.addConfirmedRequests(anyLong(), anyLong())).thenReturn(1);
+        when(userRepository.getUserById(REQUESTER.getId())).thenReturn(REQUESTER);
+        when(userRepository.existsById(REQUESTER.getId())).thenReturn(true);
+        when(requestRepository.save(any())).then(returnsFirstArg());
+    }
+
+    @Test
+    void addRequestWithoutModerationTakesPlace() throws Exception {
+        event.setRequestModeration(false);
+
+        EventRequestDto added = service.addRequest(REQUESTER.getId(), EVENT_ID);
+
+        assertThat(added.getStatus()).isEqualTo(ACCEPTED_REQUEST);
+        verify(eventRepository).addConfirmedRequests(EVENT_ID, 1);
+    }
+
+    @Test
+    void addRequestWaitingForModerationTakesNoPlace() throws Exception {
+        EventRequestDto added = service.addRequest(REQUESTER.getId(), EVENT_ID);
+
+        assertThat(added.getStatus()).isEqualTo(PENDING_REQUEST);
+        verify(eventRepository, never()).addConfirmedRequests(anyLong(), anyLong());
+    }
+
+    @Test
+    void confirmTakesPlacesOnlyForRequestsWithoutOne() throws Exception {
+        event.setConfirmedRequests(1L);
+        List<EventRequest> requests = requests(PENDING_REQUEST, REJECTED_REQUEST, CONFIRMED_REQUEST);
+
+        EventRequestDto result = service.updateRequest(INITIATOR.getId(), EVENT_ID, update(CONFIRMED_REQUEST));
+
+        assertThat(result.getConfirmedRequests()).hasSize(3);
+        assertThat(requests).extracting(EventRequest::getStatus).containsOnly(CONFIRMED_REQUEST);
+        verify(eventRepository).addConfirmedRequests(EVENT_ID, 2);
+    }
+
+    @Test
+    void rejectPendingKeepsCounter() throws Exception {
+        List<EventRequest> requests = requests(PENDING_REQUEST, REJECTED_REQUEST);
+
+        EventRequestDto result = service.updateRequest(INITIATOR.getId(), EVENT_ID, update(REJECTED_REQUEST));
+
+        assertThat(result.getRejectedRequests()).hasSize(2);
+        assertThat(requests).extracting(EventRequest::getStatus).containsOnly(REJECTED_REQUEST);
+        verify(eventRepository, never()).addConfirmedRequests(anyLong(), anyLong());
+    }
+
+    @Test
+    void rejectOfConfirmedFailsBeforeAnyStatusChanges() {
+        List<EventRequest> requests = requests(PENDING_REQUEST, CONFIRMED_REQUEST);
+
+        assertThatThrownBy(() -> service.updateRequest(INITIATOR.getId(), EVENT_ID, update(REJECTED_REQUEST)))
+                .isInstanceOf(ConflictException.class);
+
+        assertThat(requests).extracting(EventRequest::getStatus).containsExactly(PENDING_REQUEST, CONFIRMED_REQUEST);
+        verify(requestRepository, never()).saveAll(anyList());
+        verify(eventRepository, never()).addConfirmedRequests(anyLong(), anyLong());
+    }
+
+    @Test
+    void unexpectedStatusFailsBeforeAnyStatusChanges() {
+        // до отменённой заявки цикл уже подтвердил бы первую, а счётчик остался бы прежним
+        List<EventRequest> requests = requests(PENDING_REQUEST, CANCELED_REQUEST);
+
+        assertThatThrownBy(() -> service.updateRequest(INITIATOR.getId(), EVENT_ID, update(CONFIRMED_REQUEST)))
+                .isInstanceOf(ValidationException.class);
+
+        assertThat(requests).extracting(EventRequest::getStatus).containsExactly(PENDING_REQUEST, CANCELED_REQUEST);
+        verify(requestRepository, never()).saveAll(anyList());
+        verify(eventRepository, never()).addConfirmedRequests(anyLong(), anyLong());
+    }
+
+    @Test
+    void confirmBeyondLimitRejectsPendingAndKeepsCounter() {
+        event.setParticipantLimit(2);
+        event.setConfirmedRequests(1L);
+        List<EventRequest> requests = requests(PENDING_REQUEST, PENDING_REQUEST, CONFIRMED_REQUEST);
+
+        assertThatThrownBy(() -> service.updateRequest(INITIATOR.getId(), EVENT_ID, update(CONFIRMED_REQUEST)))
+                .isInstanceOf(ConflictException.class);
+
+        assertThat(requests).extracting(EventRequest::getStatus)
+                .containsExactly(REJECTED_REQUEST, REJECTED_REQUEST, CONFIRMED_REQUEST);
+        verify(eventRepository, never()).addConfirmedRequests(anyLong(), anyLong());
+    }
+
+    @Test
+    void cancelOfConfirmedReturnsPlaceUnderEventLock() throws Exception {
+        EventRequest request = request(10L, CONFIRMED_REQUEST);
+        stubCancel(request);
+
+        EventRequestDto canceled = service.cancelRequest(REQUESTER.getId(), request.getId());
+
+        assertThat(canceled.getStatus()).isEqualTo(CANCELED_REQUEST);
+        InOrder order = inOrder(eventRepository, requestRepository);
+        order.verify(eventRepository).findByIdForUpdate(EVENT_ID);
+        order.verify(requestRepository).findById(request.getId());
+        order.verify(eventRepository).addConfirmedRequests(EVENT_ID, -1);
+    }
+
+    @Test
+    void cancelOfPendingKeepsCounter() throws Exception {
+        EventRequest request = request(10L, PENDING_REQUEST);
+        stubCancel(request);
+
+        service.cancelRequest(REQUESTER.getId(), request.getId());
+
+        assertThat(request.getStatus()).isEqualTo(CANCELED_REQUEST);
+        verify(eventRepository, never()).addConfirmedRequests(anyLong(), anyLong());
+    }
+
+    private void stubCancel(EventRequest request) {
+        when(requestRepository.findEventIdById(request.getId())).thenReturn(Optional.of(EVENT_ID));
+        when(requestRepository.findById(request.getId())).thenReturn(Optional.of(request));
+    }
+
+    private List<EventRequest> requests(String... statuses) {
+        List<EventRequest> requests = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            requests.add(request(10L + i, statuses[i]));
+        }
+        when(requestRepository.findByEventId(EVENT_ID)).thenReturn(requests);
+        return requests;
+    }
+
+    private EventRequest request(long id, String status) {
+        return new EventRequest(id, REQUESTER, event, LocalDateTime.of(2030, 6, 1, 19, 0), status);
+    }
+
+    private static EventRequestDto update(String status) {
+        EventRequestDto update = new EventRequestDto();
+        update.setStatus(status);
+        return update;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.util;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.event.model.Event;
+import ru.yandex.practicum.exception.ValidationException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventCursorTest {
+    private static final LocalDateTime EVENT_DATE = LocalDateTime.of(2025, 6, 1, 10, 0);
+
+    @Test
+    void pageWithExtraRowIsTrimmedAndPointsAfterItsLastEvent() throws ValidationException {
+        EventPage<Event> page = EventCursor.page(events(4), 3);
+
+        assertThat(page.events()).extracting(Event::getId).containsExactly(4L, 3L, 2L);
+        assertThat(EventCursor.decode(page.nextCursor()))
+                .isEqualTo(new EventCursor(EVENT_DATE.minusDays(2), 2L));
+    }
+
+    @Test
+    void lastPageHasNoCursorEvenWhenItIsFull() {
+        EventPage<Event> full = EventCursor.page(events(3), 3);
+        assertThat(full.events()).hasSize(3);
+        assertThat(full.nextCursor()).isNull();
+        assertThat(EventCursor.page(events(1), 3).nextCursor()).isNull();
+        assertThat(EventCursor.page(List.of(), 3).events()).isEmpty();
+        assertThat(EventCursor.page(List.of(), 3).nextCursor()).isNull();
+    }
+
+    // события по убыванию (event_date, id), как их возвращает запрос страницы
+    private static List<Event> events(int count) {
+        return LongStream.iterate(count, id -> id > 0, id -> id - 1)
+                .mapToObj(id -> {
+                    Event event = new Event();
+                    event.setId(id);
+                    event.setEventDate(EVENT_DATE.minusDays(count - id));
+                    return event;
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,168 @@
+package ru.yandex.practicum.hits;
+
+import io.netty.util.NetUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.dto.StatsRequestDto;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Запись хитов на входе в систему: запрос с методом из hits.methods и путем, подходящим под один
+ * из шаблонов hits.paths, после успешного (2xx) ответа ставится в очередь {@link HitForwarder}.
+ * Фильтр не ждет stats-server и не меняет запрос, поэтому не добавляет задержки ответу.
+ * <p>
+ * IP клиента — адрес соединения. X-Forwarded-For учитывается, только если соединение пришло от доверенного
+ * прокси из hits.trusted-proxies (адреса и подсети CIDR): адреса заголовка просматриваются справа налево,
+ * и клиентом считается первый недоверенный. Левее него адреса мог вписать сам клиент. Адрес приводится
+ * к каноническому виду (IPv4-mapped IPv6 — к IPv4); запрос без корректного адреса клиента не записывается.
+ */
+@Component
+public class HitCaptureFilter implements GlobalFilter, Ordered {
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    private final HitForwarder hitForwarder;
+    private final String app;
+    private final List<PathPattern> paths;
+    private final Set<HttpMethod> methods;
+    private final List<Subnet> trustedProxies;
+
+    public HitCaptureFilter(HitForwarder hitForwarder,
+                            @Value("${hits.app:main-server}") String app,
+                            @Value("${hits.paths:/events,/events/*}") List<String> paths,
+                            @Value("${hits.methods:GET}") List<String> methods,
+                            @Value("${hits.trusted-proxies:}") List<String> trustedProxies) {
+        this.hitForwarder = hitForwarder;
+        this.app = app;
+        this.paths = paths.stream().map(PathPatternParser.defaultInstance::parse).toList();
+        this.methods = methods.stream().map(HttpMethod::valueOf).collect(Collectors.toSet());
+        this.trustedProxies = trustedProxies.stream()
+                .filter(proxy -> !proxy.isBlank())
+                .map(Subnet::parse)
+                .toList();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!methods.contains(request.getMethod())
+                || paths.stream().noneMatch(path -> path.matches(request.getPath().pathWithinApplication()))) {
+            return chain.filter(exchange);
+        }
+        LocalDateTime timestamp = LocalDateTime.now();
+        InetAddress client = clientAddress(request);
+        return chain.filter(exchange).then(Mono.fromRunnable(() -> {
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            if (client != null && status != null && status.is2xxSuccessful()) {
+                hitForwarder.offer(new StatsRequestDto(app, request.getPath().value(), client.getHostAddress(), timestamp));
+            }
+        }));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private InetAddress clientAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        InetAddress client = remoteAddress == null ? null : remoteAddress.getAddress();
+        if (client == null) {
+            return null;
+        }
+        List<String> forwardedFor = request.getHeaders().getValuesAsList(X_FORWARDED_FOR);
+        for (int i = forwardedFor.size() - 1; i >= 0 && isTrusted(client); i--) {
+            InetAddress hop = parseAddress(forwardedFor.get(i));
+            if (hop == null) {
+                // адрес, который не удалось разобрать, вписан до доверенного прокси: дальше заголовку верить нельзя
+                return null;
+            }
+            client = hop;
+        }
+        return normalize(client);
+    }
+
+    private boolean isTrusted(InetAddress address) {
+        byte[] bytes = normalize(address).getAddress();
+        return trustedProxies.stream().anyMatch(subnet -> subnet.contains(bytes));
+    }
+
+    /**
+     * Разбирает только литерал IPv4 или IPv6, без обращения к DNS.
+     */
+    private static InetAddress parseAddress(String text) {
+        byte[] bytes = NetUtil.createByteArrayFromIpAddressString(text.trim());
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * IPv4-mapped IPv6 (::ffff:a.b.c.d) приводится к IPv4, зона IPv6 отбрасывается.
+     */
+    private static InetAddress normalize(InetAddress address) {
+        try {
+            return InetAddress.getByAddress(address.getAddress());
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Подсеть доверенных прокси: адрес без префикса — подсеть из одного адреса.
+     */
+    private record Subnet(byte[] network, int prefix) {
+        static Subnet parse(String text) {
+            int slash = text.indexOf('/');
+            InetAddress address = parseAddress(slash < 0 ? text : text.substring(0, slash));
+            if (address == null) {
+                throw new IllegalArgumentException("Некорректный адрес доверенного прокси: " + text);
+            }
+            byte[] network = normalize(address).getAddress();
+            int prefix = slash < 0 ? network.length * Byte.SIZE : Integer.parseInt(text.substring(slash + 1).trim());
+            if (prefix < 0 || prefix > network.length * Byte.SIZE) {
+                throw new IllegalArgumentException("Некорректная длина префикса доверенного прокси: " + text);
+            }
+            return new Subnet(network, prefix);
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefix / Byte.SIZE;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int restBits = prefix % Byte.SIZE;
+            if (restBits == 0) {
+                return true;
+            }
+            int mask = 0xff << (Byte.SIZE - restBits);
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+}
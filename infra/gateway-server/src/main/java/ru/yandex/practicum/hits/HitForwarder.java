@@ -0,0 +1,230 @@
+package ru.yandex.practicum.hits;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.dto.StatsRequestDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Доставка хитов, записанных {@link HitCaptureFilter}, в stats-server.
+ * <p>
+ * Хиты копятся в ограниченной очереди hits.queue-capacity и раз в hits.linger отправляются на /hits
+ * пачками не больше hits.batch-size в формате CBOR. Экземпляр stats-server выбирается балансировщиком
+ * по discovery.services.stats-server-id. Пачка, которую не удалось отправить за hits.timeout, пишется
+ * в {@link HitSpool} и досылается в начале следующих циклов, в том числе после перезапуска шлюза. Пока spool
+ * не пуст, новые пачки тоже идут в него: порядок сохраняется, а отправка не ждет ошибки на каждой пачке.
+ * Ответ 4xx означает, что stats-server не смог разобрать пачку целиком: такая пачка отбрасывается.
+ * <p>
+ * Метрики: gateway.hits.forwarded, gateway.hits.dropped с тегом reason (queue_full, rejected, send_failed —
+ * пачку не удалось и отправить, и записать в spool), gateway.hits.queue — размер очереди.
+ */
+@Slf4j
+@Component
+public class HitForwarder {
+    private final BlockingQueue<StatsRequestDto> queue;
+    private final HitSpool hitSpool;
+    private final WebClient webClient;
+    /**
+     * Jackson2CborEncoder не поддерживает реактивную запись, поэтому пачка кодируется в байты заранее.
+     */
+    private final ObjectWriter cborWriter;
+    private final int batchSize;
+    private final Duration timeout;
+    private final Counter forwarded;
+    private final Counter droppedQueueFull;
+    private final Counter droppedRejected;
+    private final Counter droppedSendFailed;
+    private final Disposable flushing;
+
+    public HitForwarder(WebClient.Builder webClientBuilder,
+                        ReactorLoadBalancerExchangeFilterFunction loadBalancer,
+                        HitSpool hitSpool,
+                        @Value("${discovery.services.stats-server-id:stats-server}") String statsServerId,
+                        @Value("${hits.batch-size:100}") int batchSize,
+                        @Value("${hits.linger:PT0.5S}") Duration linger,
+                        @Value("${hits.queue-capacity:10000}") int queueCapacity,
+                        @Value("${hits.timeout:PT5S}") Duration timeout,
+                        MeterRegistry meterRegistry) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.hitSpool = hitSpool;
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+        this.webClient = webClientBuilder
+                .baseUrl("http://" + statsServerId)
+                .filter(loadBalancer)
+                .build();
+        this.cborWriter = Jackson2ObjectMapperBuilder.cbor().build().writerFor(StatsRequestDto[].class);
+        this.forwarded = Counter.builder("gateway.hits.forwarded")
+                .description("Хиты, принятые stats-server")
+                .register(meterRegistry);
+        this.droppedQueueFull = Counter.builder("gateway.hits.dropped")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.droppedRejected = Counter.builder("gateway.hits.dropped")
+                .tag("reason", "rejected")
+                .register(meterRegistry);
+        this.droppedSendFailed = Counter.builder("gateway.hits.dropped")
+                .tag("reason", "send_failed")
+                .register(meterRegistry);
+        Gauge.builder("gateway.hits.queue", queue, BlockingQueue::size)
+                .description("Хиты, ожидающие отправки в stats-server")
+                .register(meterRegistry);
+        this.flushing = Flux.interval(linger)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush().onErrorResume(e -> {
+                    // ошибка одного цикла не должна останавливать отправку: следующий цикл повторит попытку
+                    log.error("Цикл отправки хитов завершился ошибкой", e);
+                    return Mono.empty();
+                }), 1)
+                .subscribe(null, e -> log.error("Отправка хитов остановлена", e));
+    }
+
+    /**
+     * Ставит хит в очередь без ожидания; при переполненной очереди хит теряется.
+     */
+    public void offer(StatsRequestDto hit) {
+        if (!queue.offer(hit)) {
+            droppedQueueFull.increment();
+            log.warn("Хит отброшен, очередь отправки переполнена: {}", hit);
+        }
+    }
+
+    /**
+     * Последняя попытка отправить очередь; то, что не успело уйти за hits.timeout, остается в spool.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushing.dispose();
+        try {
+            flush().block(timeout);
+        } catch (RuntimeException e) {
+            log.warn("Очередь хитов не отправлена при остановке: {}", e.toString());
+        }
+        List<StatsRequestDto> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            spool(rest);
+        }
+    }
+
+    /**
+     * Сначала досылается spool, затем очередь.
+     */
+    private Mono<Void> flush() {
+        return replaySpool().then(Mono.defer(() -> {
+            List<List<StatsRequestDto>> batches = new ArrayList<>();
+            List<StatsRequestDto> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+            return Flux.fromIterable(batches)
+                    .concatMap(this::send)
+                    .then();
+        }));
+    }
+
+    private Mono<Void> send(List<StatsRequestDto> batch) {
+        if (!hitSpool.isEmpty()) {
+            spool(batch);
+            return Mono.empty();
+        }
+        return post(batch)
+                .doOnSuccess(response -> forwarded.increment(batch.size()))
+                .onErrorResume(e -> {
+                    if (isRejected(e)) {
+                        droppedRejected.increment(batch.size());
+                        log.error("Пачка из {} хитов отвергнута stats-server: {}", batch.size(), e.toString());
+                    } else {
+                        log.warn("Пачка из {} хитов не отправлена в stats-server и записана в spool: {}",
+                                batch.size(), e.toString());
+                        spool(batch);
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Досылает spool с начала, пока stats-server принимает пачки. Первая же ошибка доставки
+     * откладывает остаток до следующего цикла.
+     */
+    private Mono<Void> replaySpool() {
+        return Mono.defer(() -> {
+            HitSpool.Batch batch = hitSpool.peek(batchSize);
+            if (batch.hits().isEmpty()) {
+                return Mono.empty();
+            }
+            return post(batch.hits())
+                    .then(Mono.fromCallable(() -> {
+                        forwarded.increment(batch.hits().size());
+                        return true;
+                    }))
+                    .onErrorResume(e -> {
+                        if (!isRejected(e)) {
+                            log.debug("Хиты из spool не доставлены: {}", e.toString());
+                            return Mono.just(false);
+                        }
+                        droppedRejected.increment(batch.hits().size());
+                        log.error("Пачка из {} хитов spool отвергнута stats-server: {}", batch.hits().size(), e.toString());
+                        return Mono.just(true);
+                    })
+                    .flatMap(delivered -> {
+                        if (!delivered) {
+                            return Mono.empty();
+                        }
+                        hitSpool.commit(batch);
+                        if (hitSpool.isEmpty()) {
+                            log.info("Spool хитов доставлен в stats-server");
+                        }
+                        return replaySpool();
+                    });
+        });
+    }
+
+    private Mono<Void> post(List<StatsRequestDto> batch) {
+        return Mono.fromCallable(() -> cborWriter.writeValueAsBytes(batch.toArray(StatsRequestDto[]::new)))
+                .flatMap(body -> webClient.post()
+                        .uri("/hits")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .bodyValue(body)
+                        .retrieve()
+                        .toBodilessEntity())
+                .timeout(timeout)
+                .then();
+    }
+
+    /**
+     * Записывает пачку в spool; если запись не удалась, хиты теряются.
+     */
+    private void spool(List<StatsRequestDto> batch) {
+        try {
+            hitSpool.append(batch);
+        } catch (RuntimeException e) {
+            droppedSendFailed.increment(batch.size());
+            log.error("Пачка из {} хитов не записана в spool: {}", batch.size(), e.toString());
+        }
+    }
+
+    private static boolean isRejected(Throwable e) {
+        return e instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError();
+    }
+}
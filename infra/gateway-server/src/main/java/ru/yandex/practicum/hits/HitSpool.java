@@ -0,0 +1,298 @@
+package ru.yandex.practicum.hits;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.dto.StatsRequestDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Локальный spool хитов, которые {@link HitForwarder} не удалось доставить в stats-server.
+ * <p>
+ * Экземпляр занимает первый свободный файл hits.spool.path.N (N от 0) и держит на нем блокировку
+ * до остановки: экземпляры на одном хосте с одинаковым путем пишут в разные файлы, а перезапущенный
+ * экземпляр обычно получает тот же файл и досылает его содержимое.
+ * <p>
+ * Файл отображается в память целиком: заголовок (метка формата, смещения начала
+ * и конца данных) и кольцевая область данных размером hits.spool.max-size. Записи только дописываются
+ * в конец и читаются с начала; при нехватке места вытесняются самые старые записи. Запись в отображенный
+ * файл переживает падение процесса (страницы сбрасывает ядро), но не отключение питания.
+ * <p>
+ * Методы не потокобезопасны по смыслу (чтение и подтверждение должны идти парой) и вызываются
+ * только из цепочки отправки {@link HitForwarder}, где пачки идут по одной; synchronized защищает лишь от гонок
+ * при остановке.
+ * <p>
+ * Хит, который не удалось закодировать (например, строка длиннее 65535 байт в UTF-8), пропускается.
+ * Запись, которую не удалось прочитать (длина в порядке, данные повреждены), отбрасывается при чтении:
+ * иначе она возвращалась бы в каждой пачке и останавливала доставку.
+ * <p>
+ * Метрики: gateway.hits.spool.bytes — занятый объем, gateway.hits.dropped с тегом reason=spool_full,
+ * reason=unencodable и reason=corrupt.
+ */
+@Slf4j
+@Component
+public class HitSpool {
+    private static final long MAGIC = 0x5354415453504f4cL;
+    private static final int HEADER_SIZE = 3 * Long.BYTES;
+    private static final int HEAD_OFFSET = Long.BYTES;
+    private static final int TAIL_OFFSET = 2 * Long.BYTES;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int MAX_SLOTS = 64;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Counter droppedSpoolFull;
+    private final Counter droppedUnencodable;
+    private final Counter droppedCorrupt;
+
+    /**
+     * Смещения от начала данных без учета кольца: позиция в файле — HEADER_SIZE + offset % capacity.
+     * Занято tail - head байт.
+     */
+    private long head;
+    private long tail;
+
+    public HitSpool(@Value("${hits.spool.path:${java.io.tmpdir}/${spring.application.name:gateway-server}-hits.spool}")
+                    Path path,
+                    @Value("${hits.spool.max-size:16MB}") DataSize maxSize,
+                    MeterRegistry meterRegistry) throws IOException {
+        this.capacity = Math.toIntExact(maxSize.toBytes());
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel slotChannel = null;
+        FileLock slotLock = null;
+        Path slotPath = null;
+        for (int slot = 0; slot < MAX_SLOTS && slotLock == null; slot++) {
+            slotPath = Path.of(path + "." + slot);
+            slotChannel = FileChannel.open(slotPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                slotLock = slotChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // файл занят другим экземпляром в этой же JVM
+            }
+            if (slotLock == null) {
+                slotChannel.close();
+            }
+        }
+        if (slotLock == null) {
+            throw new IOException("Все " + MAX_SLOTS + " файлов spool " + path + ".N заняты другими экземплярами");
+        }
+        this.channel = slotChannel;
+        this.lock = slotLock;
+        long fileSize = HEADER_SIZE + (long) capacity;
+        // map увеличивает файл до fileSize, поэтому прежний размер запоминается заранее
+        long existingSize = channel.size();
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        if (existingSize != fileSize || buffer.getLong(0) != MAGIC) {
+            if (existingSize > HEADER_SIZE) {
+                log.warn("Spool хитов {} создан заново: формат или размер файла не совпадает", slotPath);
+            }
+            buffer.putLong(0, MAGIC);
+            writeHeader(0, 0);
+        }
+        this.head = buffer.getLong(HEAD_OFFSET);
+        this.tail = buffer.getLong(TAIL_OFFSET);
+        if (head < 0 || tail < head || tail - head > capacity) {
+            log.warn("Spool хитов {} поврежден и очищен", slotPath);
+            writeHeader(0, 0);
+        } else if (tail > head) {
+            log.info("В spool хитов {} ожидают доставки {} байт", slotPath, tail - head);
+        }
+        this.droppedSpoolFull = Counter.builder("gateway.hits.dropped")
+                .tag("reason", "spool_full")
+                .register(meterRegistry);
+        this.droppedUnencodable = Counter.builder("gateway.hits.dropped")
+                .tag("reason", "unencodable")
+                .register(meterRegistry);
+        this.droppedCorrupt = Counter.builder("gateway.hits.dropped")
+                .tag("reason", "corrupt")
+                .register(meterRegistry);
+        Gauge.builder("gateway.hits.spool.bytes", this, HitSpool::size)
+                .description("Объем хитов в spool, ожидающих доставки в stats-server")
+                .register(meterRegistry);
+    }
+
+    public synchronized boolean isEmpty() {
+        return head == tail;
+    }
+
+    public synchronized long size() {
+        return tail - head;
+    }
+
+    /**
+     * Дописывает хиты в конец; если места не хватает, вытесняет самые старые записи.
+     */
+    public synchronized void append(Collection<StatsRequestDto> hits) {
+        long dropped = 0;
+        for (StatsRequestDto hit : hits) {
+            byte[] record;
+            try {
+                record = encode(hit);
+            } catch (RuntimeException e) {
+                droppedUnencodable.increment();
+                log.warn("Хит приложения {} за {} не записан в spool: {}",
+                        hit.getApp(), hit.getTimestamp(), e.toString());
+                continue;
+            }
+            int recordSize = Integer.BYTES + record.length;
+            if (recordSize > capacity) {
+                dropped++;
+                continue;
+            }
+            while (capacity - (tail - head) < recordSize) {
+                head += Integer.BYTES + readInt(head);
+                dropped++;
+            }
+            writeInt(tail, record.length);
+            write(tail + Integer.BYTES, record);
+            // конец сдвигается после записи данных: оборванная запись не попадет в spool
+            writeHeader(head, tail + recordSize);
+        }
+        if (dropped > 0) {
+            droppedSpoolFull.increment(dropped);
+            log.warn("Spool хитов переполнен, вытеснено {} самых старых хитов", dropped);
+        }
+    }
+
+    /**
+     * Не больше max хитов с начала spool без их удаления; после доставки нужно вызвать {@link #commit}.
+     */
+    public synchronized Batch peek(int max) {
+        List<StatsRequestDto> hits = new ArrayList<>(max);
+        long position = head;
+        while (position < tail && hits.size() < max) {
+            int length = readInt(position);
+            if (length <= 0 || position + Integer.BYTES + length > tail) {
+                log.error("Spool хитов поврежден на смещении {}, {} байт отброшено", position, tail - position);
+                writeHeader(position, position);
+                break;
+            }
+            StatsRequestDto hit;
+            try {
+                hit = decode(read(position + Integer.BYTES, length));
+            } catch (RuntimeException e) {
+                if (!hits.isEmpty()) {
+                    // пачка заканчивается перед поврежденной записью, запись отбросит следующий peek
+                    break;
+                }
+                droppedCorrupt.increment();
+                log.error("Запись spool хитов на смещении {} повреждена и отброшена: {}", position, e.toString());
+                position += Integer.BYTES + length;
+                writeHeader(position, tail);
+                continue;
+            }
+            hits.add(hit);
+            position += Integer.BYTES + length;
+        }
+        return new Batch(hits, position);
+    }
+
+    /**
+     * Удаляет доставленные хиты. Если часть пачки уже вытеснена новыми записями, удаляется только остаток.
+     */
+    public synchronized void commit(Batch batch) {
+        if (batch.end() > head && batch.end() <= tail) {
+            writeHeader(batch.end(), tail);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        buffer.force();
+        lock.release();
+        channel.close();
+    }
+
+    private void writeHeader(long head, long tail) {
+        this.head = head;
+        this.tail = tail;
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.putLong(TAIL_OFFSET, tail);
+    }
+
+    private int readInt(long offset) {
+        byte[] bytes = read(offset, Integer.BYTES);
+        return ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+
+    private void writeInt(long offset, int value) {
+        write(offset, new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    private byte[] read(long offset, int length) {
+        byte[] bytes = new byte[length];
+        int start = (int) (offset % capacity);
+        int first = Math.min(length, capacity - start);
+        buffer.get(HEADER_SIZE + start, bytes, 0, first);
+        buffer.get(HEADER_SIZE, bytes, first, length - first);
+        return bytes;
+    }
+
+    private void write(long offset, byte[] bytes) {
+        int start = (int) (offset % capacity);
+        int first = Math.min(bytes.length, capacity - start);
+        buffer.put(HEADER_SIZE + start, bytes, 0, first);
+        buffer.put(HEADER_SIZE, bytes, first, bytes.length - first);
+    }
+
+    private static byte[] encode(StatsRequestDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(Objects.toString(hit.getApp(), ""));
+            out.writeUTF(Objects.toString(hit.getUri(), ""));
+            out.writeUTF(Objects.toString(hit.getIp(), ""));
+            out.writeLong(hit.getTimestamp() == null ? NO_TIMESTAMP : hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static StatsRequestDto decode(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            String app = in.readUTF();
+            String uri = in.readUTF();
+            String ip = in.readUTF();
+            long timestamp = in.readLong();
+            return new StatsRequestDto(app, uri, ip,
+                    timestamp == NO_TIMESTAMP ? null : LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Прочитанные хиты и смещение сразу после последнего из них.
+     */
+    public record Batch(List<StatsRequestDto> hits, long end) {
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.hits;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.dto.StatsRequestDto;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class HitCaptureFilterTest {
+    private final HitForwarder hitForwarder = mock(HitForwarder.class);
+
+    @Test
+    void untrustedPeerForwardedForIsIgnored() {
+        HitCaptureFilter filter = filter();
+
+        assertThat(capturedIp(filter, get("/events/1", "203.0.113.5").header("X-Forwarded-For", "198.51.100.7")))
+                .isEqualTo("203.0.113.5");
+    }
+
+    @Test
+    void trustedProxiesAreSkippedRightToLeft() {
+        HitCaptureFilter filter = filter("10.0.0.0/8");
+
+        // левее первого недоверенного адреса заголовок мог написать сам клиент
+        assertThat(capturedIp(filter, get("/events/1", "10.0.0.1")
+                .header("X-Forwarded-For", "6.6.6.6, 198.51.100.7, 10.1.2.3")))
+                .isEqualTo("198.51.100.7");
+    }
+
+    @Test
+    void forwardedForHopsFromSeveralHeadersAreJoined() {
+        HitCaptureFilter filter = filter("10.0.0.1", "10.0.0.2");
+
+        assertThat(capturedIp(filter, get("/events", "10.0.0.1")
+                .header("X-Forwarded-For", "198.51.100.7")
+                .header("X-Forwarded-For", "10.0.0.2")))
+                .isEqualTo("198.51.100.7");
+    }
+
+    @Test
+    void ipv4MappedAddressesAreNormalized() {
+        HitCaptureFilter filter = filter("10.0.0.1");
+
+        assertThat(capturedIp(filter, get("/events/1", "::ffff:10.0.0.1").header("X-Forwarded-For", "::ffff:198.51.100.7")))
+                .isEqualTo("198.51.100.7");
+    }
+
+    @Test
+    void unparsableHopBehindTrustedProxyIsNotRecorded() {
+        HitCaptureFilter filter = filter("10.0.0.1");
+
+        run(filter, get("/events/1", "10.0.0.1").header("X-Forwarded-For", "unknown"), HttpStatus.OK);
+
+        verify(hitForwarder, never()).offer(any());
+    }
+
+    @Test
+    void onlySuccessfulResponsesAreRecorded() {
+        HitCaptureFilter filter = filter();
+
+        run(filter, get("/events/1", "203.0.113.5"), HttpStatus.NOT_FOUND);
+        run(filter, get("/events/1", "203.0.113.5"), HttpStatus.INTERNAL_SERVER_ERROR);
+        verify(hitForwarder, never()).offer(any());
+
+        run(filter, get("/events/1", "203.0.113.5"), HttpStatus.OK);
+        verify(hitForwarder).offer(any());
+    }
+
+    @Test
+    void otherPathsAreNotRecorded() {
+        HitCaptureFilter filter = filter();
+
+        run(filter, get("/users/1/events", "203.0.113.5"), HttpStatus.OK);
+
+        verify(hitForwarder, never()).offer(any());
+    }
+
+    private HitCaptureFilter filter(String... trustedProxies) {
+        return new HitCaptureFilter(hitForwarder, "main-server", List.of("/events", "/events/*"), List.of("GET"),
+                List.of(trustedProxies));
+    }
+
+    private String capturedIp(HitCaptureFilter filter, MockServerHttpRequest.BaseBuilder<?> request) {
+        run(filter, request, HttpStatus.OK);
+        ArgumentCaptor<StatsRequestDto> hit = ArgumentCaptor.forClass(StatsRequestDto.class);
+        verify(hitForwarder).offer(hit.capture());
+        assertThat(hit.getValue().getApp()).isEqualTo("main-server");
+        return hit.getValue().getIp();
+    }
+
+    private static void run(HitCaptureFilter filter, MockServerHttpRequest.BaseBuilder<?> request, HttpStatus status) {
+        GatewayFilterChain chain = exchange -> {
+            exchange.getResponse().setStatusCode(status);
+            return Mono.empty();
+        };
+        filter.filter(MockServerWebExchange.from(request), chain).block();
+    }
+
+    private static MockServerHttpRequest.BaseBuilder<?> get(String path, String remoteAddress) {
+        return MockServerHttpRequest.get(path).remoteAddress(new InetSocketAddress(remoteAddress, 40000));
+    }
+}
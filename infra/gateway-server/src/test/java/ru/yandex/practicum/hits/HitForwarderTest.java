@@ -0,0 +1,139 @@
+package ru.yandex.practicum.hits;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.yandex.practicum.dto.StatsRequestDto;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Доставка через локальный HTTP-сервер вместо stats-server; балансировщик подменяет адрес экземпляра.
+ */
+class HitForwarderTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2030, 6, 1, 19, 0);
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger status = new AtomicInteger(201);
+    private final AtomicInteger posts = new AtomicInteger();
+    private HttpServer server;
+    private HitSpool spool;
+    private HitForwarder forwarder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/hits", exchange -> {
+            StatsRequestDto[] hits = cborMapper.readValue(exchange.getRequestBody().readAllBytes(), StatsRequestDto[].class);
+            int code = status.get();
+            if (code == 201) {
+                Arrays.stream(hits).map(StatsRequestDto::getUri).forEach(received::add);
+            }
+            posts.incrementAndGet();
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        server.start();
+
+        URI statsServer = URI.create("http://localhost:" + server.getAddress().getPort());
+        ReactorLoadBalancerExchangeFilterFunction loadBalancer =
+                mock(ReactorLoadBalancerExchangeFilterFunction.class, CALLS_REAL_METHODS);
+        doAnswer(invocation -> {
+            ClientRequest request = invocation.getArgument(0);
+            URI instance = URI.create(statsServer + request.url().getRawPath());
+            return invocation.<ExchangeFunction>getArgument(1).exchange(ClientRequest.from(request).url(instance).build());
+        }).when(loadBalancer).filter(any(), any());
+
+        spool = new HitSpool(dir.resolve("hits.spool"), DataSize.ofKilobytes(64), meterRegistry);
+        forwarder = new HitForwarder(WebClient.builder(), loadBalancer, spool, "stats-server",
+                2, Duration.ofMillis(20), 100, Duration.ofSeconds(2), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        forwarder.shutdown();
+        spool.close();
+        server.stop(0);
+    }
+
+    @Test
+    void spooledHitsAreReplayedInOrderAfterRecovery() {
+        status.set(500);
+        offer(1, 3);
+        await(() -> posts.get() > 0 && spool.peek(10).hits().size() == 3);
+        // пока spool не пуст, новые хиты идут за старыми, а не в обход
+        offer(4, 5);
+        await(() -> spool.peek(10).hits().size() == 5);
+
+        status.set(201);
+        await(() -> received.size() == 5);
+
+        assertThat(received).containsExactly("/events/1", "/events/2", "/events/3", "/events/4", "/events/5");
+        assertThat(spool.isEmpty()).isTrue();
+        assertThat(meterRegistry.counter("gateway.hits.forwarded").count()).isEqualTo(5);
+    }
+
+    @Test
+    void rejectedBatchIsDroppedNotSpooled() {
+        status.set(400);
+        offer(1, 2);
+        await(() -> meterRegistry.counter("gateway.hits.dropped", "reason", "rejected").count() == 2);
+
+        assertThat(spool.isEmpty()).isTrue();
+        assertThat(received).isEmpty();
+    }
+
+    private void offer(int from, int to) {
+        IntStream.rangeClosed(from, to)
+                .mapToObj(i -> new StatsRequestDto("main-server", "/events/" + i, "10.0.0.1", TIMESTAMP))
+                .forEach(forwarder::offer);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Условие не выполнено за " + WAIT);
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
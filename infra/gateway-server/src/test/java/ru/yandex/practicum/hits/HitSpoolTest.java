@@ -0,0 +1,126 @@
+package ru.yandex.practicum.hits;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.dto.StatsRequestDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitSpoolTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2030, 6, 1, 19, 0);
+    // длина + "main-server" + "/events/N" + "10.0.0.1" + время: 4 + 13 + 11 + 10 + 8
+    private static final int RECORD_SIZE = 46;
+    private static final int HEADER_SIZE = 24;
+    // четыре записи и 16 байт в конце кольца
+    private static final int CAPACITY = 200;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HitSpool spool;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        spool.close();
+    }
+
+    @Test
+    void appendPeekCommitAcrossWraparound() throws IOException {
+        spool = open();
+        spool.append(hits(1, 3));
+        spool.commit(spool.peek(10));
+
+        // записи 4-6 пересекают конец кольца, 5-я разбита на две части
+        spool.append(hits(4, 6));
+        spool.close();
+        spool = open();
+
+        HitSpool.Batch batch = spool.peek(10);
+        assertThat(uris(batch)).containsExactly("/events/4", "/events/5", "/events/6");
+        assertThat(batch.hits()).allSatisfy(hit -> {
+            assertThat(hit.getApp()).isEqualTo("main-server");
+            assertThat(hit.getIp()).isEqualTo("10.0.0.1");
+            assertThat(hit.getTimestamp()).isEqualTo(TIMESTAMP);
+        });
+        spool.commit(batch);
+        assertThat(spool.isEmpty()).isTrue();
+    }
+
+    @Test
+    void peekDoesNotRemoveUntilCommit() throws IOException {
+        spool = open();
+        spool.append(hits(1, 3));
+
+        assertThat(uris(spool.peek(2))).containsExactly("/events/1", "/events/2");
+        HitSpool.Batch batch = spool.peek(2);
+        spool.commit(batch);
+
+        assertThat(uris(spool.peek(10))).containsExactly("/events/3");
+    }
+
+    @Test
+    void appendEvictsOldestWhenFull() throws IOException {
+        spool = open();
+        spool.append(hits(1, 5));
+
+        assertThat(uris(spool.peek(10))).containsExactly("/events/2", "/events/3", "/events/4", "/events/5");
+        assertThat(dropped("spool_full")).isEqualTo(1);
+    }
+
+    @Test
+    void corruptRecordIsDroppedOnce() throws IOException {
+        spool = open();
+        spool.append(hits(1, 3));
+        spool.close();
+        // длина второй записи цела, а длина строки app в ней больше самой записи
+        corrupt(HEADER_SIZE + RECORD_SIZE + Integer.BYTES, new byte[]{(byte) 0xff, (byte) 0xff});
+        spool = open();
+
+        HitSpool.Batch first = spool.peek(10);
+        assertThat(uris(first)).containsExactly("/events/1");
+        spool.commit(first);
+
+        HitSpool.Batch rest = spool.peek(10);
+        assertThat(uris(rest)).containsExactly("/events/3");
+        spool.commit(rest);
+        assertThat(spool.isEmpty()).isTrue();
+        assertThat(dropped("corrupt")).isEqualTo(1);
+    }
+
+    private HitSpool open() throws IOException {
+        return new HitSpool(dir.resolve("hits.spool"), DataSize.ofBytes(CAPACITY), meterRegistry);
+    }
+
+    private void corrupt(long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("hits.spool.0"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.counter("gateway.hits.dropped", "reason", reason).count();
+    }
+
+    private static List<StatsRequestDto> hits(int from, int to) {
+        return IntStream.rangeClosed(from, to)
+                .mapToObj(i -> new StatsRequestDto("main-server", "/events/" + i, "10.0.0.1", TIMESTAMP))
+                .toList();
+    }
+
+    private static List<String> uris(HitSpool.Batch batch) {
+        return batch.hits().stream().map(StatsRequestDto::getUri).toList();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных одинаковых запросов: пока запрос с ключом выполняется, вызовы с тем же ключом
+ * не идут в stats-server, а получают его результат или ошибку. Завершенный запрос сразу забывается,
+ * так что это не кеш: следующий вызов после ответа выполняет новый запрос.
+ * <p>
+ * Метрика stats.client.requests.collapsed с тегом operation — вызовы, получившие чужой результат.
+ */
+class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final Counter collapsed;
+
+    SingleFlight(String operation, Executor executor, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.collapsed = Counter.builder("stats.client.requests.collapsed")
+                .description("Вызовы, объединенные с одновременным одинаковым запросом к stats-server")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Результат общего запроса. Каждый вызывающий получает свою копию future: таймаут или отмена
+     * у одного не завершают запрос для остальных.
+     */
+    CompletableFuture<V> execute(K key, Supplier<V> request) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            collapsed.increment();
+            return existing.copy();
+        }
+        executor.execute(() -> {
+            try {
+                created.complete(request.get());
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, created);
+            }
+        });
+        return created.copy();
+    }
+}
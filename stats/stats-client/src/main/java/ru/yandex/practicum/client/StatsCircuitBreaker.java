@@ -0,0 +1,129 @@
+package ru.yandex.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Автомат отключения чтения статистики, когда stats-server не отвечает.
+ * <p>
+ * CLOSED: запросы идут, failure-threshold ошибок подряд переводят в OPEN. OPEN: запросы сразу отклоняются
+ * {@link StatsUnavailableException}, через open-duration автомат переходит в HALF_OPEN. HALF_OPEN: проходит
+ * один пробный запрос; успех закрывает автомат, ошибка снова открывает.
+ * <p>
+ * Метрики: stats.client.breaker.state (0 — CLOSED, 1 — HALF_OPEN, 2 — OPEN)
+ * stats.client.breaker.transitions с тегами from и to, stats.client.breaker.rejected.
+ */
+@Slf4j
+@Component
+public class StatsCircuitBreaker {
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private final MeterRegistry meterRegistry;
+    private final Map<State, Map<State, Counter>> transitions = new EnumMap<>(State.class);
+    private final Counter rejected;
+    private final Clock clock;
+    private volatile long openedAt;
+
+    @Autowired
+    public StatsCircuitBreaker(@Value("${stats-client.breaker.failure-threshold:5}") int failureThreshold,
+                               @Value("${stats-client.breaker.open-duration:PT10S}") Duration openDuration,
+                               MeterRegistry meterRegistry) {
+        this(failureThreshold, openDuration, meterRegistry, Clock.systemUTC());
+    }
+
+    StatsCircuitBreaker(int failureThreshold, Duration openDuration, MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDuration.toMillis();
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("stats.client.breaker.state", state, s -> s.get().ordinal())
+                .description("Состояние автомата отключения чтения статистики")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("stats.client.breaker.rejected")
+                .description("Запросы, отклоненные автоматом без обращения к stats-server")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Разрешение на запрос; после него нужно вызвать {@link #onSuccess()} или {@link #onFailure()}.
+     *
+     * @throws StatsUnavailableException если автомат открыт или пробный запрос уже выполняется
+     */
+    public void acquire() {
+        State current = state.get();
+        if (current == State.OPEN) {
+            if (clock.millis() - openedAt < openDurationMs) {
+                rejected.increment();
+                throw new StatsUnavailableException("Чтение статистики отключено после ошибок stats-server");
+            }
+            transition(State.OPEN, State.HALF_OPEN);
+            current = state.get();
+        }
+        if (current == State.HALF_OPEN && !trialInFlight.compareAndSet(false, true)) {
+            rejected.increment();
+            throw new StatsUnavailableException("Выполняется пробный запрос к stats-server");
+        }
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() == State.HALF_OPEN) {
+            trialInFlight.set(false);
+            transition(State.HALF_OPEN, State.CLOSED);
+        }
+    }
+
+    public void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            trialInFlight.set(false);
+            open(State.HALF_OPEN);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    private void open(State from) {
+        openedAt = clock.millis();
+        consecutiveFailures.set(0);
+        transition(from, State.OPEN);
+    }
+
+    private void transition(State from, State to) {
+        if (state.compareAndSet(from, to)) {
+            log.warn("Автомат чтения статистики: {} -> {}", from, to);
+            transitionCounter(from, to).increment();
+        }
+    }
+
+    private synchronized Counter transitionCounter(State from, State to) {
+        return transitions.computeIfAbsent(from, f -> new EnumMap<>(State.class))
+                .computeIfAbsent(to, t -> Counter.builder("stats.client.breaker.transitions")
+                        .tag("from", from.name())
+                        .tag("to", to.name())
+                        .register(meterRegistry));
+    }
+}
@@ -1,14 +1,57 @@
 package ru.yandex.practicum.client;
 
+import ru.yandex.practicum.dto.EventViewsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestParamsDto;
 import ru.yandex.practicum.dto.StatsResponseDto;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface StatsClient {
 
+    /**
+     * Статистика по uri. Одновременные одинаковые запросы (в том числе из {@link #getAllStatsAsync})
+     * выполняются одним обращением к stats-server, и все вызывающие получают его результат.
+     *
+     * @return статистика; пустая, если ее получить не удалось
+     */
     Collection<StatsResponseDto> getAllStats(StatsRequestParamsDto statsRequestParamsDto);
 
+    /**
+     * {@link #getAllStats} без блокировки вызывающего потока. Ошибки не подменяются пустым результатом:
+     * future завершается с {@link java.util.concurrent.TimeoutException}, если ответ не получен
+     * за stats-client.deadline.get, и с {@link StatsUnavailableException}, если чтение отключено автоматом
+     * {@link StatsCircuitBreaker}.
+     */
+    CompletableFuture<Collection<StatsResponseDto>> getAllStatsAsync(StatsRequestParamsDto statsRequestParamsDto);
+
+    void streamStats(StatsRequestParamsDto statsRequestParamsDto, Consumer<StatsResponseDto> consumer);
+
+    /**
+     * {@link #streamStats} без блокировки вызывающего потока. Future завершается после последней строки
+     * или с ошибкой запроса, как у {@link #getAllStatsAsync}; строки до ошибки уже переданы в consumer.
+     */
+    CompletableFuture<Void> streamStatsAsync(StatsRequestParamsDto statsRequestParamsDto, Consumer<StatsResponseDto> consumer);
+
+    /**
+     * Просмотры событий одним запросом: у каждого события свое начало периода, конец — текущий момент.
+     *
+     * @return число просмотров по id события; пустая, если статистику получить не удалось
+     */
+    Map<Long, Long> getEventViews(List<EventViewsRequestDto> windows, boolean unique);
+
+    /**
+     * {@link #getEventViews} без блокировки вызывающего потока, с ошибками как у {@link #getAllStatsAsync}.
+     */
+    CompletableFuture<Map<Long, Long>> getEventViewsAsync(List<EventViewsRequestDto> windows, boolean unique);
+
+    /**
+     * Отправляет один хит синхронно; ошибка доставки только пишется в лог. Хиты запросов к событиям
+     * записывает шлюз, поэтому основной сервис этот метод не вызывает.
+     */
     void postStats(StatsRequestDto statsRequestDto);
 }
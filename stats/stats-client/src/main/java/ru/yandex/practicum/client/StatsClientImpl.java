@@ -1,30 +1,57 @@
 package ru.yandex.practicum.client;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import org.springframework.retry.support.RetryTemplate;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Component;
-import org.springframework.retry.backoff.FixedBackOffPolicy;
-import org.springframework.retry.policy.MaxAttemptsRetryPolicy;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import org.springframework.web.util.UriComponentsBuilder;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestParamsDto;
 import ru.yandex.practicum.dto.StatsResponseDto;
 import ru.yandex.practicum.utils.JsonFormatPattern;
 
 import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * @author PopovN
@@ -34,38 +61,210 @@ import java.util.Objects;
 @Slf4j
 @Component
 public class StatsClientImpl implements StatsClient{
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final RestTemplate rest;
-    private final DiscoveryClient discoveryClient;
-    private final RetryTemplate retryTemplate;
-    private final String statsServiceId;
+    private final StatsServerInstances instances;
+    private final StatsCircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+    private final ObjectReader statsResponseReader;
+
+    /**
+     * Формат тел запросов и ответов stats-server: application/json или application/cbor (stats-client.wire-format).
+     * Потоковая статистика всегда идет в NDJSON.
+     */
+    private final MediaType wireFormat;
+
+    /**
+     * Асинхронные запросы выполняются блокирующим RestTemplate в виртуальных потоках: ожидание ответа
+     * не занимает поток платформы, а вызывающий поток свободен до join().
+     */
+    private final ExecutorService asyncExecutor;
+    private final Duration getDeadline;
+    private final SingleFlight<StatsKey, Collection<StatsResponseDto>> statsFlight;
+    private final SingleFlight<ViewsKey, Map<Long, Long>> viewsFlight;
+    private final long coalesceBucketSeconds;
 
     @Autowired
-    public StatsClientImpl(DiscoveryClient discoveryClient,
-                       @Value("${discovery.services.stats-server-id}") String statsServiceId,
-                       RestTemplateBuilder restTemplateBuilder) {
-        this.discoveryClient = discoveryClient;
-        this.statsServiceId = statsServiceId;
+    public StatsClientImpl(StatsServerInstances instances,
+                       StatsCircuitBreaker circuitBreaker,
+                       @Value("${stats-client.deadline.connect:PT1S}") Duration connectTimeout,
+                       @Value("${stats-client.deadline.get:PT2S}") Duration getDeadline,
+                       @Value("${stats-client.wire-format:json}") String wireFormat,
+                       @Value("${stats-client.coalesce.bucket:PT1S}") Duration coalesceBucket,
+                       RestTemplateBuilder restTemplateBuilder,
+                       MeterRegistry meterRegistry,
+                       ObjectMapper objectMapper,
+                       Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.instances = instances;
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
+        this.statsResponseReader = objectMapper.readerFor(StatsResponseDto.class);
+        this.wireFormat = switch (wireFormat) {
+            case "json" -> MediaType.APPLICATION_JSON;
+            case "cbor" -> MediaType.APPLICATION_CBOR;
+            default -> throw new IllegalArgumentException("Неизвестный формат обмена со stats-server: " + wireFormat);
+        };
+        this.getDeadline = getDeadline;
+        this.asyncExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("stats-client-", 0).factory());
+        this.coalesceBucketSeconds = Math.max(1, coalesceBucket.toSeconds());
+        this.statsFlight = new SingleFlight<>("stats", asyncExecutor, meterRegistry);
+        this.viewsFlight = new SingleFlight<>("views", asyncExecutor, meterRegistry);
+        // HttpComponentsClientHttpRequestFactory в Spring 6.1 не принимает таймаут чтения: он задается
+        // в настройках соединений клиента. Виртуальный поток не ждет ответа дольше срока асинхронного вызова
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(getDeadline))
+                .build();
         this.rest = restTemplateBuilder
                 .uriTemplateHandler(new DefaultUriBuilderFactory(""))
-                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory())
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                        .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                                .setDefaultConnectionConfig(connectionConfig)
+                                .build())
+                        .build()))
+                .additionalMessageConverters(new MappingJackson2CborHttpMessageConverter(
+                        objectMapperBuilder.factory(new CBORFactory()).build()))
                 .build();
-        this.retryTemplate = new RetryTemplate();
-        FixedBackOffPolicy fixedBackOffPolicy = new FixedBackOffPolicy();
-        fixedBackOffPolicy.setBackOffPeriod(3000L);
-        retryTemplate.setBackOffPolicy(fixedBackOffPolicy);
-
-        MaxAttemptsRetryPolicy retryPolicy = new MaxAttemptsRetryPolicy();
-        retryPolicy.setMaxAttempts(3);
-        retryTemplate.setRetryPolicy(retryPolicy);
     }
 
     @Override
     public Collection<StatsResponseDto> getAllStats(StatsRequestParamsDto statsRequestParamsDto) {
+        try {
+            return join(coalescedStats(statsRequestParamsDto));
+        } catch (StatsUnavailableException e) {
+            log.warn("Get stats was skipped: {}", e.getMessage());
+        } catch (HttpStatusCodeException e) {
+            log.error("Get stats was not successful with code {} and message {}", e.getStatusCode(), e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("Get stats was not successful with exception {} and message {}", e.getClass().getName(), e.getMessage(), e);
+        }
+        return List.of();
+    }
+
+    /**
+     * В отличие от {@link #getAllStats} ошибки не подменяются пустым результатом: future завершается
+     * с исключением запроса, {@link StatsUnavailableException} при открытом автомате
+     * или TimeoutException по истечении stats-client.deadline.get.
+     */
+    @Override
+    public CompletableFuture<Collection<StatsResponseDto>> getAllStatsAsync(StatsRequestParamsDto statsRequestParamsDto) {
+        return coalescedStats(statsRequestParamsDto)
+                .orTimeout(getDeadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Одновременные запросы с одинаковыми uris, unique, approximate и периодом, совпадающим
+     * с точностью до stats-client.coalesce.bucket, выполняются одним обращением к stats-server.
+     */
+    private CompletableFuture<Collection<StatsResponseDto>> coalescedStats(StatsRequestParamsDto statsRequestParamsDto) {
         if (!checkValidRequestParamsDto(statsRequestParamsDto)) {
             log.error("Get stats was not successful because of incorrect parameters {}", statsRequestParamsDto);
-            return List.of();
+            return CompletableFuture.completedFuture(List.of());
+        }
+        StatsKey key = new StatsKey(
+                truncate(statsRequestParamsDto.getStart()),
+                truncate(statsRequestParamsDto.getEnd()),
+                new TreeSet<>(statsRequestParamsDto.getUris()),
+                Boolean.TRUE.equals(statsRequestParamsDto.getUnique()),
+                Boolean.TRUE.equals(statsRequestParamsDto.getApproximate()));
+        return statsFlight.execute(key, () -> fetchAllStats(statsRequestParamsDto));
+    }
+
+    private Collection<StatsResponseDto> fetchAllStats(StatsRequestParamsDto statsRequestParamsDto) {
+        HttpEntity<String> requestEntity = new HttpEntity<>(defaultHeaders());
+        ResponseEntity<StatsResponseDto[]> statServerResponse = read("stats", statsUri(statsRequestParamsDto),
+                target -> rest.exchange(target, HttpMethod.GET, requestEntity, StatsResponseDto[].class));
+        return List.of(Objects.requireNonNull(statServerResponse.getBody()));
+    }
+
+    /**
+     * Читает статистику потоком NDJSON и передает строки в consumer по мере их получения, не собирая ответ в памяти.
+     * В отличие от {@link #getAllStats} uris можно не указывать: тогда приходит статистика по всем uri.
+     */
+    @Override
+    public void streamStats(StatsRequestParamsDto statsRequestParamsDto, Consumer<StatsResponseDto> consumer) {
+        if (!checkValidPeriod(statsRequestParamsDto)) {
+            log.error("Stream stats was not successful because of incorrect parameters {}", statsRequestParamsDto);
+            return;
+        }
+        try {
+            join(streamStatsAsync(statsRequestParamsDto, consumer));
+        } catch (StatsUnavailableException e) {
+            log.warn("Stream stats was skipped: {}", e.getMessage());
+        } catch (HttpStatusCodeException e) {
+            log.error("Stream stats was not successful with code {} and message {}", e.getStatusCode(), e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("Stream stats was not successful with exception {} and message {}", e.getClass().getName(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ошибки, как и в {@link #getAllStatsAsync}, передаются через future. Общего срока у потока нет:
+     * он может быть длинным, поэтому ограничено только ожидание очередной порции ответа.
+     */
+    @Override
+    public CompletableFuture<Void> streamStatsAsync(StatsRequestParamsDto statsRequestParamsDto,
+                                                    Consumer<StatsResponseDto> consumer) {
+        if (!checkValidPeriod(statsRequestParamsDto)) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Некорректный период статистики: " + statsRequestParamsDto));
+        }
+        return CompletableFuture.runAsync(() -> read("stream", statsUri(statsRequestParamsDto),
+                target -> rest.execute(target, HttpMethod.GET,
+                        request -> request.getHeaders().setAccept(List.of(APPLICATION_NDJSON)),
+                        response -> {
+                            try (MappingIterator<StatsResponseDto> rows = statsResponseReader.readValues(response.getBody())) {
+                                while (rows.hasNextValue()) {
+                                    consumer.accept(rows.nextValue());
+                                }
+                            }
+                            return null;
+                        })), asyncExecutor);
+    }
+
+    @Override
+    public Map<Long, Long> getEventViews(List<EventViewsRequestDto> windows, boolean unique) {
+        try {
+            return join(coalescedEventViews(windows, unique));
+        } catch (StatsUnavailableException e) {
+            log.warn("Get event views was skipped: {}", e.getMessage());
+        } catch (HttpStatusCodeException e) {
+            log.error("Get event views was not successful with code {} and message {}", e.getStatusCode(), e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("Get event views was not successful with exception {} and message {}", e.getClass().getName(), e.getMessage(), e);
+        }
+        return Map.of();
+    }
+
+    /**
+     * Ошибки, как и в {@link #getAllStatsAsync}, передаются через future.
+     */
+    @Override
+    public CompletableFuture<Map<Long, Long>> getEventViewsAsync(List<EventViewsRequestDto> windows, boolean unique) {
+        return coalescedEventViews(windows, unique)
+                .orTimeout(getDeadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<Map<Long, Long>> coalescedEventViews(List<EventViewsRequestDto> windows, boolean unique) {
+        if (windows.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
         }
+        return viewsFlight.execute(new ViewsKey(Set.copyOf(windows), unique), () -> fetchEventViews(windows, unique));
+    }
 
+    private Map<Long, Long> fetchEventViews(List<EventViewsRequestDto> windows, boolean unique) {
+        String uri = UriComponentsBuilder.fromPath("/stats/views")
+                .queryParam("unique", unique)
+                .toUriString();
+        HttpEntity<List<EventViewsRequestDto>> requestEntity = new HttpEntity<>(windows, defaultHeaders());
+        Map<Long, Long> views = read("views", uri, target -> rest.exchange(target, HttpMethod.POST, requestEntity,
+                new ParameterizedTypeReference<Map<Long, Long>>() {
+                })).getBody();
+        return views == null ? Map.of() : views;
+    }
+
+    private static String statsUri(StatsRequestParamsDto statsRequestParamsDto) {
         UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromPath("/stats")
                 .queryParam("start", statsRequestParamsDto.getStart().format(JsonFormatPattern.DATE_TIME_FORMATTER))
                 .queryParam("end", statsRequestParamsDto.getEnd().format(JsonFormatPattern.DATE_TIME_FORMATTER));
@@ -76,28 +275,21 @@ public class StatsClientImpl implements StatsClient{
         if (statsRequestParamsDto.getUnique() != null) {
             uriComponentsBuilder.queryParam("unique", statsRequestParamsDto.getUnique());
         }
-        String uri = uriComponentsBuilder.build(false)
+        if (statsRequestParamsDto.getApproximate() != null) {
+            uriComponentsBuilder.queryParam("approximate", statsRequestParamsDto.getApproximate());
+        }
+        return uriComponentsBuilder.build(false)
                 .encode()
                 .toUriString();
+    }
 
-        HttpEntity<String> requestEntity = new HttpEntity<>(defaultHeaders());
-        ResponseEntity<StatsResponseDto[]> statServerResponse;
-        try {
-            statServerResponse = rest.exchange(makeUri(uri), HttpMethod.GET, requestEntity, StatsResponseDto[].class);
-        } catch (HttpStatusCodeException e) {
-            log.error("Get stats was not successful with code {} and message {}", e.getStatusCode(), e.getMessage(), e);
-            return List.of();
-        } catch (Exception e) {
-            log.error("Get stats was not successful with exception {} and message {}", e.getClass().getName(), e.getMessage(), e);
-            return List.of();
-        }
-        statServerResponse.getBody();
-        return List.of(Objects.requireNonNull(statServerResponse.getBody()));
+    private static boolean checkValidPeriod(StatsRequestParamsDto statsRequestParamsDto) {
+        return statsRequestParamsDto.getStart() != null && statsRequestParamsDto.getEnd() != null
+                && !statsRequestParamsDto.getStart().isAfter(statsRequestParamsDto.getEnd());
     }
 
     private boolean checkValidRequestParamsDto(StatsRequestParamsDto statsRequestParamsDto) {
-        if (statsRequestParamsDto.getStart() == null || statsRequestParamsDto.getEnd() == null
-                || statsRequestParamsDto.getStart().isAfter(statsRequestParamsDto.getEnd())) {
+        if (!checkValidPeriod(statsRequestParamsDto)) {
             return false;
         }
 
@@ -105,11 +297,14 @@ public class StatsClientImpl implements StatsClient{
                 && !statsRequestParamsDto.getUris().stream().allMatch(String::isBlank);
     }
 
+    /**
+     * Хиты в основном записывает шлюз; этот вызов отправляет один хит синхронно и только пишет ошибку в лог.
+     */
     @Override
     public void postStats(StatsRequestDto statsRequestDto) {
         HttpEntity<StatsRequestDto> requestEntity = new HttpEntity<>(statsRequestDto, defaultHeaders());
         try {
-            rest.exchange(makeUri("/hit"), HttpMethod.POST, requestEntity, Object.class);
+            call("hit", "/hit", target -> rest.exchange(target, HttpMethod.POST, requestEntity, Void.class));
         } catch (HttpStatusCodeException e) {
             log.error("Hit stats was not successful with code {} and message {}", e.getStatusCode(), e.getMessage(), e);
         } catch (Exception e) {
@@ -117,29 +312,98 @@ public class StatsClientImpl implements StatsClient{
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        asyncExecutor.shutdown();
+    }
+
     private HttpHeaders defaultHeaders() {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        headers.setContentType(wireFormat);
+        headers.setAccept(List.of(wireFormat));
         return headers;
     }
 
-    private URI makeUri(String path) {
-        ServiceInstance instance = retryTemplate.execute(cxt -> getInstance(statsServiceId));
-        log.info("Host() = {} Port() = {}", instance.getHost(), instance.getPort());
-        return URI.create("http://" + instance.getHost() + ":" + instance.getPort() + path);
+    /**
+     * Чтение статистики через {@link StatsCircuitBreaker}: ответ 4xx — ошибка запроса, а не stats-server,
+     * и автомат считает его успехом. Любой другой выход, включая Error, — сбой: иначе пробный запрос
+     * в HALF_OPEN не освободился бы и автомат отклонял бы все запросы.
+     * Запись хитов идет мимо автомата.
+     */
+    private <T> T read(String operation, String path, Function<URI, T> request) {
+        circuitBreaker.acquire();
+        boolean succeeded = false;
+        try {
+            T result = call(operation, path, request);
+            succeeded = true;
+            return result;
+        } catch (HttpClientErrorException e) {
+            succeeded = true;
+            throw e;
+        } finally {
+            if (succeeded) {
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onFailure();
+            }
+        }
+    }
+
+    /**
+     * Выполняет запрос к очередному экземпляру stats-server и сообщает {@link StatsServerInstances} о результате:
+     * ошибка соединения и ответ 5xx засчитываются экземпляру как сбой, ответ 4xx — нет.
+     * Длительность вместе с выбором экземпляра пишется в stats.client.requests с тегами operation и outcome.
+     */
+    private <T> T call(String operation, String path, Function<URI, T> request) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "UNKNOWN";
+        try {
+            ServiceInstance instance = instances.choose();
+            log.debug("Host() = {} Port() = {}", instance.getHost(), instance.getPort());
+            try {
+                T result = request.apply(URI.create("http://" + instance.getHost() + ":" + instance.getPort() + path));
+                instances.reportSuccess(instance);
+                outcome = "SUCCESS";
+                return result;
+            } catch (HttpServerErrorException | ResourceAccessException e) {
+                instances.reportFailure(instance);
+                throw e;
+            }
+        } catch (HttpStatusCodeException e) {
+            outcome = e.getStatusCode().is4xxClientError() ? "CLIENT_ERROR" : "SERVER_ERROR";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("stats.client.requests")
+                    .description("Запросы к stats-server, включая выбор экземпляра")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private LocalDateTime truncate(LocalDateTime time) {
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(epochSecond - Math.floorMod(epochSecond, coalesceBucketSeconds), 0, ZoneOffset.UTC);
     }
 
-    private ServiceInstance getInstance(String serviceId) {
+    /**
+     * Ошибка запроса из future без обертки CompletionException, чтобы синхронные методы разбирали ее как раньше.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
         try {
-            return discoveryClient
-                    .getInstances(serviceId)
-                    .getFirst();
-        } catch (Exception exception) {
-            throw new RuntimeException(
-                    "Ошибка обнаружения адреса сервиса статистики с id: " + serviceId,
-                    exception
-            );
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
+
+    private record StatsKey(LocalDateTime start, LocalDateTime end, Set<String> uris, boolean unique, boolean approximate) {
+    }
+
+    private record ViewsKey(Set<EventViewsRequestDto> windows, boolean unique) {
+    }
 }
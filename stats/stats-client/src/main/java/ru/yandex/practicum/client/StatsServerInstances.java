@@ -0,0 +1,176 @@
+package ru.yandex.practicum.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Экземпляры stats-server для {@link StatsClientImpl}: список из discovery кешируется и обновляется
+ * фоновым потоком раз в stats-client.discovery.refresh-interval.
+ * <p>
+ * По умолчанию все запросы идут на первый исправный экземпляр в порядке URI, одинаковом у всех клиентов,
+ * а остальные служат резервом. stats-server держит состояние в памяти: хиты в буфере записи, которые видны
+ * только принявшему их экземпляру, и окно последних часов (stats.hot-window). При распределении по кругу
+ * чтение с другого экземпляра не видело бы только что отправленных хитов. Распределять запросы по кругу
+ * (stats-client.discovery.round-robin=true) можно, только если такое отставание допустимо,
+ * а окно stats.hot-window отключено.
+ * <p>
+ * Пассивная проверка здоровья: экземпляр, на котором подряд eject-after-failures запросов завершились
+ * ошибкой соединения или 5xx, исключается из круга на ejection-duration. Если исключены все экземпляры,
+ * запросы идут по всем: лучше попытаться, чем отказать сразу.
+ * <p>
+ * Метрики: stats.client.discovery — длительность запросов к discovery с тегом outcome,
+ * stats.client.discovery.instances — число известных экземпляров.
+ */
+@Slf4j
+@Component
+public class StatsServerInstances {
+    private final DiscoveryClient discoveryClient;
+    private final String serviceId;
+    private final int ejectAfterFailures;
+    private final Duration ejectionDuration;
+    private final boolean roundRobin;
+    private final AtomicReference<List<ServiceInstance>> instances = new AtomicReference<>(List.of());
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<URI, Health> health = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+
+    @Autowired
+    public StatsServerInstances(DiscoveryClient discoveryClient,
+                                @Value("${discovery.services.stats-server-id}") String serviceId,
+                                @Value("${stats-client.discovery.refresh-interval:PT5S}") Duration refreshInterval,
+                                @Value("${stats-client.discovery.eject-after-failures:3}") int ejectAfterFailures,
+                                @Value("${stats-client.discovery.ejection-duration:PT30S}") Duration ejectionDuration,
+                                @Value("${stats-client.discovery.round-robin:false}") boolean roundRobin,
+                                MeterRegistry meterRegistry) {
+        this(discoveryClient, serviceId, refreshInterval, ejectAfterFailures, ejectionDuration, roundRobin,
+                meterRegistry, Clock.systemUTC());
+    }
+
+    StatsServerInstances(DiscoveryClient discoveryClient, String serviceId, Duration refreshInterval,
+                         int ejectAfterFailures, Duration ejectionDuration, boolean roundRobin,
+                         MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.discoveryClient = discoveryClient;
+        this.serviceId = serviceId;
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectionDuration = ejectionDuration;
+        this.roundRobin = roundRobin;
+        Gauge.builder("stats.client.discovery.instances", instances, list -> list.get().size())
+                .description("Экземпляры stats-server в последнем ответе discovery")
+                .register(meterRegistry);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-instances-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refresher.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Первый исправный экземпляр или, при round-robin, следующий по кругу. Пока фоновый поток не получил список,
+     * discovery опрашивается в вызывающем потоке один раз, без повторов.
+     */
+    public ServiceInstance choose() {
+        List<ServiceInstance> all = instances.get();
+        if (all.isEmpty()) {
+            refresh();
+            all = instances.get();
+            if (all.isEmpty()) {
+                throw new IllegalStateException("Нет доступных экземпляров сервиса статистики с id: " + serviceId);
+            }
+        }
+        long now = clock.millis();
+        List<ServiceInstance> healthy = all.stream()
+                .filter(instance -> !health.computeIfAbsent(instance.getUri(), uri -> new Health()).isEjected(now))
+                .toList();
+        List<ServiceInstance> candidates = healthy.isEmpty() ? all : healthy;
+        if (!roundRobin) {
+            return candidates.getFirst();
+        }
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    public void reportSuccess(ServiceInstance instance) {
+        Health instanceHealth = health.get(instance.getUri());
+        if (instanceHealth != null) {
+            instanceHealth.consecutiveFailures.set(0);
+        }
+    }
+
+    public void reportFailure(ServiceInstance instance) {
+        Health instanceHealth = health.computeIfAbsent(instance.getUri(), uri -> new Health());
+        if (instanceHealth.consecutiveFailures.incrementAndGet() >= ejectAfterFailures) {
+            instanceHealth.consecutiveFailures.set(0);
+            instanceHealth.ejectedUntil = clock.millis() + ejectionDuration.toMillis();
+            log.warn("Экземпляр stats-server {} исключен на {} после {} ошибок подряд",
+                    instance.getUri(), ejectionDuration, ejectAfterFailures);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Ошибка discovery и пустой ответ оставляют прежний список: экземпляры обычно живы, даже когда реестр недоступен.
+     */
+    private void refresh() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "SUCCESS";
+        try {
+            // порядок discovery у клиентов может различаться, а основной экземпляр должен быть у всех один
+            List<ServiceInstance> fresh = discoveryClient.getInstances(serviceId).stream()
+                    .sorted(Comparator.comparing(instance -> instance.getUri().toString()))
+                    .toList();
+            if (fresh.isEmpty() && !instances.get().isEmpty()) {
+                outcome = "EMPTY";
+                log.warn("Discovery вернул пустой список экземпляров {}, используется прежний", serviceId);
+                return;
+            }
+            instances.set(fresh);
+            health.keySet().retainAll(fresh.stream().map(ServiceInstance::getUri).toList());
+        } catch (Exception e) {
+            outcome = "ERROR";
+            log.warn("Не удалось обновить экземпляры сервиса статистики {}: {}", serviceId, e.getMessage());
+        } finally {
+            sample.stop(Timer.builder("stats.client.discovery")
+                    .description("Запросы списка экземпляров stats-server к discovery")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private static class Health {
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile long ejectedUntil;
+
+        boolean isEjected(long now) {
+            return ejectedUntil > now;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.client;
+
+/**
+ * Статистика не получена: автомат {@link StatsCircuitBreaker} отклонил запрос к stats-server.
+ */
+public class StatsUnavailableException extends RuntimeException {
+    public StatsUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final SingleFlight<String, Integer> flight = new SingleFlight<>("stats", executor, meterRegistry);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsWithSameKeyShareOneRequest() {
+        CompletableFuture<Integer> first = flight.execute("a", () -> blockingRequest(1));
+        CompletableFuture<Integer> second = flight.execute("a", () -> blockingRequest(2));
+        CompletableFuture<Integer> other = flight.execute("b", () -> blockingRequest(3));
+        release.countDown();
+
+        assertEquals(1, first.join());
+        assertEquals(1, second.join());
+        assertEquals(3, other.join());
+        assertEquals(2, requests.get());
+        assertEquals(1, collapsed());
+    }
+
+    @Test
+    void finishedRequestIsNotReused() {
+        release.countDown();
+        assertEquals(1, flight.execute("a", () -> blockingRequest(1)).join());
+
+        assertEquals(2, flight.execute("a", () -> blockingRequest(2)).join());
+        assertEquals(2, requests.get());
+        assertEquals(0, collapsed());
+    }
+
+    @Test
+    void errorReachesEveryCallerAndIsNotRemembered() {
+        IllegalStateException failure = new IllegalStateException("stats-server недоступен");
+        CompletableFuture<Integer> first = flight.execute("a", () -> {
+            await();
+            throw failure;
+        });
+        CompletableFuture<Integer> second = flight.execute("a", () -> blockingRequest(2));
+        release.countDown();
+
+        assertSame(failure, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(failure, assertThrows(CompletionException.class, second::join).getCause());
+        assertEquals(7, flight.execute("a", () -> 7).join());
+    }
+
+    @Test
+    void cancelledCopyDoesNotCancelSharedRequest() {
+        CompletableFuture<Integer> first = flight.execute("a", () -> blockingRequest(1));
+        CompletableFuture<Integer> second = flight.execute("a", () -> blockingRequest(2));
+
+        assertTrue(first.cancel(true));
+        release.countDown();
+
+        assertEquals(1, second.join());
+        assertFalse(second.isCancelled());
+    }
+
+    private Integer blockingRequest(int result) {
+        requests.incrementAndGet();
+        await();
+        return result;
+    }
+
+    private void await() {
+        try {
+            if (!release.await(Duration.ofSeconds(10).toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Запрос не был отпущен тестом");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double collapsed() {
+        return meterRegistry.counter("stats.client.requests.collapsed", "operation", "stats").count();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.yandex.practicum.client.StatsCircuitBreaker.State.CLOSED;
+import static ru.yandex.practicum.client.StatsCircuitBreaker.State.HALF_OPEN;
+import static ru.yandex.practicum.client.StatsCircuitBreaker.State.OPEN;
+
+class StatsCircuitBreakerTest {
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private final StatsCircuitBreaker breaker = new StatsCircuitBreaker(3, OPEN_DURATION, meterRegistry, clock);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        breaker.acquire();
+        breaker.onSuccess();
+        // успех обнуляет счетчик: еще две ошибки подряд не открывают автомат
+        fail(2);
+        assertEquals(CLOSED, breaker.getState());
+
+        fail(1);
+        assertEquals(OPEN, breaker.getState());
+        assertThrows(StatsUnavailableException.class, breaker::acquire);
+        assertEquals(1, meterRegistry.counter("stats.client.breaker.rejected").count());
+        assertEquals(1, transitions(CLOSED, OPEN));
+    }
+
+    @Test
+    void staysOpenUntilOpenDurationPasses() {
+        fail(3);
+
+        clock.advance(OPEN_DURATION.minusMillis(1));
+        assertThrows(StatsUnavailableException.class, breaker::acquire);
+        assertEquals(OPEN, breaker.getState());
+
+        clock.advance(Duration.ofMillis(1));
+        assertDoesNotThrow(breaker::acquire);
+        assertEquals(HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void halfOpenLetsThroughOnlyOneTrial() {
+        openAndWait();
+        breaker.acquire();
+
+        assertThrows(StatsUnavailableException.class, breaker::acquire);
+        assertThrows(StatsUnavailableException.class, breaker::acquire);
+        assertEquals(HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess();
+        assertEquals(CLOSED, breaker.getState());
+        assertDoesNotThrow(breaker::acquire);
+        assertDoesNotThrow(breaker::acquire);
+        assertEquals(1, transitions(HALF_OPEN, CLOSED));
+    }
+
+    @Test
+    void failedTrialReopensAndReleasesTrial() {
+        openAndWait();
+        breaker.acquire();
+
+        breaker.onFailure();
+        assertEquals(OPEN, breaker.getState());
+        assertThrows(StatsUnavailableException.class, breaker::acquire);
+
+        // следующий пробный запрос возможен: флаг предыдущего снят
+        clock.advance(OPEN_DURATION);
+        assertDoesNotThrow(breaker::acquire);
+        assertEquals(HALF_OPEN, breaker.getState());
+        assertEquals(1, transitions(HALF_OPEN, OPEN));
+        assertEquals(2, transitions(OPEN, HALF_OPEN));
+    }
+
+    private void openAndWait() {
+        fail(3);
+        clock.advance(OPEN_DURATION);
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.acquire();
+            breaker.onFailure();
+        }
+    }
+
+    private double transitions(StatsCircuitBreaker.State from, StatsCircuitBreaker.State to) {
+        return meterRegistry.counter("stats.client.breaker.transitions", "from", from.name(), "to", to.name()).count();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.dto.StatsRequestParamsDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StatsClientImplTest {
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private final StatsServerInstances instances = mock(StatsServerInstances.class);
+    private final StatsCircuitBreaker breaker = new StatsCircuitBreaker(1, OPEN_DURATION, meterRegistry, clock);
+    private final StatsClientImpl client = new StatsClientImpl(instances, breaker, Duration.ofSeconds(1),
+            Duration.ofSeconds(2), "json", Duration.ofSeconds(1), new RestTemplateBuilder(), meterRegistry,
+            new ObjectMapper(), new Jackson2ObjectMapperBuilder());
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void trialEndingWithErrorReopensBreaker() {
+        breaker.acquire();
+        breaker.onFailure();
+        clock.advance(OPEN_DURATION);
+        when(instances.choose()).thenThrow(new AssertionError("сбой вне RuntimeException"));
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> client.getAllStatsAsync(params()).join());
+
+        assertInstanceOf(AssertionError.class, failure.getCause());
+        // пробный запрос освобожден: автомат открыт снова, а не завис в HALF_OPEN
+        assertEquals(StatsCircuitBreaker.State.OPEN, breaker.getState());
+        clock.advance(OPEN_DURATION);
+        breaker.acquire();
+        assertEquals(StatsCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    private static StatsRequestParamsDto params() {
+        LocalDateTime end = LocalDateTime.of(2030, 6, 1, 19, 0);
+        return new StatsRequestParamsDto(end.minusDays(1), end, List.of("/events/1"), false, false);
+    }
+}
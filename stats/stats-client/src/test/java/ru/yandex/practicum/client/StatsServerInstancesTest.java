@@ -0,0 +1,100 @@
+package ru.yandex.practicum.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StatsServerInstancesTest {
+    private static final String SERVICE_ID = "stats-server";
+    private static final Duration EJECTION = Duration.ofSeconds(30);
+    private static final ServiceInstance FIRST = instance("10.0.0.1");
+    private static final ServiceInstance SECOND = instance("10.0.0.2");
+
+    private final DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+    private final MutableClock clock = new MutableClock();
+    private StatsServerInstances instances;
+
+    @AfterEach
+    void tearDown() {
+        instances.shutdown();
+    }
+
+    @Test
+    void primaryIsFirstByUriWhateverTheDiscoveryOrder() {
+        instances = instances(false, SECOND, FIRST);
+
+        IntStream.range(0, 3).forEach(i -> assertEquals(FIRST.getUri(), instances.choose().getUri()));
+    }
+
+    @Test
+    void instanceIsEjectedAfterConsecutiveFailuresAndReturnsLater() {
+        instances = instances(false, FIRST, SECOND);
+
+        instances.reportFailure(FIRST);
+        instances.reportFailure(FIRST);
+        instances.reportSuccess(FIRST);
+        instances.reportFailure(FIRST);
+        instances.reportFailure(FIRST);
+        assertEquals(FIRST.getUri(), instances.choose().getUri());
+
+        instances.reportFailure(FIRST);
+        assertEquals(SECOND.getUri(), instances.choose().getUri());
+
+        clock.advance(EJECTION);
+        assertEquals(FIRST.getUri(), instances.choose().getUri());
+    }
+
+    @Test
+    void allEjectedFallsBackToAllInstances() {
+        instances = instances(false, FIRST, SECOND);
+
+        ejectAll(FIRST);
+        ejectAll(SECOND);
+
+        assertEquals(FIRST.getUri(), instances.choose().getUri());
+    }
+
+    @Test
+    void roundRobinSkipsEjectedInstances() {
+        instances = instances(true, FIRST, SECOND);
+        List<ServiceInstance> chosen = IntStream.range(0, 4).mapToObj(i -> instances.choose()).toList();
+        assertEquals(2, chosen.stream().filter(instance -> instance.getUri().equals(FIRST.getUri())).count());
+
+        ejectAll(SECOND);
+
+        IntStream.range(0, 3).forEach(i -> assertEquals(FIRST.getUri(), instances.choose().getUri()));
+    }
+
+    @Test
+    void noInstancesInDiscoveryFailsFast() {
+        instances = instances(false);
+
+        assertThrows(IllegalStateException.class, instances::choose);
+    }
+
+    private StatsServerInstances instances(boolean roundRobin, ServiceInstance... discovered) {
+        when(discoveryClient.getInstances(SERVICE_ID)).thenReturn(List.of(discovered));
+        return new StatsServerInstances(discoveryClient, SERVICE_ID, Duration.ofHours(1), 3, EJECTION, roundRobin,
+                new SimpleMeterRegistry(), clock);
+    }
+
+    private void ejectAll(ServiceInstance instance) {
+        IntStream.range(0, 3).forEach(i -> instances.reportFailure(instance));
+    }
+
+    private static ServiceInstance instance(String host) {
+        return new DefaultServiceInstance(host, SERVICE_ID, host, 9090, false);
+    }
+}
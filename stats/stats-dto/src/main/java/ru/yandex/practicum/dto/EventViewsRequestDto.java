@@ -0,0 +1,23 @@
+package ru.yandex.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Окно подсчета просмотров события: хиты /events/{eventId} начиная с since.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventViewsRequestDto {
+    @NotNull(message = "Идентификатор события не должен быть пустым.")
+    Long eventId;
+    @NotNull(message = "Начало периода подсчета просмотров не должно быть пустым.")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    LocalDateTime since;
+}
@@ -22,4 +22,8 @@ public class StatsRequestParamsDto {
     private LocalDateTime end;
     private List<String> uris;
     private Boolean unique;
+    /**
+     * Для unique = true: считать уникальные IP приближенно по скетчам HyperLogLog (ошибка около 2.3%).
+     */
+    private Boolean approximate;
 }
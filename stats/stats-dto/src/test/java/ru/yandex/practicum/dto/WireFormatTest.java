@@ -0,0 +1,38 @@
+package ru.yandex.practicum.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WireFormatTest {
+    private final ObjectMapper json = new ObjectMapper().findAndRegisterModules();
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory()).findAndRegisterModules();
+
+    @Test
+    void hitSurvivesCborRoundTrip() throws IOException {
+        StatsRequestDto hit = new StatsRequestDto("main-server", "/events/1", "192.168.0.1",
+                LocalDateTime.of(2025, 6, 9, 14, 13, 5));
+
+        StatsRequestDto decoded = cbor.readValue(cbor.writeValueAsBytes(hit), StatsRequestDto.class);
+
+        assertThat(decoded).isEqualTo(hit);
+    }
+
+    @Test
+    void statsInCborAreSmallerThanJson() throws IOException {
+        StatsResponseDto[] stats = {
+                new StatsResponseDto("main-server", "/events/1", 1_000_000L),
+                new StatsResponseDto("main-server", "/events/2", 42L)
+        };
+
+        byte[] encoded = cbor.writeValueAsBytes(stats);
+
+        assertThat(cbor.readValue(encoded, StatsResponseDto[].class)).containsExactly(stats);
+        assertThat(encoded.length).isLessThan(json.writeValueAsBytes(stats).length);
+    }
+}
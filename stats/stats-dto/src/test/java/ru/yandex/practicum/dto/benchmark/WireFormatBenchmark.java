@@ -0,0 +1,122 @@
+package ru.yandex.practicum.dto.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.dto.StatsRequestDto;
+import ru.yandex.practicum.dto.StatsResponseDto;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость кодирования пачки хитов (/hits) и ответа /stats в JSON и CBOR.
+ * <p>
+ * Запуск: mvn -pl stats/stats-dto test-compile, затем main этого класса с test-classpath модуля.
+ * Перед замером печатаются размеры пачек в байтах для обоих форматов.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+    static final int BATCH_SIZE = 100;
+
+    @Param({"json", "cbor"})
+    String format;
+
+    private ObjectWriter hitsWriter;
+    private ObjectReader hitsReader;
+    private ObjectWriter statsWriter;
+    private ObjectReader statsReader;
+    private StatsRequestDto[] hits;
+    private StatsResponseDto[] stats;
+    private byte[] encodedHits;
+    private byte[] encodedStats;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = mapper(format);
+        hitsWriter = mapper.writerFor(StatsRequestDto[].class);
+        hitsReader = mapper.readerFor(StatsRequestDto[].class);
+        statsWriter = mapper.writerFor(StatsResponseDto[].class);
+        statsReader = mapper.readerFor(StatsResponseDto[].class);
+        hits = hits();
+        stats = stats();
+        encodedHits = hitsWriter.writeValueAsBytes(hits);
+        encodedStats = statsWriter.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public byte[] encodeHits() throws IOException {
+        return hitsWriter.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public StatsRequestDto[] decodeHits() throws IOException {
+        return hitsReader.readValue(encodedHits);
+    }
+
+    @Benchmark
+    public byte[] encodeStats() throws IOException {
+        return statsWriter.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public StatsResponseDto[] decodeStats() throws IOException {
+        return statsReader.readValue(encodedStats);
+    }
+
+    static ObjectMapper mapper(String format) {
+        ObjectMapper mapper = "cbor".equals(format) ? new ObjectMapper(new CBORFactory()) : new ObjectMapper();
+        return mapper.findAndRegisterModules();
+    }
+
+    static StatsRequestDto[] hits() {
+        LocalDateTime now = LocalDateTime.of(2025, 6, 9, 14, 13, 0);
+        StatsRequestDto[] hits = new StatsRequestDto[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            hits[i] = new StatsRequestDto("main-server", "/events/" + (i % 20), "192.168.0." + i, now.plusSeconds(i));
+        }
+        return hits;
+    }
+
+    static StatsResponseDto[] stats() {
+        StatsResponseDto[] stats = new StatsResponseDto[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            stats[i] = new StatsResponseDto("main-server", "/events/" + i, 1000L + i);
+        }
+        return stats;
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        for (String format : new String[]{"json", "cbor"}) {
+            ObjectMapper mapper = mapper(format);
+            System.out.printf("%s: %d хитов — %d байт, %d строк статистики — %d байт%n", format,
+                    BATCH_SIZE, mapper.writeValueAsBytes(hits()).length,
+                    BATCH_SIZE, mapper.writeValueAsBytes(stats()).length);
+        }
+        new Runner(new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,81 @@
+-- Сравнение ширины строк и времени группировки для старой (строковой) и новой (словарной) схемы hits.
+-- Запуск на пустой базе PostgreSQL: psql -d bench -f hits-dictionary.sql
+-- 10 млн хитов: 1 приложение, 10 000 uri вида /events/N, 100 000 IPv4-адресов, 30 дней.
+\timing on
+
+DROP TABLE IF EXISTS bench_hits_text, bench_hits_dict, bench_applications, bench_uris;
+
+CREATE TABLE bench_hits_text (
+     id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+     application VARCHAR(256) NOT NULL,
+     uri         VARCHAR(256) NOT NULL,
+     ip          VARCHAR(15) NOT NULL,
+     moment      TIMESTAMP WITHOUT TIME ZONE NOT NULL
+     );
+
+INSERT INTO bench_hits_text (application, uri, ip, moment)
+SELECT 'ewm-main-service',
+       '/events/' || (random() * 9999)::int,
+       '10.' || (n % 100000 / 65536) || '.' || (n % 65536 / 256) || '.' || (n % 256),
+       TIMESTAMP '2024-12-01' + random() * INTERVAL '30 days'
+FROM (SELECT (random() * 99999)::int AS n FROM generate_series(1, 10000000)) g;
+
+CREATE TABLE bench_applications (id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, name VARCHAR(256) UNIQUE);
+CREATE TABLE bench_uris (id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, name VARCHAR(256) UNIQUE);
+INSERT INTO bench_applications (name) SELECT DISTINCT application FROM bench_hits_text;
+INSERT INTO bench_uris (name) SELECT DISTINCT uri FROM bench_hits_text;
+
+CREATE TABLE bench_hits_dict (
+     id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+     moment   TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     ip       BYTEA NOT NULL
+     );
+
+-- тот же набор хитов: ip переводится в 4 байта, как это делает IpAddressMapper
+INSERT INTO bench_hits_dict (moment, app_id, uri_id, ip)
+SELECT h.moment, a.id, u.id,
+       set_byte(set_byte(set_byte(set_byte('\x00000000'::bytea,
+           0, split_part(h.ip, '.', 1)::int), 1, split_part(h.ip, '.', 2)::int),
+           2, split_part(h.ip, '.', 3)::int), 3, split_part(h.ip, '.', 4)::int)
+FROM bench_hits_text h
+JOIN bench_applications a ON a.name = h.application
+JOIN bench_uris u ON u.name = h.uri;
+
+VACUUM ANALYZE bench_hits_text;
+VACUUM ANALYZE bench_hits_dict;
+
+SELECT 'text' AS layout, pg_size_pretty(pg_table_size('bench_hits_text')) AS table_size,
+       avg(pg_column_size(t.*)) AS avg_row_bytes
+FROM bench_hits_text t
+UNION ALL
+SELECT 'dict', pg_size_pretty(pg_table_size('bench_hits_dict')), avg(pg_column_size(d.*))
+FROM bench_hits_dict d;
+
+-- запросы GET /stats?unique=false и unique=true за неделю
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT application, uri, COUNT(ip) AS total FROM bench_hits_text
+WHERE moment BETWEEN '2024-12-05' AND '2024-12-12'
+GROUP BY application, uri ORDER BY total DESC;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT a.name, u.name, c.total
+FROM (SELECT app_id, uri_id, COUNT(ip) AS total FROM bench_hits_dict
+      WHERE moment BETWEEN '2024-12-05' AND '2024-12-12' GROUP BY app_id, uri_id) c
+JOIN bench_applications a ON a.id = c.app_id
+JOIN bench_uris u ON u.id = c.uri_id
+ORDER BY c.total DESC;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT application, uri, COUNT(DISTINCT ip) AS total FROM bench_hits_text
+WHERE moment BETWEEN '2024-12-05' AND '2024-12-12'
+GROUP BY application, uri ORDER BY total DESC;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT a.name, u.name, c.total
+FROM (SELECT app_id, uri_id, COUNT(DISTINCT ip) AS total FROM bench_hits_dict
+      WHERE moment BETWEEN '2024-12-05' AND '2024-12-12' GROUP BY app_id, uri_id) c
+JOIN bench_applications a ON a.id = c.app_id
+JOIN bench_uris u ON u.id = c.uri_id
+ORDER BY c.total DESC;
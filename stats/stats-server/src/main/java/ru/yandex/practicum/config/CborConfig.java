@@ -0,0 +1,24 @@
+package ru.yandex.practicum.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Двоичный формат CBOR для /hit, /hits, /stats и /stats/views, выбирается заголовками
+ * Content-Type и Accept: application/cbor. Без них обмен идет в JSON.
+ */
+@Configuration
+public class CborConfig {
+
+    /**
+     * Конвертер добавляется Spring Boot после JSON-конвертера, поэтому JSON остается форматом по умолчанию.
+     * Маппер строится тем же Jackson2ObjectMapperBuilder, что и JSON-маппер, с теми же модулями и настройками.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
@@ -1,18 +1,27 @@
 package ru.yandex.practicum.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestDto;
 import ru.yandex.practicum.dto.StatsResponseDto;
+import ru.yandex.practicum.exception.ValidationException;
 import ru.yandex.practicum.service.StatsService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import static ru.yandex.practicum.utils.JsonFormatPattern.JSON_FORMAT_PATTERN_FOR_TIME;
 
@@ -20,11 +29,15 @@ import static ru.yandex.practicum.utils.JsonFormatPattern.JSON_FORMAT_PATTERN_FO
 @Slf4j
 public class StatsController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     final StatsService statsService;
+    final ObjectMapper objectMapper;
 
     @Autowired
-    public StatsController(@Qualifier("statsServiceImpl") StatsService statsService) {
+    public StatsController(@Qualifier("statsServiceImpl") StatsService statsService, ObjectMapper objectMapper) {
         this.statsService = statsService;
+        this.objectMapper = objectMapper;
     }
 
 
@@ -33,9 +46,62 @@ public class StatsController {
     public List<StatsResponseDto> getStats(@DateTimeFormat(pattern = JSON_FORMAT_PATTERN_FOR_TIME) @RequestParam(value = "start") LocalDateTime start,
                                            @DateTimeFormat(pattern = JSON_FORMAT_PATTERN_FOR_TIME) @RequestParam(value = "end") LocalDateTime end,
                                            @RequestParam(required = false) List<String> uris,
-                                           @RequestParam(required = false, defaultValue = "false") Boolean unique) {
-        log.info("Получен запрос сбора статистики StartDate: {}, EndDate: {}, Uris: {}, Unique: {}", start, end, uris, unique);
-        return statsService.getStats(start, end, uris, unique);
+                                           @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                           @RequestParam(required = false, defaultValue = "false") Boolean approximate) {
+        log.info("Получен запрос сбора статистики StartDate: {}, EndDate: {}, Uris: {}, Unique: {}, Approximate: {}",
+                start, end, uris, unique, approximate);
+        return statsService.getStats(start, end, uris, unique, approximate);
+    }
+
+    /**
+     * Та же статистика построчно в формате NDJSON: по объекту StatsResponseDto в строке,
+     * строки пишутся в ответ по мере чтения из БД.
+     */
+    @GetMapping(value = "/stats", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(@DateTimeFormat(pattern = JSON_FORMAT_PATTERN_FOR_TIME) @RequestParam(value = "start") LocalDateTime start,
+                                                             @DateTimeFormat(pattern = JSON_FORMAT_PATTERN_FOR_TIME) @RequestParam(value = "end") LocalDateTime end,
+                                                             @RequestParam(required = false) List<String> uris,
+                                                             @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        log.info("Получен запрос потоковой статистики StartDate: {}, EndDate: {}, Uris: {}, Unique: {}",
+                start, end, uris, unique);
+        if (start.isAfter(end)) {
+            throw new ValidationException("Время окончания позже начала");
+        }
+        StreamingResponseBody body = outputStream -> statsService.streamStats(start, end, uris, unique, dto -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(dto));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    @GetMapping("/stats/top")
+    @ResponseStatus(HttpStatus.OK)
+    public List<StatsResponseDto> getTop(@DateTimeFormat(pattern = JSON_FORMAT_PATTERN_FOR_TIME) @RequestParam(value = "start") LocalDateTime start,
+                                         @DateTimeFormat(pattern = JSON_FORMAT_PATTERN_FOR_TIME) @RequestParam(value = "end") LocalDateTime end,
+                                         @RequestParam(required = false, defaultValue = "10") Integer limit,
+                                         @RequestParam(required = false) String app,
+                                         @RequestParam(required = false) String uriPrefix) {
+        log.info("Получен запрос топа uri StartDate: {}, EndDate: {}, Limit: {}, App: {}, UriPrefix: {}",
+                start, end, limit, app, uriPrefix);
+        return statsService.getTop(start, end, limit, app, uriPrefix);
+    }
+
+    /**
+     * Просмотры нескольких событий за один запрос, у каждого события свое начало периода.
+     * Ответ — объект {"eventId": views}.
+     */
+    @PostMapping("/stats/views")
+    @ResponseStatus(HttpStatus.OK)
+    public Map<Long, Long> getEventViews(@RequestBody List<@Valid EventViewsRequestDto> windows,
+                                         @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        log.info("Получен запрос просмотров {} событий, Unique: {}", windows.size(), unique);
+        return statsService.getEventViews(windows, unique);
     }
 
     @PostMapping("/hit")
@@ -44,4 +110,14 @@ public class StatsController {
         log.info("Получен запрос на добавление статистики: StatsRequestDto: {}", statsRequestDto);
         return statsService.save(statsRequestDto);
     }
+
+    /**
+     * Пакет принимается целиком, даже если часть хитов некорректна: такие хиты пропускаются сервисом.
+     */
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveAll(@RequestBody List<StatsRequestDto> statsRequestDtos) {
+        log.info("Получен запрос на пакетное добавление статистики: {} хитов", statsRequestDtos.size());
+        statsService.saveAll(statsRequestDtos);
+    }
 }
\ No newline at end of file
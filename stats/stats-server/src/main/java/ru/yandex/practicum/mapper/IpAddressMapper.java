@@ -0,0 +1,116 @@
+package ru.yandex.practicum.mapper;
+
+import ru.yandex.practicum.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Перевод текстового IP-адреса в двоичный вид для колонки hits.ip.
+ * Разбирается только литерал адреса: имена хостов не принимаются и DNS не запрашивается.
+ */
+public class IpAddressMapper {
+    private static final int IPV4_OCTETS = 4;
+    private static final int IPV6_GROUPS = 8;
+    private static final int IPV6_BYTES = 16;
+    // первые 12 байт IPv4-mapped адреса ::ffff:a.b.c.d
+    private static final byte[] IPV4_MAPPED_PREFIX = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff};
+
+    public static byte[] toBytes(String ip) {
+        if (ip.indexOf(':') >= 0) {
+            return parseIpv6(ip);
+        }
+        return parseIpv4(ip, ip);
+    }
+
+    private static byte[] parseIpv4(String ip, String text) {
+        String[] octets = text.split("\\.", -1);
+        if (octets.length != IPV4_OCTETS) {
+            throw invalid(ip);
+        }
+        byte[] address = new byte[IPV4_OCTETS];
+        for (int i = 0; i < IPV4_OCTETS; i++) {
+            String octet = octets[i];
+            if (octet.isEmpty() || octet.length() > 3 || !octet.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                throw invalid(ip);
+            }
+            int value = Integer.parseInt(octet);
+            if (value > 255) {
+                throw invalid(ip);
+            }
+            address[i] = (byte) value;
+        }
+        return address;
+    }
+
+    /**
+     * Литерал IPv6 по RFC 4291: восемь групп по 16 бит, "::" вместо идущих подряд нулевых групп,
+     * последние две группы можно записать как IPv4. Идентификатор зоны (%eth0) не принимается.
+     * IPv4-mapped адреса (::ffff:a.b.c.d) приводятся к 4 байтам, как и обычные IPv4.
+     */
+    private static byte[] parseIpv6(String ip) {
+        int ellipsis = ip.indexOf("::");
+        if (ellipsis >= 0 && ip.indexOf("::", ellipsis + 1) >= 0) {
+            throw invalid(ip);
+        }
+        List<Integer> head = groups(ip, ellipsis >= 0 ? ip.substring(0, ellipsis) : ip, ellipsis < 0);
+        List<Integer> tail = ellipsis >= 0 ? groups(ip, ip.substring(ellipsis + 2), true) : List.of();
+        int zeroGroups = IPV6_GROUPS - head.size() - tail.size();
+        if (ellipsis >= 0 ? zeroGroups < 1 : zeroGroups != 0) {
+            throw invalid(ip);
+        }
+        byte[] address = new byte[IPV6_BYTES];
+        for (int i = 0; i < head.size(); i++) {
+            putGroup(address, i, head.get(i));
+        }
+        for (int i = 0; i < tail.size(); i++) {
+            putGroup(address, IPV6_GROUPS - tail.size() + i, tail.get(i));
+        }
+        if (Arrays.equals(address, 0, IPV4_MAPPED_PREFIX.length, IPV4_MAPPED_PREFIX, 0, IPV4_MAPPED_PREFIX.length)) {
+            return Arrays.copyOfRange(address, IPV4_MAPPED_PREFIX.length, IPV6_BYTES);
+        }
+        return address;
+    }
+
+    /**
+     * Группы части адреса до или после "::". Если ipv4Allowed, последняя группа может быть адресом IPv4
+     * и дает две группы.
+     */
+    private static List<Integer> groups(String ip, String part, boolean ipv4Allowed) {
+        List<Integer> groups = new ArrayList<>(IPV6_GROUPS);
+        if (part.isEmpty()) {
+            return groups;
+        }
+        String[] hextets = part.split(":", -1);
+        for (int i = 0; i < hextets.length; i++) {
+            String hextet = hextets[i];
+            if (ipv4Allowed && i == hextets.length - 1 && hextet.indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(ip, hextet);
+                groups.add((ipv4[0] & 0xff) << 8 | ipv4[1] & 0xff);
+                groups.add((ipv4[2] & 0xff) << 8 | ipv4[3] & 0xff);
+            } else if (hextet.isEmpty() || hextet.length() > 4 || !hextet.chars().allMatch(IpAddressMapper::isHexDigit)) {
+                throw invalid(ip);
+            } else {
+                groups.add(Integer.parseInt(hextet, 16));
+            }
+            if (groups.size() > IPV6_GROUPS) {
+                throw invalid(ip);
+            }
+        }
+        return groups;
+    }
+
+    private static boolean isHexDigit(int c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private static void putGroup(byte[] address, int group, int value) {
+        address[group * 2] = (byte) (value >> 8);
+        address[group * 2 + 1] = (byte) value;
+    }
+
+    private static ValidationException invalid(String ip) {
+        return new ValidationException("Некорректный IP-адрес: " + ip);
+    }
+}
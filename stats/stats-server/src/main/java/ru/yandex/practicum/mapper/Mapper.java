@@ -6,20 +6,11 @@ import ru.yandex.practicum.model.Requests;
 import ru.yandex.practicum.model.Response;
 
 public class Mapper {
-    public static StatsRequestDto toRequestDto(Requests request) {
-        StatsRequestDto statsDto = new StatsRequestDto();
-        statsDto.setIp(request.getIp());
-        statsDto.setApp(request.getApplication());
-        statsDto.setUri(request.getUri());
-        statsDto.setTimestamp(request.getMoment());
-        return statsDto;
-    }
-
-    public static Requests toRequest(StatsRequestDto requestDto) {
+    public static Requests toRequest(StatsRequestDto requestDto, int appId, int uriId) {
         Requests request = new Requests();
-        request.setIp(requestDto.getIp());
-        request.setApplication(requestDto.getApp());
-        request.setUri(requestDto.getUri());
+        request.setIp(IpAddressMapper.toBytes(requestDto.getIp()));
+        request.setAppId(appId);
+        request.setUriId(uriId);
         request.setMoment(requestDto.getTimestamp());
         return request;
     }
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Часть диапазона запроса статистики: хиты с moment в [from, to) (или [from, to], если toInclusive),
+ * которые считаются по сырой таблице hits (bucket == null) или по бакетам агрегата bucket.
+ */
+public record CountRange(RollupBucket bucket, LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+
+    public static CountRange raw(LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+        return new CountRange(null, from, to, toInclusive);
+    }
+
+    public static CountRange buckets(RollupBucket bucket, LocalDateTime from, LocalDateTime to) {
+        return new CountRange(bucket, from, to, false);
+    }
+}
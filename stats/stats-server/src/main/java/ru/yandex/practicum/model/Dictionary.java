@@ -0,0 +1,18 @@
+package ru.yandex.practicum.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Таблицы-словари, в которых хранятся строковые значения хитов. В hits и в агрегатах
+ * вместо самих строк записываются их целочисленные id.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public enum Dictionary {
+    APPLICATIONS("applications"),
+    URIS("uris");
+
+    private final String table;
+}
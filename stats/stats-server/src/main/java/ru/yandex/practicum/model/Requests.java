@@ -23,15 +23,24 @@ public class Requests {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     Long id;
 
-    @Column(nullable = false)
-    String application;
-
+    /**
+     * id приложения в словаре {@link Dictionary#APPLICATIONS}.
+     */
+    @Column(name = "app_id", nullable = false)
+    Integer appId;
+
+    /**
+     * id uri в словаре {@link Dictionary#URIS}.
+     */
     @NotNull
-    @Column(nullable = false)
-    String uri;
+    @Column(name = "uri_id", nullable = false)
+    Integer uriId;
 
+    /**
+     * IPv4 (4 байта) или IPv6 (16 байт) адрес в сетевом порядке байт, см. {@link ru.yandex.practicum.mapper.IpAddressMapper}.
+     */
     @Column(nullable = false)
-    String ip;
+    byte[] ip;
 
     @DateTimeFormat(pattern = JSON_FORMAT_PATTERN_FOR_TIME)
     @Column(nullable = false)
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Гранулярность таблиц предагрегированных хитов. Бакет с началом b содержит хиты с moment в [b, b + 1 unit).
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public enum RollupBucket {
+    MINUTE(ChronoUnit.MINUTES, "hits_minute"),
+    HOUR(ChronoUnit.HOURS, "hits_hour");
+
+    private final ChronoUnit unit;
+    private final String table;
+
+    public LocalDateTime floor(LocalDateTime moment) {
+        return moment.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime moment) {
+        LocalDateTime floor = floor(moment);
+        return floor.equals(moment) ? floor : floor.plus(1, unit);
+    }
+}
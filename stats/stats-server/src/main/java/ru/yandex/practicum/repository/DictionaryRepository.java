@@ -0,0 +1,77 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.Dictionary;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Таблицы-словари {@link Dictionary}: пары (id, name) с уникальным name.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+    /**
+     * Условие на uri_id по списку uri из параметра :uris.
+     */
+    public static final String URIS_FILTER = "AND uri_id IN (SELECT id FROM uris WHERE name IN (:uris)) ";
+
+    private static final String JOIN_NAMES = "SELECT a.name AS application, u.name AS uri, c.%2$s FROM (%1$s) c " +
+            "JOIN applications a ON a.id = c.app_id " +
+            "JOIN uris u ON u.id = c.uri_id";
+
+    private static final String FIND_ID = "SELECT id FROM %s WHERE name = :name";
+
+    private static final String FIND_NAMES = "SELECT id, name FROM %s WHERE id IN (:ids)";
+
+    private static final String INSERT = "INSERT INTO %s (name) VALUES (:name)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Подставляет имена приложения и uri в результат запроса с колонками app_id, uri_id и column.
+     * Группировка во вложенном запросе идет по целочисленным id, а строки словарей читаются
+     * уже для сгруппированных строк.
+     */
+    public static String joinNames(String sql, String column) {
+        return JOIN_NAMES.formatted(sql, column);
+    }
+
+    public Optional<Integer> findId(Dictionary dictionary, String name) {
+        List<Integer> ids = jdbcTemplate.queryForList(FIND_ID.formatted(dictionary.getTable()),
+                new MapSqlParameterSource("name", name), Integer.class);
+        return ids.stream().findFirst();
+    }
+
+    public Map<Integer, String> findNames(Dictionary dictionary, Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        if (ids.isEmpty()) {
+            return names;
+        }
+        jdbcTemplate.query(FIND_NAMES.formatted(dictionary.getTable()), new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    names.put(rs.getInt("id"), rs.getString("name"));
+                });
+        return names;
+    }
+
+    /**
+     * Добавляет значение в словарь и возвращает его id. Если значение уже добавлено
+     * параллельно другим узлом, бросает {@link org.springframework.dao.DuplicateKeyException}.
+     */
+    public int insert(Dictionary dictionary, String name) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(INSERT.formatted(dictionary.getTable()), new MapSqlParameterSource("name", name),
+                keyHolder, new String[]{"id"});
+        return keyHolder.getKeyAs(Integer.class);
+    }
+}
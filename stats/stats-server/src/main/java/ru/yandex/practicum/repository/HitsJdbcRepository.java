@@ -0,0 +1,170 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.Requests;
+import ru.yandex.practicum.model.Response;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+import static ru.yandex.practicum.repository.DictionaryRepository.URIS_FILTER;
+import static ru.yandex.practicum.repository.DictionaryRepository.joinNames;
+
+/**
+ * Пакетная запись хитов в обход Hibernate: IDENTITY-ключ сущности {@link Requests} не дает Hibernate
+ * группировать INSERT-ы, поэтому пишущий поток использует JDBC batch напрямую.
+ * Здесь же агрегаты по сырой таблице hits: они группируют по id словарей и подставляют имена
+ * уже после группировки (см. {@link DictionaryRepository#joinNames(String, String)}).
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitsJdbcRepository {
+    private static final String INSERT_HIT =
+            "INSERT INTO hits (app_id, uri_id, ip, moment) VALUES (:appId, :uriId, :ip, :moment)";
+
+    private static final String COUNT_HITS = "SELECT app_id, uri_id, COUNT(ip) AS total FROM hits " +
+            "WHERE moment >= :from AND moment %s :to %s" +
+            "GROUP BY app_id, uri_id";
+
+    private static final String COUNT_UNIQUE_IPS = "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS total FROM hits " +
+            "WHERE moment >= :from AND moment <= :to %s" +
+            "GROUP BY app_id, uri_id";
+
+    private static final String COUNT_IN_WINDOWS = "SELECT w.window_key, COUNT(%s h.ip) AS total " +
+            "FROM (VALUES %s) AS w(window_key, uri, since) " +
+            "JOIN uris u ON u.name = w.uri " +
+            "JOIN hits h ON h.uri_id = u.id AND h.moment >= w.since AND h.moment <= :to " +
+            "GROUP BY w.window_key";
+
+    private static final String FIND_LAST_SEEN = "SELECT app_id, uri_id, ip, MAX(moment) AS last_seen FROM hits " +
+            "WHERE moment >= :from AND moment <= :to AND uri_id IN (:uriIds) AND ip IN (:ips) " +
+            "GROUP BY app_id, uri_id, ip";
+
+    private static final String WINDOW_ROW = "(CAST(:key%1$d AS BIGINT), CAST(:uri%1$d AS VARCHAR(256)), " +
+            "CAST(:since%1$d AS TIMESTAMP))";
+
+    // число окон в одном запросе: ограничивает число параметров и размер текста запроса
+    private static final int WINDOWS_PER_QUERY = 500;
+
+    private static final int IPS_PER_QUERY = 1000;
+
+    private static final RowMapper<Response> RESPONSE_ROW_MAPPER = (rs, rowNum) ->
+            new Response(rs.getString("application"), rs.getString("uri"), rs.getLong("total"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<Requests> hits) {
+        MapSqlParameterSource[] params = hits.stream()
+                .map(hit -> new MapSqlParameterSource()
+                        .addValue("appId", hit.getAppId())
+                        .addValue("uriId", hit.getUriId())
+                        .addValue("ip", hit.getIp())
+                        .addValue("moment", Timestamp.valueOf(hit.getMoment())))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_HIT, params);
+    }
+
+    /**
+     * Число хитов с moment в [from, to) или [from, to], если toInclusive.
+     */
+    public List<Response> countHits(LocalDateTime from, LocalDateTime to, boolean toInclusive, List<String> uris) {
+        String sql = COUNT_HITS.formatted(toInclusive ? "<=" : "<", uris == null ? "" : URIS_FILTER);
+        return jdbcTemplate.query(joinNames(sql, "total"), params(from, to, uris), RESPONSE_ROW_MAPPER);
+    }
+
+    /**
+     * Число различных IP среди хитов с moment в [from, to].
+     */
+    public List<Response> countUniqueIps(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        String sql = COUNT_UNIQUE_IPS.formatted(uris == null ? "" : URIS_FILTER);
+        return jdbcTemplate.query(joinNames(sql, "total") + " ORDER BY c.total DESC", params(from, to, uris),
+                RESPONSE_ROW_MAPPER);
+    }
+
+    /**
+     * Считает хиты (или различные IP, если unique) по каждому окну: uri окна с moment в [since, to].
+     * У каждого окна свое начало, и все окна считаются одним запросом по индексу (uri_id, moment).
+     *
+     * @return число хитов по key окна; окна без хитов в результат не попадают
+     */
+    public Map<Long, Long> countInWindows(List<UriWindow> windows, LocalDateTime to, boolean unique) {
+        Map<Long, Long> totals = new HashMap<>();
+        for (int from = 0; from < windows.size(); from += WINDOWS_PER_QUERY) {
+            List<UriWindow> part = windows.subList(from, Math.min(from + WINDOWS_PER_QUERY, windows.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource("to", Timestamp.valueOf(to));
+            StringJoiner rows = new StringJoiner(", ");
+            for (int i = 0; i < part.size(); i++) {
+                rows.add(WINDOW_ROW.formatted(i));
+                params.addValue("key" + i, part.get(i).key())
+                        .addValue("uri" + i, part.get(i).uri())
+                        .addValue("since" + i, Timestamp.valueOf(part.get(i).since()));
+            }
+            jdbcTemplate.query(COUNT_IN_WINDOWS.formatted(unique ? "DISTINCT" : "", rows), params,
+                    rs -> {
+                        totals.put(rs.getLong("window_key"), rs.getLong("total"));
+                    });
+        }
+        return totals;
+    }
+
+    /**
+     * Выполняет первый запрос транзакции: в REPEATABLE READ он фиксирует снимок БД, который видят
+     * все следующие запросы транзакции (см. {@link ru.yandex.practicum.service.HitsIngestBuffer#pending}).
+     */
+    public void beginSnapshot() {
+        jdbcTemplate.getJdbcTemplate().queryForObject("SELECT 1", Integer.class);
+    }
+
+    /**
+     * Для каждой тройки (app_id, uri_id, ip) из hits, которая уже есть в таблице с moment в [from, to],
+     * возвращает момент ее последнего хита в этом диапазоне.
+     */
+    public Map<SeenIp, LocalDateTime> findLastSeen(Collection<Requests> hits, LocalDateTime from, LocalDateTime to) {
+        Map<SeenIp, LocalDateTime> lastSeen = new HashMap<>();
+        Set<Integer> uriIds = hits.stream().map(Requests::getUriId).collect(Collectors.toSet());
+        List<ByteBuffer> ips = hits.stream().map(hit -> ByteBuffer.wrap(hit.getIp())).distinct().toList();
+        for (int i = 0; i < ips.size(); i += IPS_PER_QUERY) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("from", Timestamp.valueOf(from))
+                    .addValue("to", Timestamp.valueOf(to))
+                    .addValue("uriIds", uriIds)
+                    .addValue("ips", ips.subList(i, Math.min(i + IPS_PER_QUERY, ips.size())).stream()
+                            .map(ByteBuffer::array)
+                            .toList());
+            jdbcTemplate.query(FIND_LAST_SEEN, params, rs -> {
+                lastSeen.put(new SeenIp(rs.getInt("app_id"), rs.getInt("uri_id"), ByteBuffer.wrap(rs.getBytes("ip"))),
+                        rs.getTimestamp("last_seen").toLocalDateTime());
+            });
+        }
+        return lastSeen;
+    }
+
+    private static MapSqlParameterSource params(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("uris", uris);
+    }
+
+    public record UriWindow(long key, String uri, LocalDateTime since) {
+    }
+
+    public record SeenIp(int appId, int uriId, ByteBuffer ip) {
+
+        public static SeenIp of(Requests hit) {
+            return new SeenIp(hit.getAppId(), hit.getUriId(), ByteBuffer.wrap(hit.getIp()));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.dto.StatsRequestDto;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Таблица hits_legacy: hits прежнего формата с колонками application, uri и текстовым ip,
+ * переименованная при запуске schema.sql.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitsLegacyRepository {
+    private static final String EXISTS = "SELECT COUNT(*) FROM information_schema.tables " +
+            "WHERE table_schema = CURRENT_SCHEMA AND table_name = 'hits_legacy'";
+
+    // строки, захваченные другим экземпляром stats-server, пропускаются
+    private static final String LOCK_BATCH = "SELECT id, application, uri, ip, moment FROM hits_legacy " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED";
+
+    private static final String DELETE = "DELETE FROM hits_legacy WHERE id IN (:ids)";
+
+    private static final String LOCK = "LOCK TABLE hits_legacy IN ACCESS EXCLUSIVE MODE";
+
+    private static final String COUNT = "SELECT COUNT(*) FROM (SELECT 1 FROM hits_legacy LIMIT 1) h";
+
+    private static final String DROP = "DROP TABLE hits_legacy";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public boolean exists() {
+        Integer tables = jdbcTemplate.queryForObject(EXISTS, new MapSqlParameterSource(), Integer.class);
+        return tables != null && tables > 0;
+    }
+
+    /**
+     * Блокирует до limit строк с наименьшими id до конца транзакции.
+     */
+    public List<LegacyHit> lockBatch(int limit) {
+        return jdbcTemplate.query(LOCK_BATCH, new MapSqlParameterSource("limit", limit),
+                (rs, rowNum) -> new LegacyHit(rs.getLong("id"), new StatsRequestDto(rs.getString("application"),
+                        rs.getString("uri"), rs.getString("ip"), rs.getTimestamp("moment").toLocalDateTime())));
+    }
+
+    public void delete(Collection<Long> ids) {
+        jdbcTemplate.update(DELETE, new MapSqlParameterSource("ids", ids));
+    }
+
+    /**
+     * Удаляет hits_legacy вместе с ее секциями, если в ней не осталось хитов. Вызывается в транзакции:
+     * блокировка таблицы дожидается пачек, которые переносят другие экземпляры.
+     *
+     * @return true, если таблица удалена
+     */
+    public boolean dropIfEmpty() {
+        jdbcTemplate.getJdbcTemplate().execute(LOCK);
+        Integer rows = jdbcTemplate.queryForObject(COUNT, new MapSqlParameterSource(), Integer.class);
+        if (rows != null && rows > 0) {
+            return false;
+        }
+        jdbcTemplate.getJdbcTemplate().execute(DROP);
+        return true;
+    }
+
+    public record LegacyHit(long id, StatsRequestDto hit) {
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * DDL для суточных секций таблицы hits (только PostgreSQL, см. schema.sql).
+ * Секция за день d называется hits_pYYYYMMDD и содержит хиты с moment в [d, d + 1).
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitsPartitionRepository {
+    private static final String PARTITION_PREFIX = "hits_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final String PARTITION_EXISTS = "SELECT to_regclass(?) IS NOT NULL";
+
+    // пока секция создается, хиты за ее день не должны попадать в секцию по умолчанию
+    private static final String LOCK_DEFAULT = "LOCK TABLE hits_default IN SHARE ROW EXCLUSIVE MODE";
+
+    private static final String CREATE_TABLE = "CREATE TABLE %s (LIKE hits)";
+
+    private static final String MOVE_FROM_DEFAULT = "WITH moved AS (DELETE FROM hits_default " +
+            "WHERE moment >= ? AND moment < ? RETURNING *) " +
+            "INSERT INTO %s SELECT * FROM moved";
+
+    private static final String ATTACH_PARTITION = "ALTER TABLE hits ATTACH PARTITION %s " +
+            "FOR VALUES FROM ('%s') TO ('%s')";
+
+    private static final String FIND_PARTITIONS = "SELECT child.relname FROM pg_inherits " +
+            "JOIN pg_class parent ON pg_inherits.inhparent = parent.oid " +
+            "JOIN pg_class child ON pg_inherits.inhrelid = child.oid " +
+            "WHERE parent.relname = 'hits' AND child.relname LIKE 'hits\\_p%'";
+
+    private static final String DELETE_FROM_DEFAULT = "DELETE FROM hits_default WHERE moment < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Создает секцию за день, если ее еще нет. Хиты за этот день, уже попавшие в секцию по умолчанию,
+     * переносятся в новую секцию до ее подключения: иначе PostgreSQL не подключит секцию.
+     * Вызывается в транзакции.
+     *
+     * @return число хитов, перенесенных из секции по умолчанию
+     */
+    public int createDailyPartition(LocalDate day) {
+        String partition = partitionName(day);
+        if (partitionExists(partition)) {
+            return 0;
+        }
+        jdbcTemplate.execute(LOCK_DEFAULT);
+        // секцию мог создать другой экземпляр, пока ждали блокировку
+        if (partitionExists(partition)) {
+            return 0;
+        }
+        jdbcTemplate.execute(CREATE_TABLE.formatted(partition));
+        int moved = jdbcTemplate.update(MOVE_FROM_DEFAULT.formatted(partition),
+                Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+        jdbcTemplate.execute(ATTACH_PARTITION.formatted(partition, day.atStartOfDay(), day.plusDays(1).atStartOfDay()));
+        return moved;
+    }
+
+    public List<LocalDate> findDailyPartitions() {
+        return jdbcTemplate.queryForList(FIND_PARTITIONS, String.class).stream()
+                .map(name -> LocalDate.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX))
+                .toList();
+    }
+
+    public void dropDailyPartition(LocalDate day) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(day));
+    }
+
+    /**
+     * Удаляет из секции по умолчанию хиты старше cutoff: туда попадают хиты с датами, для которых
+     * суточная секция не была создана заранее.
+     */
+    public int deleteFromDefaultBefore(LocalDate cutoff) {
+        return jdbcTemplate.update(DELETE_FROM_DEFAULT, Timestamp.valueOf(cutoff.atStartOfDay()));
+    }
+
+    private boolean partitionExists(String partition) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(PARTITION_EXISTS, Boolean.class, partition));
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_SUFFIX);
+    }
+}
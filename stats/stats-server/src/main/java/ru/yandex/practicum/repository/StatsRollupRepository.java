@@ -0,0 +1,87 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.Requests;
+import ru.yandex.practicum.model.Response;
+import ru.yandex.practicum.model.RollupBucket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static ru.yandex.practicum.repository.DictionaryRepository.URIS_FILTER;
+import static ru.yandex.practicum.repository.DictionaryRepository.joinNames;
+
+/**
+ * Таблицы hits_minute и hits_hour хранят число хитов по (app_id, uri_id, bucket)
+ * и пополняются при записи каждой пачки хитов.
+ * <p>
+ * MERGE в PostgreSQL не защищает от гонки вставок: две транзакции, впервые пишущие один бакет, получили бы
+ * нарушение первичного ключа. Поэтому строка бакета сначала создается через INSERT ... ON CONFLICT DO NOTHING,
+ * а затем счетчик увеличивается атомарным UPDATE. Бакеты пишутся в порядке ключа, чтобы параллельные
+ * записи блокировали строки в одном порядке и не взаимоблокировались.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsRollupRepository {
+    private static final String INSERT_ROLLUP = "INSERT INTO %s (app_id, uri_id, bucket, hits) " +
+            "VALUES (:appId, :uriId, :bucket, 0) ON CONFLICT DO NOTHING";
+
+    private static final String ADD_HITS = "UPDATE %s SET hits = hits + :hits " +
+            "WHERE app_id = :appId AND uri_id = :uriId AND bucket = :bucket";
+
+    private static final String SUM_ROLLUP = "SELECT app_id, uri_id, SUM(hits) AS total FROM %s " +
+            "WHERE bucket >= :from AND bucket < :to %s" +
+            "GROUP BY app_id, uri_id";
+
+    private static final RowMapper<Response> RESPONSE_ROW_MAPPER = (rs, rowNum) ->
+            new Response(rs.getString("application"), rs.getString("uri"), rs.getLong("total"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void addAll(List<Requests> hits) {
+        for (RollupBucket bucket : RollupBucket.values()) {
+            Map<RollupKey, Long> counters = new TreeMap<>(RollupKey.ORDER);
+            for (Requests hit : hits) {
+                counters.merge(new RollupKey(hit.getAppId(), hit.getUriId(), bucket.floor(hit.getMoment())), 1L, Long::sum);
+            }
+            MapSqlParameterSource[] params = counters.entrySet().stream()
+                    .map(e -> new MapSqlParameterSource()
+                            .addValue("appId", e.getKey().appId())
+                            .addValue("uriId", e.getKey().uriId())
+                            .addValue("bucket", Timestamp.valueOf(e.getKey().bucket()))
+                            .addValue("hits", e.getValue()))
+                    .toArray(MapSqlParameterSource[]::new);
+            jdbcTemplate.batchUpdate(INSERT_ROLLUP.formatted(bucket.getTable()), params);
+            jdbcTemplate.batchUpdate(ADD_HITS.formatted(bucket.getTable()), params);
+        }
+    }
+
+    /**
+     * Сумма хитов по бакетам, начало которых лежит в [from, to).
+     */
+    public List<Response> sumBuckets(RollupBucket bucket, LocalDateTime from, LocalDateTime to, List<String> uris) {
+        String sql = SUM_ROLLUP.formatted(bucket.getTable(), uris == null ? "" : URIS_FILTER);
+        return jdbcTemplate.query(joinNames(sql, "total"), params(from, to, uris), RESPONSE_ROW_MAPPER);
+    }
+
+    private static MapSqlParameterSource params(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("uris", uris);
+    }
+
+    private record RollupKey(int appId, int uriId, LocalDateTime bucket) {
+        static final Comparator<RollupKey> ORDER = Comparator.comparingInt(RollupKey::appId)
+                .thenComparingInt(RollupKey::uriId)
+                .thenComparing(RollupKey::bucket);
+    }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.Requests;
+import ru.yandex.practicum.model.RollupBucket;
+import ru.yandex.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import static ru.yandex.practicum.repository.DictionaryRepository.URIS_FILTER;
+import static ru.yandex.practicum.repository.DictionaryRepository.joinNames;
+
+/**
+ * Почасовые скетчи HyperLogLog по IP-адресам для (app_id, uri_id, bucket) в таблице hits_hll_hour.
+ * <p>
+ * Скетч пачки объединяется со скетчем из БД под блокировкой строки, иначе параллельные записи теряли бы
+ * регистры друг друга. Строки сначала создаются через INSERT ... ON CONFLICT DO NOTHING (FOR UPDATE не блокирует
+ * еще не существующую строку), затем все строки пачки читаются одним запросом FOR UPDATE в порядке ключа,
+ * чтобы параллельные записи блокировали их в одном порядке.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsSketchRepository {
+    // объединение скетча с самим собой его не меняет, поэтому новую строку можно сразу создать со скетчем пачки
+    private static final String INSERT_SKETCH = "INSERT INTO hits_hll_hour (app_id, uri_id, bucket, sketch) " +
+            "VALUES (:appId, :uriId, :bucket, :sketch) ON CONFLICT DO NOTHING";
+
+    private static final String FIND_SKETCHES_FOR_UPDATE = "SELECT app_id, uri_id, bucket, sketch FROM hits_hll_hour " +
+            "WHERE (app_id, uri_id, bucket) IN (%s) " +
+            "ORDER BY app_id, uri_id, bucket FOR UPDATE";
+
+    private static final String KEY_ROW = "(:appId%1$d, :uriId%1$d, CAST(:bucket%1$d AS TIMESTAMP))";
+
+    private static final String UPDATE_SKETCH = "UPDATE hits_hll_hour SET sketch = :sketch " +
+            "WHERE app_id = :appId AND uri_id = :uriId AND bucket = :bucket";
+
+    // число ключей в одном запросе FOR UPDATE
+    private static final int KEYS_PER_QUERY = 500;
+
+    private static final String FIND_SKETCHES = "SELECT app_id, uri_id, sketch FROM hits_hll_hour " +
+            "WHERE bucket >= :from AND bucket < :to %s";
+
+    private static final String FIND_IPS = "SELECT DISTINCT app_id, uri_id, ip FROM hits " +
+            "WHERE moment >= :from AND moment %s :to %s";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void addAll(List<Requests> hits) {
+        Map<SketchKey, HyperLogLog> sketches = new TreeMap<>(SketchKey.ORDER);
+        for (Requests hit : hits) {
+            sketches.computeIfAbsent(new SketchKey(hit.getAppId(), hit.getUriId(),
+                            RollupBucket.HOUR.floor(hit.getMoment())), key -> new HyperLogLog())
+                    .add(hit.getIp());
+        }
+        jdbcTemplate.batchUpdate(INSERT_SKETCH, params(sketches));
+        List<SketchKey> keys = new ArrayList<>(sketches.keySet());
+        for (int from = 0; from < keys.size(); from += KEYS_PER_QUERY) {
+            List<SketchKey> part = keys.subList(from, Math.min(from + KEYS_PER_QUERY, keys.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            StringJoiner rows = new StringJoiner(", ");
+            for (int i = 0; i < part.size(); i++) {
+                rows.add(KEY_ROW.formatted(i));
+                params.addValue("appId" + i, part.get(i).appId())
+                        .addValue("uriId" + i, part.get(i).uriId())
+                        .addValue("bucket" + i, Timestamp.valueOf(part.get(i).bucket()));
+            }
+            jdbcTemplate.query(FIND_SKETCHES_FOR_UPDATE.formatted(rows), params, rs -> {
+                SketchKey key = new SketchKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                        rs.getTimestamp("bucket").toLocalDateTime());
+                sketches.get(key).merge(HyperLogLog.fromBytes(rs.getBytes("sketch")));
+            });
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SKETCH, params(sketches));
+    }
+
+    /**
+     * Передает в consumer скетчи всех часовых бакетов с началом в [from, to).
+     */
+    public void findSketches(LocalDateTime from, LocalDateTime to, List<String> uris,
+                             BiConsumer<List<String>, HyperLogLog> consumer) {
+        String sql = FIND_SKETCHES.formatted(uris == null ? "" : URIS_FILTER);
+        jdbcTemplate.query(joinNames(sql, "sketch"), params(from, to, uris),
+                rs -> {
+                    consumer.accept(List.of(rs.getString("application"), rs.getString("uri")),
+                            HyperLogLog.fromBytes(rs.getBytes("sketch")));
+                });
+    }
+
+    /**
+     * Передает в consumer различные IP из сырой таблицы с moment в [from, to) или [from, to], если toInclusive.
+     */
+    public void findIps(LocalDateTime from, LocalDateTime to, boolean toInclusive, List<String> uris,
+                        BiConsumer<List<String>, byte[]> consumer) {
+        String sql = FIND_IPS.formatted(toInclusive ? "<=" : "<", uris == null ? "" : URIS_FILTER);
+        jdbcTemplate.query(joinNames(sql, "ip"), params(from, to, uris),
+                rs -> {
+                    consumer.accept(List.of(rs.getString("application"), rs.getString("uri")), rs.getBytes("ip"));
+                });
+    }
+
+    private static MapSqlParameterSource[] params(Map<SketchKey, HyperLogLog> sketches) {
+        return sketches.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("appId", e.getKey().appId())
+                        .addValue("uriId", e.getKey().uriId())
+                        .addValue("bucket", Timestamp.valueOf(e.getKey().bucket()))
+                        .addValue("sketch", e.getValue().toBytes()))
+                .toArray(MapSqlParameterSource[]::new);
+    }
+
+    private static MapSqlParameterSource params(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("uris", uris);
+    }
+
+    private record SketchKey(int appId, int uriId, LocalDateTime bucket) {
+        static final Comparator<SketchKey> ORDER = Comparator.comparingInt(SketchKey::appId)
+                .thenComparingInt(SketchKey::uriId)
+                .thenComparing(SketchKey::bucket);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.CountRange;
+import ru.yandex.practicum.model.Response;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static ru.yandex.practicum.repository.DictionaryRepository.URIS_FILTER;
+import static ru.yandex.practicum.repository.DictionaryRepository.joinNames;
+
+/**
+ * Построчное чтение статистики курсором: агрегация целиком выполняется в БД одним запросом,
+ * а строки результата читаются порциями по stats.stream.fetch-size и сразу передаются дальше.
+ * PostgreSQL читает курсором только внутри транзакции, поэтому методы вызываются в транзакции.
+ */
+@Repository
+public class StatsStreamRepository {
+    private static final String COUNT_RAW = "SELECT app_id, uri_id, COUNT(ip) AS total FROM hits " +
+            "WHERE moment >= :from%1$d AND moment %2$s :to%1$d %3$s" +
+            "GROUP BY app_id, uri_id";
+
+    private static final String SUM_BUCKETS = "SELECT app_id, uri_id, SUM(hits) AS total FROM %4$s " +
+            "WHERE bucket >= :from%1$d AND bucket < :to%1$d %3$s" +
+            "GROUP BY app_id, uri_id";
+
+    private static final String SUM_PARTS = "SELECT app_id, uri_id, SUM(total) AS total FROM (%s) p " +
+            "GROUP BY app_id, uri_id";
+
+    private static final String COUNT_UNIQUE_IPS = "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS total FROM hits " +
+            "WHERE moment >= :from0 AND moment <= :to0 %s" +
+            "GROUP BY app_id, uri_id";
+
+    private static final String ORDER_BY_TOTAL = " ORDER BY c.total DESC";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public StatsStreamRepository(DataSource dataSource, @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(template);
+    }
+
+    /**
+     * Сумма хитов по частям ranges: части объединяются через UNION ALL и складываются в БД.
+     */
+    public void streamHits(List<CountRange> ranges, List<String> uris, Consumer<Response> consumer) {
+        String urisFilter = uris == null ? "" : URIS_FILTER;
+        MapSqlParameterSource params = new MapSqlParameterSource("uris", uris);
+        List<String> parts = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            CountRange range = ranges.get(i);
+            parts.add(range.bucket() == null
+                    ? COUNT_RAW.formatted(i, range.toInclusive() ? "<=" : "<", urisFilter)
+                    : SUM_BUCKETS.formatted(i, null, urisFilter, range.bucket().getTable()));
+            addRange(params, i, range.from(), range.to());
+        }
+        String sql = SUM_PARTS.formatted(String.join(" UNION ALL ", parts));
+        stream(joinNames(sql, "total") + ORDER_BY_TOTAL, params, consumer);
+    }
+
+    /**
+     * Число различных IP среди хитов с moment в [from, to].
+     */
+    public void streamUniqueIps(LocalDateTime from, LocalDateTime to, List<String> uris, Consumer<Response> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource("uris", uris);
+        addRange(params, 0, from, to);
+        String sql = COUNT_UNIQUE_IPS.formatted(uris == null ? "" : URIS_FILTER);
+        stream(joinNames(sql, "total") + ORDER_BY_TOTAL, params, consumer);
+    }
+
+    private void stream(String sql, MapSqlParameterSource params, Consumer<Response> consumer) {
+        jdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new Response(rs.getString("application"), rs.getString("uri"), rs.getLong("total")));
+        });
+    }
+
+    private static void addRange(MapSqlParameterSource params, int index, LocalDateTime from, LocalDateTime to) {
+        params.addValue("from" + index, Timestamp.valueOf(from))
+                .addValue("to" + index, Timestamp.valueOf(to));
+    }
+}
@@ -0,0 +1,204 @@
+package ru.yandex.practicum.repository;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.Requests;
+import ru.yandex.practicum.model.RollupBucket;
+import ru.yandex.practicum.sketch.SpaceSaving;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Скетчи Space-Saving по uri_id для каждого приложения: почасовые в hits_top_hour и суточные в hits_top_day.
+ * Запрос топа за длинный диапазон объединяет суточные скетчи полных дней и почасовые только на концах,
+ * то есть O(дней + 48) скетчей по capacity счетчиков, а не O(часов).
+ * <p>
+ * Скетч пачки объединяется со скетчем из БД под блокировкой строки, иначе параллельные записи теряли бы
+ * счетчики друг друга. Строки сначала создаются через INSERT ... ON CONFLICT DO NOTHING (FOR UPDATE не блокирует
+ * еще не существующую строку), затем все строки пачки читаются одним запросом FOR UPDATE в порядке ключа.
+ * Суточные строки блокируются раньше почасовых, поэтому, пока строка дня заблокирована, почасовые скетчи
+ * этого дня не меняются.
+ * <p>
+ * Суточная строка создается со скетчем NULL и при первой блокировке заполняется из почасовых скетчей своего дня:
+ * так дни, начатые до появления hits_top_day, считаются полностью. Для дней без суточной строки
+ * (хиты за них не приходили после ее появления) читаются почасовые скетчи.
+ */
+@Repository
+public class StatsTopRepository {
+    private static final String HOUR_TABLE = "hits_top_hour";
+    private static final String DAY_TABLE = "hits_top_day";
+
+    private static final String INSERT_SKETCH = "INSERT INTO %s (app_id, bucket, sketch) " +
+            "VALUES (:appId, :bucket, :sketch) ON CONFLICT DO NOTHING";
+
+    private static final String FIND_SKETCHES_FOR_UPDATE = "SELECT app_id, bucket, sketch FROM %s " +
+            "WHERE (app_id, bucket) IN (%s) ORDER BY app_id, bucket FOR UPDATE";
+
+    private static final String KEY_ROW = "(:appId%1$d, CAST(:bucket%1$d AS TIMESTAMP))";
+
+    private static final String UPDATE_SKETCH = "UPDATE %s SET sketch = :sketch WHERE app_id = :appId AND bucket = :bucket";
+
+    // число ключей в одном запросе FOR UPDATE
+    private static final int KEYS_PER_QUERY = 500;
+
+    private static final String FIND_DAY_HOURS = "SELECT sketch FROM hits_top_hour " +
+            "WHERE app_id = :appId AND bucket >= :from AND bucket < :to";
+
+    private static final String FIND_SKETCHES = "SELECT app_id, sketch FROM %s " +
+            "WHERE bucket >= :from AND bucket < :to %s";
+
+    private static final String FIND_HOURS_WITHOUT_DAY = "SELECT app_id, sketch FROM hits_top_hour h " +
+            "WHERE bucket >= :from AND bucket < :to %s" +
+            "AND NOT EXISTS (SELECT 1 FROM hits_top_day d " +
+            "WHERE d.app_id = h.app_id AND d.bucket = CAST(CAST(h.bucket AS DATE) AS TIMESTAMP))";
+
+    private static final String COUNT_RAW = "SELECT app_id, uri_id, COUNT(ip) AS total FROM hits " +
+            "WHERE moment >= :from AND moment %s :to %s" +
+            "GROUP BY app_id, uri_id";
+
+    private static final String APP_FILTER = "AND app_id IN (SELECT id FROM applications WHERE name = :app) ";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    @Getter
+    private final int capacity;
+
+    public StatsTopRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                              @Value("${stats.top.capacity:1000}") int capacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = capacity;
+    }
+
+    public void addAll(List<Requests> hits) {
+        Map<SketchKey, SpaceSaving> days = new TreeMap<>(SketchKey.ORDER);
+        Map<SketchKey, SpaceSaving> hours = new TreeMap<>(SketchKey.ORDER);
+        for (Requests hit : hits) {
+            days.computeIfAbsent(new SketchKey(hit.getAppId(), hit.getMoment().truncatedTo(ChronoUnit.DAYS)),
+                            key -> new SpaceSaving(capacity))
+                    .offer(hit.getUriId(), 1);
+            hours.computeIfAbsent(new SketchKey(hit.getAppId(), RollupBucket.HOUR.floor(hit.getMoment())),
+                            key -> new SpaceSaving(capacity))
+                    .offer(hit.getUriId(), 1);
+        }
+        mergeLocked(DAY_TABLE, days, null);
+        mergeLocked(HOUR_TABLE, hours, new SpaceSaving(capacity).toBytes());
+    }
+
+    /**
+     * Объединяет скетчи пачки со строками table под блокировкой. Новые строки создаются со скетчем newSketch;
+     * строка со скетчем NULL (суточная) сначала заполняется из почасовых скетчей.
+     */
+    private void mergeLocked(String table, Map<SketchKey, SpaceSaving> sketches, byte[] newSketch) {
+        jdbcTemplate.batchUpdate(INSERT_SKETCH.formatted(table), sketches.keySet().stream()
+                .map(key -> key.params().addValue("sketch", newSketch, Types.BINARY))
+                .toArray(MapSqlParameterSource[]::new));
+        List<SketchKey> keys = new ArrayList<>(sketches.keySet());
+        List<SketchKey> unfilledDays = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += KEYS_PER_QUERY) {
+            List<SketchKey> part = keys.subList(from, Math.min(from + KEYS_PER_QUERY, keys.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            StringJoiner rows = new StringJoiner(", ");
+            for (int i = 0; i < part.size(); i++) {
+                rows.add(KEY_ROW.formatted(i));
+                params.addValue("appId" + i, part.get(i).appId())
+                        .addValue("bucket" + i, Timestamp.valueOf(part.get(i).bucket()));
+            }
+            jdbcTemplate.query(FIND_SKETCHES_FOR_UPDATE.formatted(table, rows), params, rs -> {
+                SketchKey key = new SketchKey(rs.getInt("app_id"), rs.getTimestamp("bucket").toLocalDateTime());
+                byte[] sketch = rs.getBytes("sketch");
+                if (sketch == null) {
+                    unfilledDays.add(key);
+                } else {
+                    sketches.get(key).merge(SpaceSaving.fromBytes(sketch));
+                }
+            });
+        }
+        for (SketchKey day : unfilledDays) {
+            SpaceSaving sketch = sketches.get(day);
+            jdbcTemplate.query(FIND_DAY_HOURS, day.params()
+                            .addValue("from", Timestamp.valueOf(day.bucket()))
+                            .addValue("to", Timestamp.valueOf(day.bucket().plusDays(1))),
+                    rs -> {
+                        sketch.merge(SpaceSaving.fromBytes(rs.getBytes("sketch")));
+                    });
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SKETCH.formatted(table), sketches.entrySet().stream()
+                .map(e -> e.getKey().params().addValue("sketch", e.getValue().toBytes()))
+                .toArray(MapSqlParameterSource[]::new));
+    }
+
+    /**
+     * Передает в consumer скетчи (app_id, sketch), покрывающие часы с началом в [from, to): суточные скетчи
+     * полных дней и почасовые скетчи остальных часов. from и to — начала часов.
+     */
+    public void findSketches(LocalDateTime from, LocalDateTime to, String app, BiConsumer<Integer, SpaceSaving> consumer) {
+        LocalDateTime dayFrom = from.truncatedTo(ChronoUnit.DAYS).equals(from) ? from
+                : from.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        LocalDateTime dayTo = to.truncatedTo(ChronoUnit.DAYS);
+        if (!dayFrom.isBefore(dayTo)) {
+            findSketches(FIND_SKETCHES.formatted(HOUR_TABLE, appFilter(app)), from, to, app, consumer);
+            return;
+        }
+        findSketches(FIND_SKETCHES.formatted(HOUR_TABLE, appFilter(app)), from, dayFrom, app, consumer);
+        findSketches(FIND_SKETCHES.formatted(DAY_TABLE, appFilter(app)), dayFrom, dayTo, app, consumer);
+        findSketches(FIND_HOURS_WITHOUT_DAY.formatted(appFilter(app)), dayFrom, dayTo, app, consumer);
+        findSketches(FIND_SKETCHES.formatted(HOUR_TABLE, appFilter(app)), dayTo, to, app, consumer);
+    }
+
+    private void findSketches(String sql, LocalDateTime from, LocalDateTime to, String app,
+                              BiConsumer<Integer, SpaceSaving> consumer) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        jdbcTemplate.query(sql, params(from, to, app),
+                rs -> {
+                    consumer.accept(rs.getInt("app_id"), SpaceSaving.fromBytes(rs.getBytes("sketch")));
+                });
+    }
+
+    /**
+     * Точное число хитов по (app_id, uri_id) с moment в [from, to) или [from, to], если toInclusive.
+     */
+    public List<HitCount> countRaw(LocalDateTime from, LocalDateTime to, boolean toInclusive, String app) {
+        String sql = COUNT_RAW.formatted(toInclusive ? "<=" : "<", appFilter(app));
+        return jdbcTemplate.query(sql, params(from, to, app),
+                (rs, rowNum) -> new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("total")));
+    }
+
+    private static String appFilter(String app) {
+        return app == null ? "" : APP_FILTER;
+    }
+
+    private static MapSqlParameterSource params(LocalDateTime from, LocalDateTime to, String app) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("app", app);
+    }
+
+    public record HitCount(int appId, int uriId, long total) {
+    }
+
+    private record SketchKey(int appId, LocalDateTime bucket) {
+        static final Comparator<SketchKey> ORDER = Comparator.comparingInt(SketchKey::appId)
+                .thenComparing(SketchKey::bucket);
+
+        MapSqlParameterSource params() {
+            return new MapSqlParameterSource()
+                    .addValue("appId", appId)
+                    .addValue("bucket", Timestamp.valueOf(bucket));
+        }
+    }
+}
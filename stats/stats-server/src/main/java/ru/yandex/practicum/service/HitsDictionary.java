@@ -0,0 +1,76 @@
+package ru.yandex.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.model.Dictionary;
+import ru.yandex.practicum.repository.DictionaryRepository;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Интернирование строк хитов: app и uri заменяются целочисленными id из таблиц-словарей.
+ * Сопоставление строка → id кешируется в памяти, не больше stats.dictionary.cache-size значений на словарь:
+ * uri приходят от клиентов, и кеш без вытеснения рос бы без предела. К БД обращается хит со значением,
+ * которого нет в кеше. id в словаре не меняются, так что кеш не устаревает.
+ * <p>
+ * Значение ищется в БД вне блокировок кеша: медленный запрос не задерживает хиты с другими значениями.
+ * Одновременные хиты с одним новым значением могут прочитать его из БД несколько раз, id у них будет один.
+ * <p>
+ * Новое значение добавляется в словарь в отдельной транзакции: id попадает в кеш только после того,
+ * как строка словаря зафиксирована, и откат транзакции вызывающего кода его не отменит.
+ */
+@Slf4j
+@Component
+public class HitsDictionary {
+    private final DictionaryRepository dictionaryRepository;
+    private final TransactionTemplate requiresNewTransaction;
+    private final Map<Dictionary, Cache<String, Integer>> ids = new EnumMap<>(Dictionary.class);
+
+    public HitsDictionary(DictionaryRepository dictionaryRepository, PlatformTransactionManager transactionManager,
+                          @Value("${stats.dictionary.cache-size:100000}") long cacheSize) {
+        this.dictionaryRepository = dictionaryRepository;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (Dictionary dictionary : Dictionary.values()) {
+            ids.put(dictionary, Caffeine.newBuilder().maximumSize(cacheSize).build());
+        }
+    }
+
+    public int applicationId(String application) {
+        return idOf(Dictionary.APPLICATIONS, application);
+    }
+
+    public int uriId(String uri) {
+        return idOf(Dictionary.URIS, uri);
+    }
+
+    private int idOf(Dictionary dictionary, String name) {
+        Cache<String, Integer> cache = ids.get(dictionary);
+        Integer id = cache.getIfPresent(name);
+        if (id == null) {
+            id = findOrInsert(dictionary, name);
+            cache.put(name, id);
+        }
+        return id;
+    }
+
+    private int findOrInsert(Dictionary dictionary, String name) {
+        return dictionaryRepository.findId(dictionary, name)
+                .orElseGet(() -> {
+                    try {
+                        return requiresNewTransaction.execute(status -> dictionaryRepository.insert(dictionary, name));
+                    } catch (DuplicateKeyException e) {
+                        log.debug("Value {} was added to {} concurrently", name, dictionary.getTable());
+                        return dictionaryRepository.findId(dictionary, name).orElseThrow(() -> e);
+                    }
+                });
+    }
+}
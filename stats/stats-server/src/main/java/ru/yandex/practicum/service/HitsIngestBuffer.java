@@ -0,0 +1,220 @@
+package ru.yandex.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import ru.yandex.practicum.model.Requests;
+import ru.yandex.practicum.repository.HitsJdbcRepository;
+import ru.yandex.practicum.repository.StatsRollupRepository;
+import ru.yandex.practicum.repository.StatsSketchRepository;
+import ru.yandex.practicum.repository.StatsTopRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind буфер хитов. Хиты складываются в ограниченную очередь и записываются в БД
+ * отдельным потоком пачками по batchSize через {@link HitsJdbcRepository}. В той же транзакции
+ * пачка добавляется в поминутные и почасовые агрегаты {@link StatsRollupRepository}
+ * в почасовые скетчи уникальных IP {@link StatsSketchRepository} и частых uri {@link StatsTopRepository}.
+ * <p>
+ * Запись в БД сериализована: её выполняет поток stats-hits-writer или поток приема хитов при заполненном буфере.
+ * Пачка, которую БД отвергла из-за данных, делится пополам, пока отвергнутые хиты не будут найдены
+ * и пропущены; при остальных ошибках пачка остается в буфере и записывается повторно.
+ * <p>
+ * Читатели БД не ждут записи: {@link #pending} отдает хиты, которые еще не видны в снимке БД читателя.
+ * Фиксация пачки и удаление ее из буфера выполняются под блокировкой записи {@link #visibility},
+ * а снимок буфера и первый запрос транзакции читателя — под блокировкой чтения, поэтому каждый хит
+ * попадает ровно в одно из двух: в снимок БД или в снимок буфера.
+ */
+@Slf4j
+@Component
+public class HitsIngestBuffer {
+    private final HitsJdbcRepository hitsJdbcRepository;
+    private final StatsRollupRepository statsRollupRepository;
+    private final StatsSketchRepository statsSketchRepository;
+    private final StatsTopRepository statsTopRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final BlockingQueue<Requests> buffer;
+    // хиты, извлеченные из buffer, но еще не зафиксированные в БД; меняется под блокировкой записи visibility
+    private final List<Requests> inFlight = new ArrayList<>();
+    private final ReadWriteLock visibility = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService writer;
+    private final int batchSize;
+    private final StatsMetrics statsMetrics;
+
+    public HitsIngestBuffer(HitsJdbcRepository hitsJdbcRepository,
+                            StatsRollupRepository statsRollupRepository,
+                            StatsSketchRepository statsSketchRepository,
+                            StatsTopRepository statsTopRepository,
+                            PlatformTransactionManager transactionManager,
+                            StatsMetrics statsMetrics,
+                            @Value("${stats.ingest.batch-size:500}") int batchSize,
+                            @Value("${stats.ingest.buffer-capacity:65536}") int bufferCapacity,
+                            @Value("${stats.ingest.flush-interval-ms:100}") long flushIntervalMs) {
+        this.hitsJdbcRepository = hitsJdbcRepository;
+        this.statsRollupRepository = statsRollupRepository;
+        this.statsSketchRepository = statsSketchRepository;
+        this.statsTopRepository = statsTopRepository;
+        this.transactionManager = transactionManager;
+        this.batchSize = batchSize;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.statsMetrics = statsMetrics;
+        statsMetrics.monitorBuffer(buffer);
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-hits-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Принимает хит в буфер. Если буфер заполнен, вызывающий поток сам сбрасывает его в БД,
+     * так что при перегрузке запись замедляется, но хиты не теряются.
+     */
+    public void add(Requests hit) {
+        while (!buffer.offer(hit)) {
+            flush();
+        }
+        if (buffer.size() >= batchSize) {
+            writer.execute(this::flushQuietly);
+        }
+    }
+
+    public void addAll(List<Requests> hits) {
+        hits.forEach(this::add);
+    }
+
+    /**
+     * Синхронно записывает в БД все хиты, принятые к этому моменту. Если БД недоступна, бросает исключение,
+     * а незаписанные хиты остаются в буфере до следующей попытки.
+     */
+    public synchronized void flush() {
+        List<Requests> batch;
+        while (!(batch = nextBatch()).isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Снимок хитов, еще не зафиксированных в БД. snapshotStart должен выполнить первый запрос транзакции читателя
+     * с уровнем изоляции REPEATABLE READ: снимок БД этой транзакции и снимок буфера берутся между фиксациями пачек.
+     * Если незаписанных хитов нет, запрос не нужен: пачки, зафиксированные позже, в снимок буфера не попали.
+     */
+    public PendingHits pending(Runnable snapshotStart) {
+        visibility.readLock().lock();
+        try {
+            List<Requests> hits = new ArrayList<>(inFlight);
+            hits.addAll(List.of(buffer.toArray(Requests[]::new)));
+            if (hits.isEmpty()) {
+                return PendingHits.EMPTY;
+            }
+            snapshotStart.run();
+            return new PendingHits(hits);
+        } finally {
+            visibility.readLock().unlock();
+        }
+    }
+
+    /**
+     * Следующая пачка для записи: сначала повторяется незаписанный остаток предыдущей.
+     */
+    private List<Requests> nextBatch() {
+        visibility.writeLock().lock();
+        try {
+            if (inFlight.isEmpty()) {
+                buffer.drainTo(inFlight, batchSize);
+            }
+            return List.copyOf(inFlight);
+        } finally {
+            visibility.writeLock().unlock();
+        }
+    }
+
+    private void write(List<Requests> batch) {
+        long started = System.nanoTime();
+        try {
+            commit(batch);
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() > 1) {
+                write(batch.subList(0, batch.size() / 2));
+                write(batch.subList(batch.size() / 2, batch.size()));
+                return;
+            }
+            log.warn("Hit {} was rejected by database and skipped: {}", batch.getFirst(), e.getMessage());
+            discard(batch);
+            statsMetrics.rejected(batch.size());
+            return;
+        } catch (RuntimeException e) {
+            statsMetrics.writeFailed();
+            throw e;
+        }
+        statsMetrics.written(batch.size(), System.nanoTime() - started);
+    }
+
+    private void commit(List<Requests> batch) {
+        TransactionStatus status = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        try {
+            writeAll(batch);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+        visibility.writeLock().lock();
+        try {
+            transactionManager.commit(status);
+            inFlight.removeAll(batch);
+        } finally {
+            visibility.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает хиты вместе с агрегатами и скетчами в транзакции вызывающего кода, минуя буфер.
+     */
+    void writeAll(List<Requests> hits) {
+        hitsJdbcRepository.insertAll(hits);
+        statsRollupRepository.addAll(hits);
+        statsSketchRepository.addAll(hits);
+        statsTopRepository.addAll(hits);
+    }
+
+    private void discard(List<Requests> batch) {
+        visibility.writeLock().lock();
+        try {
+            inFlight.removeAll(batch);
+        } finally {
+            visibility.writeLock().unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Write hits was not successful with exception {} and message {}", e.getClass().getName(), e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+            writer.shutdownNow();
+        }
+        flushQuietly();
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.mapper.Mapper;
+import ru.yandex.practicum.model.Requests;
+import ru.yandex.practicum.repository.HitsLegacyRepository;
+import ru.yandex.practicum.repository.HitsLegacyRepository.LegacyHit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Переносит хиты прежнего формата из hits_legacy (см. schema.sql) в текущую схему: app и uri кодируются словарями,
+ * IP переводится в двоичный вид, и хиты записываются вместе с агрегатами и скетчами, как при приеме.
+ * <p>
+ * Каждая пачка переносится в своей транзакции и в ней же удаляется из hits_legacy, поэтому прерванный перенос
+ * продолжается при следующем запуске. Пачки захватываются через FOR UPDATE SKIP LOCKED, и несколько экземпляров
+ * stats-server переносят разные пачки. Хиты с некорректным IP пропускаются.
+ */
+@Slf4j
+@Service
+public class HitsLegacyMigration {
+    private final HitsLegacyRepository hitsLegacyRepository;
+    private final HitsIngestBuffer hitsIngestBuffer;
+    private final HitsDictionary hitsDictionary;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public HitsLegacyMigration(HitsLegacyRepository hitsLegacyRepository,
+                               HitsIngestBuffer hitsIngestBuffer,
+                               HitsDictionary hitsDictionary,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${stats.ingest.batch-size:500}") int batchSize) {
+        this.hitsLegacyRepository = hitsLegacyRepository;
+        this.hitsIngestBuffer = hitsIngestBuffer;
+        this.hitsDictionary = hitsDictionary;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!hitsLegacyRepository.exists()) {
+            return;
+        }
+        log.info("Перенос хитов прежнего формата из hits_legacy");
+        long migrated = 0;
+        long skipped = 0;
+        int[] batch;
+        while ((batch = transactionTemplate.execute(status -> migrateBatch()))[0] > 0) {
+            migrated += batch[1];
+            skipped += batch[0] - batch[1];
+        }
+        log.info("Перенос хитов прежнего формата завершен: перенесено {}, пропущено с некорректным IP {}",
+                migrated, skipped);
+        try {
+            if (Boolean.TRUE.equals(transactionTemplate.execute(status -> hitsLegacyRepository.dropIfEmpty()))) {
+                log.info("Таблица hits_legacy удалена");
+            }
+        } catch (DataAccessException e) {
+            // таблицу, пока ждали блокировку, уже удалил другой экземпляр
+            if (hitsLegacyRepository.exists()) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return число прочитанных из hits_legacy хитов и число перенесенных из них
+     */
+    private int[] migrateBatch() {
+        List<LegacyHit> legacyHits = hitsLegacyRepository.lockBatch(batchSize);
+        List<Requests> hits = new ArrayList<>(legacyHits.size());
+        for (LegacyHit legacyHit : legacyHits) {
+            try {
+                hits.add(Mapper.toRequest(legacyHit.hit(), hitsDictionary.applicationId(legacyHit.hit().getApp()),
+                        hitsDictionary.uriId(legacyHit.hit().getUri())));
+            } catch (ValidationException e) {
+                log.warn("Hit {} was skipped: {}", legacyHit.hit(), e.getMessage());
+            }
+        }
+        if (!hits.isEmpty()) {
+            hitsIngestBuffer.writeAll(hits);
+        }
+        if (!legacyHits.isEmpty()) {
+            hitsLegacyRepository.delete(legacyHits.stream().map(LegacyHit::id).toList());
+        }
+        return new int[]{legacyHits.size(), hits.size()};
+    }
+}
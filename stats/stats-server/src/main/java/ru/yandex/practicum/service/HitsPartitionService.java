@@ -0,0 +1,83 @@
+package ru.yandex.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.repository.HitsPartitionRepository;
+
+import java.time.LocalDate;
+
+/**
+ * Обслуживание суточных секций hits: заранее создает секции на ближайшие дни
+ * и удаляет секции старше срока хранения. Ошибки обслуживания считаются в метрике stats.partitions.failures:
+ * без новых секций хиты копятся в hits_default, и запросы по ним перестают отсекать лишние дни.
+ * <p>
+ * Агрегаты hits_minute, hits_hour и скетчи hits_hll_hour, hits_top_hour, hits_top_day пополняются при записи хитов
+ * и не удаляются, поэтому неуникальная и приближенная уникальная статистика за удаленные дни остается доступной.
+ * Точный подсчет уникальных IP возможен только в пределах срока хранения сырых хитов.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "stats.partitions", name = "enabled", havingValue = "true")
+public class HitsPartitionService {
+    private final HitsPartitionRepository hitsPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsMetrics statsMetrics;
+    private final int precreateDays;
+    private final int retentionDays;
+
+    public HitsPartitionService(HitsPartitionRepository hitsPartitionRepository,
+                                PlatformTransactionManager transactionManager,
+                                StatsMetrics statsMetrics,
+                                @Value("${stats.partitions.precreate-days:7}") int precreateDays,
+                                @Value("${stats.partitions.retention-days:90}") int retentionDays) {
+        this.hitsPartitionRepository = hitsPartitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statsMetrics = statsMetrics;
+        this.precreateDays = precreateDays;
+        this.retentionDays = retentionDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${stats.partitions.maintenance-cron:0 5 0 * * *}")
+    public void maintainPartitions() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i <= precreateDays; i++) {
+            createPartition(today.plusDays(i));
+        }
+
+        LocalDate cutoff = today.minusDays(retentionDays);
+        try {
+            for (LocalDate day : hitsPartitionRepository.findDailyPartitions()) {
+                if (day.isBefore(cutoff)) {
+                    hitsPartitionRepository.dropDailyPartition(day);
+                    log.info("Удалена секция хитов за {}", day);
+                }
+            }
+            int deleted = hitsPartitionRepository.deleteFromDefaultBefore(cutoff);
+            log.info("Обслуживание секций хитов завершено, из секции по умолчанию удалено {} хитов старше {}",
+                    deleted, cutoff);
+        } catch (Exception e) {
+            statsMetrics.partitionMaintenanceFailed();
+            log.error("Не удалось удалить хиты старше {}: {}", cutoff, e.getMessage(), e);
+        }
+    }
+
+    private void createPartition(LocalDate day) {
+        try {
+            Integer moved = transactionTemplate.execute(status -> hitsPartitionRepository.createDailyPartition(day));
+            if (moved != null && moved > 0) {
+                log.info("В секцию хитов за {} перенесено {} хитов из секции по умолчанию", day, moved);
+            }
+        } catch (Exception e) {
+            statsMetrics.partitionMaintenanceFailed();
+            log.error("Не удалось создать секцию хитов за {}: {}", day, e.getMessage(), e);
+        }
+    }
+}
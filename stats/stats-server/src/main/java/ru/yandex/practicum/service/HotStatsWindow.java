@@ -0,0 +1,193 @@
+package ru.yandex.practicum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.model.Response;
+import ru.yandex.practicum.model.RollupBucket;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики хитов за последние stats.hot-window.hours часов в памяти: кольцо поминутных слотов,
+ * в каждом — число хитов и множество IP по (app, uri). Слоты обновляются при приеме хита без блокировок
+ * ({@link LongAdder}, {@link ConcurrentHashMap}), слот старой минуты переиспользуется заменой целиком.
+ * <p>
+ * Окно видит только хиты, принятые этим экземпляром после запуска, поэтому отвечает лишь за моменты
+ * начиная с {@link #coveredFrom()}. Поэтому окно по умолчанию отключено: включать его
+ * (stats.hot-window.enabled=true) можно, только если все хиты принимает один экземпляр stats-server.
+ */
+@Component
+public class HotStatsWindow {
+    private final boolean enabled;
+    private final int windowMinutes;
+    private final Clock clock;
+    private final LocalDateTime startedAt;
+    // кроме windowMinutes минут окна: текущая минута и следующая (хиты с часами чуть впереди)
+    private final AtomicReferenceArray<MinuteSlot> slots;
+
+    @Autowired
+    public HotStatsWindow(@Value("${stats.hot-window.enabled:false}") boolean enabled,
+                          @Value("${stats.hot-window.hours:24}") int windowHours) {
+        this(enabled, windowHours, Clock.systemDefaultZone());
+    }
+
+    HotStatsWindow(boolean enabled, int windowHours, Clock clock) {
+        this.enabled = enabled;
+        this.windowMinutes = windowHours * 60;
+        this.clock = clock;
+        this.startedAt = RollupBucket.MINUTE.ceil(LocalDateTime.now(clock));
+        this.slots = new AtomicReferenceArray<>(windowMinutes + 2);
+    }
+
+    /**
+     * Начало интервала, все хиты которого есть в окне; пусто, если окно отключено.
+     */
+    public Optional<LocalDateTime> coveredFrom() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        LocalDateTime windowStart = RollupBucket.MINUTE.floor(LocalDateTime.now(clock)).minusMinutes(windowMinutes);
+        return Optional.of(windowStart.isAfter(startedAt) ? windowStart : startedAt);
+    }
+
+    public void record(String application, String uri, byte[] ip, LocalDateTime moment) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime minute = RollupBucket.MINUTE.floor(moment);
+        LocalDateTime currentMinute = RollupBucket.MINUTE.floor(LocalDateTime.now(clock));
+        if (minute.isBefore(currentMinute.minusMinutes(windowMinutes)) || minute.isAfter(currentMinute.plusMinutes(1))) {
+            return;
+        }
+        MinuteSlot slot = slotFor(minute);
+        if (slot == null) {
+            return;
+        }
+        slot.counters.computeIfAbsent(new HitKey(application, uri), key -> new KeyCounter())
+                .add(ByteBuffer.wrap(ip), toNanos(moment));
+    }
+
+    /**
+     * Считает хиты с moment в [from, to] по слотам окна. Пусто, если окно не может ответить точно:
+     * from раньше {@link #coveredFrom()} или в крайней минуте у какого-то (app, uri) есть хиты вне диапазона.
+     */
+    public Optional<List<Response>> count(LocalDateTime from, LocalDateTime to, List<String> uris, boolean unique) {
+        Optional<LocalDateTime> coveredFrom = coveredFrom();
+        if (coveredFrom.isEmpty() || from.isBefore(coveredFrom.get())) {
+            return Optional.empty();
+        }
+        Set<String> uriFilter = uris == null ? null : Set.copyOf(uris);
+        long fromNanos = toNanos(from);
+        long toNanos = toNanos(to);
+        Map<HitKey, Long> hits = new HashMap<>();
+        Map<HitKey, Set<ByteBuffer>> ips = new HashMap<>();
+        LocalDateTime lastMinute = RollupBucket.MINUTE.floor(LocalDateTime.now(clock)).plusMinutes(1);
+        for (LocalDateTime minute = RollupBucket.MINUTE.floor(from);
+             !minute.isAfter(to) && !minute.isAfter(lastMinute); minute = minute.plusMinutes(1)) {
+            MinuteSlot slot = slots.get(index(minute));
+            if (slot == null || !slot.minute.equals(minute)) {
+                continue;
+            }
+            for (Map.Entry<HitKey, KeyCounter> entry : slot.counters.entrySet()) {
+                if (uriFilter != null && !uriFilter.contains(entry.getKey().uri())) {
+                    continue;
+                }
+                KeyCounter counter = entry.getValue();
+                if (counter.first.get() < fromNanos || counter.last.get() > toNanos) {
+                    return Optional.empty();
+                }
+                if (unique) {
+                    ips.computeIfAbsent(entry.getKey(), key -> new HashSet<>()).addAll(counter.ips);
+                } else {
+                    hits.merge(entry.getKey(), counter.hits.sum(), Long::sum);
+                }
+            }
+        }
+        Map<HitKey, Long> totals = hits;
+        if (unique) {
+            totals = new HashMap<>();
+            for (Map.Entry<HitKey, Set<ByteBuffer>> entry : ips.entrySet()) {
+                totals.put(entry.getKey(), (long) entry.getValue().size());
+            }
+        }
+        return Optional.of(totals.entrySet().stream()
+                .map(e -> new Response(e.getKey().application(), e.getKey().uri(), e.getValue()))
+                .sorted(Comparator.comparing(Response::getTotal).reversed())
+                .toList());
+    }
+
+    /**
+     * Слот минуты minute; слот более старой минуты с тем же индексом заменяется пустым.
+     * null, если слот уже занят более новой минутой.
+     */
+    private MinuteSlot slotFor(LocalDateTime minute) {
+        int index = index(minute);
+        while (true) {
+            MinuteSlot slot = slots.get(index);
+            if (slot != null && slot.minute.equals(minute)) {
+                return slot;
+            }
+            if (slot != null && slot.minute.isAfter(minute)) {
+                return null;
+            }
+            MinuteSlot fresh = new MinuteSlot(minute);
+            if (slots.compareAndSet(index, slot, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private int index(LocalDateTime minute) {
+        return (int) Math.floorMod(minute.toEpochSecond(ZoneOffset.UTC) / 60, (long) slots.length());
+    }
+
+    private static long toNanos(LocalDateTime moment) {
+        return moment.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + moment.getNano();
+    }
+
+    private record HitKey(String application, String uri) {
+    }
+
+    private static class MinuteSlot {
+        final LocalDateTime minute;
+        final Map<HitKey, KeyCounter> counters = new ConcurrentHashMap<>();
+
+        MinuteSlot(LocalDateTime minute) {
+            this.minute = minute;
+        }
+    }
+
+    /**
+     * Хиты одного (app, uri) за минуту. first и last — крайние moment, по ним видно,
+     * можно ли взять минуту целиком, если граница диапазона проходит внутри нее.
+     */
+    private static class KeyCounter {
+        final LongAdder hits = new LongAdder();
+        final Set<ByteBuffer> ips = ConcurrentHashMap.newKeySet();
+        final LongAccumulator first = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        final LongAccumulator last = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+        void add(ByteBuffer ip, long momentNanos) {
+            // границы обновляются раньше счетчиков, чтобы читатель не принял хит вне диапазона
+            first.accumulate(momentNanos);
+            last.accumulate(momentNanos);
+            hits.increment();
+            ips.add(ip);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.service;
+
+import ru.yandex.practicum.model.Requests;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Хиты, принятые {@link HitsIngestBuffer}, но не попавшие в снимок БД читателя, см. {@link HitsIngestBuffer#pending}.
+ * Читатель досчитывает их к результату запроса в памяти.
+ */
+public record PendingHits(List<Requests> hits) {
+    public static final PendingHits EMPTY = new PendingHits(List.of());
+
+    public boolean isEmpty() {
+        return hits.isEmpty();
+    }
+
+    /**
+     * Хиты с moment в [from, to) или [from, to], если toInclusive.
+     */
+    public List<Requests> between(LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+        return hits.stream()
+                .filter(hit -> !hit.getMoment().isBefore(from)
+                        && (toInclusive ? !hit.getMoment().isAfter(to) : hit.getMoment().isBefore(to)))
+                .toList();
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Метрики приема хитов и запросов статистики:
+ * <ul>
+ *     <li>stats.hits.ingested с тегом app — принятые хиты. Значение app приходит от клиента, поэтому тегом
+ *     становятся только приложения из stats.metrics.apps, остальные считаются под app=other: иначе каждое
+ *     новое имя заводило бы в реестре отдельный счетчик;</li>
+ *     <li>stats.hits.dropped с тегом reason=rejected — хиты, которые БД отвергла из-за данных,
+ *     и reason=invalid — некорректные хиты, пропущенные при пакетном приеме;</li>
+ *     <li>stats.ingest.write.failures — неудачные попытки записи пачки, которая остается в буфере для повтора;</li>
+ *     <li>stats.ingest.buffer — хиты в буфере {@link HitsIngestBuffer};</li>
+ *     <li>stats.ingest.write и stats.ingest.batch — длительность и размер записи пачки с агрегатами;</li>
+ *     <li>stats.partitions.failures — ошибки создания и удаления суточных секций hits, см. {@link HitsPartitionService};</li>
+ *     <li>stats.query с тегами variant и outcome — длительность подсчета статистики по способу подсчета
+ *     (hot, rollup, sketch, exact, stream, top, views).</li>
+ * </ul>
+ * Без {@link MeterRegistry} в контексте (срезы тестов) метрики пишутся в собственный реестр и никуда не публикуются.
+ */
+@Component
+public class StatsMetrics {
+    private static final String OTHER_APP = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final Timer writeLatency;
+    private final DistributionSummary writeBatch;
+    private final Counter droppedRejected;
+    private final Counter droppedInvalid;
+    private final Counter writeFailures;
+    private final Counter partitionFailures;
+    private final Map<String, Counter> ingestedByApp;
+    private final Counter ingestedOther;
+
+    public StatsMetrics(@Nullable MeterRegistry meterRegistry,
+                        @Value("${stats.metrics.apps:main-server}") List<String> apps) {
+        this.meterRegistry = meterRegistry == null ? new SimpleMeterRegistry() : meterRegistry;
+        this.ingestedByApp = apps.stream()
+                .filter(app -> !app.isBlank() && !OTHER_APP.equals(app))
+                .distinct()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), this::ingestedCounter));
+        this.ingestedOther = ingestedCounter(OTHER_APP);
+        this.writeLatency = Timer.builder("stats.ingest.write")
+                .description("Запись пачки хитов в БД вместе с агрегатами и скетчами")
+                .publishPercentileHistogram()
+                .register(this.meterRegistry);
+        this.writeBatch = DistributionSummary.builder("stats.ingest.batch")
+                .description("Размер записанной пачки хитов")
+                .register(this.meterRegistry);
+        this.droppedRejected = Counter.builder("stats.hits.dropped")
+                .tag("reason", "rejected")
+                .register(this.meterRegistry);
+        this.droppedInvalid = Counter.builder("stats.hits.dropped")
+                .tag("reason", "invalid")
+                .register(this.meterRegistry);
+        this.writeFailures = Counter.builder("stats.ingest.write.failures")
+                .description("Неудачные попытки записи пачки хитов, пачка будет записана повторно")
+                .register(this.meterRegistry);
+        this.partitionFailures = Counter.builder("stats.partitions.failures")
+                .description("Ошибки обслуживания суточных секций hits")
+                .register(this.meterRegistry);
+    }
+
+    public void ingested(String app, int count) {
+        ingestedByApp.getOrDefault(app, ingestedOther).increment(count);
+    }
+
+    public void monitorBuffer(Collection<?> buffer) {
+        Gauge.builder("stats.ingest.buffer", buffer, Collection::size)
+                .description("Хиты, ожидающие записи в БД")
+                .register(meterRegistry);
+    }
+
+    public void written(int batchSize, long durationNanos) {
+        writeLatency.record(durationNanos, TimeUnit.NANOSECONDS);
+        writeBatch.record(batchSize);
+    }
+
+    public void rejected(int count) {
+        droppedRejected.increment(count);
+    }
+
+    public void invalid(int count) {
+        droppedInvalid.increment(count);
+    }
+
+    public void writeFailed() {
+        writeFailures.increment();
+    }
+
+    public void partitionMaintenanceFailed() {
+        partitionFailures.increment();
+    }
+
+    private Counter ingestedCounter(String app) {
+        return Counter.builder("stats.hits.ingested")
+                .description("Хиты, принятые stats-server")
+                .tag("app", app)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет подсчет и пишет его длительность в stats.query.
+     */
+    public <T> T query(String variant, Supplier<T> query) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ERROR";
+        try {
+            T result = query.get();
+            outcome = "SUCCESS";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("stats.query")
+                    .description("Подсчет статистики")
+                    .tag("variant", variant)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
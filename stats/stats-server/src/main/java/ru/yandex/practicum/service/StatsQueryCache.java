@@ -0,0 +1,84 @@
+package ru.yandex.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.model.Response;
+import ru.yandex.practicum.model.RollupBucket;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Кеш результатов {@link StatsServiceImpl#getStats}. main-server передает end = now(), поэтому end из текущего
+ * бакета stats.cache.bucket (или из будущего) в ключе округляется вверх до бакета: такие запросы получают один
+ * результат, отстающий от их end не больше, чем от БД. Для end в прошлом счет за [start, ceil(end)] был бы
+ * неверен, а не просто устарел: такой end входит в ключ точно.
+ * <p>
+ * Новые хиты запись не сбрасывают: она живет stats.cache.expire-after-write и может на это время отставать
+ * от БД. Так прием хитов не тратит время на кеш, а экземпляры stats-server, между которыми распределяются
+ * хиты, не отдают результаты, устаревшие из-за хитов, принятых другим экземпляром, дольше срока жизни записи.
+ * Одновременные одинаковые запросы вычисляются один раз.
+ * <p>
+ * Метрики попаданий публикуются как cache.* с тегом cache=stats.query.
+ */
+@Component
+public class StatsQueryCache {
+    private final boolean enabled;
+    private final RollupBucket bucket;
+    private final Clock clock;
+    private final Cache<Key, List<Response>> cache;
+
+    @Autowired
+    public StatsQueryCache(@Value("${stats.cache.enabled:true}") boolean enabled,
+                           @Value("${stats.cache.bucket:MINUTE}") RollupBucket bucket,
+                           @Value("${stats.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${stats.cache.expire-after-write:PT10S}") Duration expireAfterWrite,
+                           @Nullable MeterRegistry meterRegistry) {
+        this(enabled, bucket, maximumSize, expireAfterWrite, meterRegistry, Ticker.systemTicker(),
+                Clock.systemDefaultZone());
+    }
+
+    StatsQueryCache(boolean enabled, RollupBucket bucket, long maximumSize, Duration expireAfterWrite,
+                    @Nullable MeterRegistry meterRegistry, Ticker ticker, Clock clock) {
+        this.enabled = enabled;
+        this.bucket = bucket;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats.query");
+        }
+    }
+
+    public List<Response> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                              boolean approximate, Supplier<List<Response>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        boolean current = !end.isBefore(bucket.floor(LocalDateTime.now(clock)));
+        Key key = new Key(start, current ? bucket.ceil(end) : end, current,
+                uris == null ? null : uris.stream().sorted().distinct().toList(), unique, approximate);
+        return cache.get(key, k -> loader.get());
+    }
+
+    /**
+     * current отделяет округленный end текущего бакета от точного end в прошлом, совпавшего с границей бакета.
+     */
+    private record Key(LocalDateTime start, LocalDateTime end, boolean current, List<String> uris, boolean unique,
+                       boolean approximate) {
+    }
+}
@@ -1,14 +1,51 @@
 package ru.yandex.practicum.service;
 
+import ru.yandex.practicum.dto.EventViewsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestDto;
 import ru.yandex.practicum.dto.StatsResponseDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface StatsService {
     StatsRequestDto save(StatsRequestDto requestDto);
 
-    List<StatsResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+    void saveAll(List<StatsRequestDto> requestDtos);
+
+    default List<StatsResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        return getStats(start, end, uris, unique, false);
+    }
+
+    /**
+     * @param approximate для unique = true считать уникальные IP по скетчам HyperLogLog вместо COUNT(DISTINCT ip)
+     */
+    List<StatsResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                    boolean approximate);
+
+    /**
+     * Передает строки статистики в consumer по мере чтения из БД, не собирая результат в памяти.
+     * Уникальные IP всегда считаются точно: объединение скетчей требует всех строк сразу.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                     Consumer<StatsResponseDto> consumer);
+
+    /**
+     * Самые посещаемые uri за [start, end] по убыванию числа хитов. Счетчики — оценки сверху
+     * по скетчам Space-Saving; uri с долей хитов больше 1 / stats.top.capacity в результат попадают всегда.
+     *
+     * @param application только хиты этого приложения, если не null
+     * @param uriPrefix   только uri с этим префиксом, если не null
+     */
+    List<StatsResponseDto> getTop(LocalDateTime start, LocalDateTime end, int limit, String application,
+                                  String uriPrefix);
+
+    /**
+     * Просмотры событий: хиты /events/{eventId} с since своего окна до текущего момента.
+     *
+     * @return число просмотров по eventId, для каждого запрошенного события (0, если просмотров нет)
+     */
+    Map<Long, Long> getEventViews(List<EventViewsRequestDto> windows, boolean unique);
 
 }
@@ -5,16 +5,43 @@ import lombok.AllArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestDto;
 import ru.yandex.practicum.dto.StatsResponseDto;
 import ru.yandex.practicum.exception.ValidationException;
 import ru.yandex.practicum.mapper.Mapper;
+import ru.yandex.practicum.model.CountRange;
+import ru.yandex.practicum.model.Dictionary;
+import ru.yandex.practicum.model.Requests;
 import ru.yandex.practicum.model.Response;
-import ru.yandex.practicum.repository.StatsRepository;
+import ru.yandex.practicum.model.RollupBucket;
+import ru.yandex.practicum.repository.DictionaryRepository;
+import ru.yandex.practicum.repository.HitsJdbcRepository;
+import ru.yandex.practicum.repository.HitsJdbcRepository.SeenIp;
+import ru.yandex.practicum.repository.HitsJdbcRepository.UriWindow;
+import ru.yandex.practicum.repository.StatsRollupRepository;
+import ru.yandex.practicum.repository.StatsSketchRepository;
+import ru.yandex.practicum.repository.StatsStreamRepository;
+import ru.yandex.practicum.repository.StatsTopRepository;
+import ru.yandex.practicum.sketch.HyperLogLog;
+import ru.yandex.practicum.sketch.SpaceSaving;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,41 +49,463 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 @Slf4j
 public class StatsServiceImpl implements StatsService {
+    private static final String EVENT_URI_PREFIX = "/events/";
+    // длина name в словарях applications и uris
+    private static final int MAX_NAME_LENGTH = 256;
 
-    final StatsRepository statsRepository;
+    final HitsJdbcRepository hitsJdbcRepository;
+    final StatsRollupRepository statsRollupRepository;
+    final StatsSketchRepository statsSketchRepository;
+    final HitsIngestBuffer hitsIngestBuffer;
+    final HitsDictionary hitsDictionary;
+    final HotStatsWindow hotStatsWindow;
+    final StatsQueryCache statsQueryCache;
+    final StatsStreamRepository statsStreamRepository;
+    final StatsTopRepository statsTopRepository;
+    final DictionaryRepository dictionaryRepository;
+    final PlatformTransactionManager transactionManager;
+    final StatsMetrics statsMetrics;
 
-    @Transactional
     public StatsRequestDto save(StatsRequestDto requestDto) {
         log.info("Save request to {}", requestDto);
-        try {
-            var savedRequest = statsRepository.save(Mapper.toRequest(requestDto));
-            return Mapper.toRequestDto(savedRequest);
-        } catch (Exception e) {
-            throw new ValidationException(e.getMessage());
+        validate(requestDto);
+        Requests request = toRequest(requestDto);
+        hitsIngestBuffer.add(request);
+        hotStatsWindow.record(requestDto.getApp(), requestDto.getUri(), request.getIp(), request.getMoment());
+        statsMetrics.ingested(requestDto.getApp(), 1);
+        return requestDto;
+    }
+
+    /**
+     * Некорректный хит пакета пропускается и засчитывается в stats.hits.dropped с reason=invalid, остальные
+     * записываются: отправитель не повторяет пакет, и одна плохая строка не должна терять весь пакет.
+     */
+    public void saveAll(List<StatsRequestDto> requestDtos) {
+        log.info("Save {} requests", requestDtos.size());
+        List<StatsRequestDto> accepted = new ArrayList<>(requestDtos.size());
+        List<Requests> requests = new ArrayList<>(requestDtos.size());
+        for (StatsRequestDto requestDto : requestDtos) {
+            try {
+                validate(requestDto);
+                requests.add(toRequest(requestDto));
+                accepted.add(requestDto);
+            } catch (ValidationException e) {
+                log.warn("Хит пропущен: {}", e.getMessage());
+            }
         }
+        if (accepted.size() < requestDtos.size()) {
+            statsMetrics.invalid(requestDtos.size() - accepted.size());
+        }
+        hitsIngestBuffer.addAll(requests);
+        for (int i = 0; i < requests.size(); i++) {
+            StatsRequestDto requestDto = accepted.get(i);
+            hotStatsWindow.record(requestDto.getApp(), requestDto.getUri(), requests.get(i).getIp(),
+                    requests.get(i).getMoment());
+        }
+        accepted.stream()
+                .collect(Collectors.groupingBy(StatsRequestDto::getApp, Collectors.counting()))
+                .forEach((app, count) -> statsMetrics.ingested(app, Math.toIntExact(count)));
     }
 
-    public List<StatsResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+    public List<StatsResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                           boolean approximate) {
         if (start.isAfter(end)) {
             throw new ValidationException("Время окончания позже начала");
         }
+        List<String> uriFilter = (uris == null) || (uris.isEmpty()) ? null : uris;
+        return statsQueryCache.get(start, end, uriFilter, unique, approximate,
+                        () -> countInHotWindow(start, end, uriFilter, unique)
+                                .orElseGet(() -> countInDatabase(start, end, uriFilter, unique, approximate)))
+                .stream()
+                .map(Mapper::toResponseDto)
+                .collect(Collectors.toList());
+    }
 
-        List<Response> statistic;
-        if ((uris == null) || (uris.isEmpty())) {
+    /**
+     * Поток строк читается курсором PostgreSQL, которому нужна открытая транзакция. Окно в памяти и кеш результатов
+     * не используются: они хранят результат целиком. Незаписанные хиты буфера досчитываются к строкам потока,
+     * а пары (app, uri), которых в БД еще нет, передаются после остальных строк.
+     */
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<StatsResponseDto> consumer) {
+        if (start.isAfter(end)) {
+            throw new ValidationException("Время окончания позже начала");
+        }
+        List<String> uriFilter = (uris == null) || (uris.isEmpty()) ? null : uris;
+        Consumer<Response> rowConsumer = response -> consumer.accept(Mapper.toResponseDto(response));
+        statsMetrics.query("stream", () -> readThroughBuffer(pending -> {
+            Map<List<String>, Long> pendingTotals = unique
+                    ? countPendingUniqueIps(start, end, uriFilter, pending)
+                    : countPending(pending.between(start, end, true), uriFilter);
+            Consumer<Response> mergingConsumer = response -> {
+                Long pendingTotal = pendingTotals.remove(List.of(response.getApplication(), response.getUri()));
+                if (pendingTotal != null) {
+                    response.setTotal(response.getTotal() + pendingTotal);
+                }
+                rowConsumer.accept(response);
+            };
             if (unique) {
-                statistic = statsRepository.findAllUnique(start, end);
+                statsStreamRepository.streamUniqueIps(start, end, uriFilter, mergingConsumer);
             } else {
-                statistic = statsRepository.findAll(start, end);
+                statsStreamRepository.streamHits(rollupRanges(start, end, true), uriFilter, mergingConsumer);
             }
+            toResponses(pendingTotals).forEach(rowConsumer);
+            return null;
+        }));
+    }
+
+    /**
+     * Складывает скетчи Space-Saving каждого приложения за полные часы диапазона (суточные за полные дни,
+     * см. {@link StatsTopRepository#findSketches}) и точные счетчики неполных часов на концах. Фильтр по префиксу применяется к кандидатам объединенных скетчей: uri с префиксом,
+     * вытесненный из скетча более частыми uri без префикса, в результат не попадет.
+     */
+    public List<StatsResponseDto> getTop(LocalDateTime start, LocalDateTime end, int limit, String application,
+                                         String uriPrefix) {
+        if (start.isAfter(end)) {
+            throw new ValidationException("Время окончания позже начала");
+        }
+        int capacity = statsTopRepository.getCapacity();
+        if (limit <= 0 || limit > capacity) {
+            throw new ValidationException("Размер топа должен быть от 1 до " + capacity + ": " + limit);
+        }
+        return statsMetrics.query("top", () -> readThroughBuffer(
+                pending -> countTop(start, end, limit, capacity, application, uriPrefix, pending)));
+    }
+
+    private List<StatsResponseDto> countTop(LocalDateTime start, LocalDateTime end, int limit, int capacity,
+                                            String application, String uriPrefix, PendingHits pending) {
+        Map<Integer, SpaceSaving> sketches = new HashMap<>();
+        LocalDateTime hourFrom = RollupBucket.HOUR.ceil(start);
+        LocalDateTime hourTo = RollupBucket.HOUR.floor(end);
+        List<StatsTopRepository.HitCount> rawCounts = new ArrayList<>();
+        if (hourFrom.isBefore(hourTo)) {
+            statsTopRepository.findSketches(hourFrom, hourTo, application,
+                    (appId, sketch) -> sketches.merge(appId, sketch, SpaceSaving::merge));
+            rawCounts.addAll(statsTopRepository.countRaw(start, hourFrom, false, application));
+            rawCounts.addAll(statsTopRepository.countRaw(hourTo, end, true, application));
         } else {
-            if (unique) {
-                statistic = statsRepository.findUrisUnique(start, end, uris);
-            } else {
-                statistic = statsRepository.findUris(start, end, uris);
-            }
+            rawCounts.addAll(statsTopRepository.countRaw(start, end, true, application));
+        }
+        rawCounts.addAll(countPendingByIds(pending.between(start, end, true), application));
+        for (StatsTopRepository.HitCount count : rawCounts) {
+            sketches.computeIfAbsent(count.appId(), appId -> new SpaceSaving(capacity))
+                    .offer(count.uriId(), count.total());
         }
-        return statistic.stream()
+        Map<Integer, List<SpaceSaving.Entry>> candidates = new HashMap<>();
+        sketches.forEach((appId, sketch) -> candidates.put(appId, sketch.top(capacity)));
+        Map<Integer, String> applications = dictionaryRepository.findNames(Dictionary.APPLICATIONS, candidates.keySet());
+        Map<Integer, String> uris = dictionaryRepository.findNames(Dictionary.URIS, candidates.values().stream()
+                .flatMap(List::stream)
+                .map(SpaceSaving.Entry::item)
+                .collect(Collectors.toSet()));
+        return candidates.entrySet().stream()
+                .flatMap(e -> e.getValue().stream()
+                        .map(entry -> new Response(applications.get(e.getKey()), uris.get(entry.item()), entry.count())))
+                .filter(response -> uriPrefix == null || response.getUri().startsWith(uriPrefix))
+                .sorted(Comparator.comparing(Response::getTotal).reversed())
+                .limit(limit)
                 .map(Mapper::toResponseDto)
                 .collect(Collectors.toList());
     }
+
+    public Map<Long, Long> getEventViews(List<EventViewsRequestDto> windows, boolean unique) {
+        Map<Long, LocalDateTime> sinceByEvent = new HashMap<>();
+        for (EventViewsRequestDto window : windows) {
+            if (window.getEventId() == null || window.getSince() == null) {
+                throw new ValidationException("Не заполнено окно подсчета просмотров: " + window);
+            }
+            // для повторно запрошенного события берется самое широкое окно
+            sinceByEvent.merge(window.getEventId(), window.getSince(), (a, b) -> a.isBefore(b) ? a : b);
+        }
+        List<UriWindow> uriWindows = sinceByEvent.entrySet().stream()
+                .map(e -> new UriWindow(e.getKey(), EVENT_URI_PREFIX + e.getKey(), e.getValue()))
+                .toList();
+        LocalDateTime to = LocalDateTime.now();
+        Map<Long, Long> views = statsMetrics.query("views", () -> readThroughBuffer(pending -> {
+            Map<Long, Long> counts = hitsJdbcRepository.countInWindows(uriWindows, to, unique);
+            countPendingViews(uriWindows, to, unique, pending)
+                    .forEach((eventId, count) -> counts.merge(eventId, count, Long::sum));
+            return counts;
+        }));
+        sinceByEvent.keySet().forEach(eventId -> views.putIfAbsent(eventId, 0L));
+        return views;
+    }
+
+    private List<Response> countInDatabase(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                           boolean approximate) {
+        // статистика учитывает все уже принятые хиты, даже если пишущий поток до них еще не дошел
+        if (!unique) {
+            return statsMetrics.query("rollup", () -> readThroughBuffer(
+                    pending -> countWithRollups(start, end, true, uris, pending)));
+        } else if (approximate) {
+            return statsMetrics.query("sketch", () -> readThroughBuffer(
+                    pending -> countUniqueWithSketches(start, end, uris, pending)));
+        }
+        return statsMetrics.query("exact", () -> readThroughBuffer(
+                pending -> countUniqueExact(start, end, uris, pending)));
+    }
+
+    /**
+     * Отвечает из {@link HotStatsWindow}, если диапазон целиком в окне. Неуникальные хиты складываются,
+     * поэтому при диапазоне, начинающемся до окна, старая часть считается по БД, а свежая — по окну.
+     * Множества IP из БД и окна не объединить, и уникальные хиты такого диапазона считаются только по БД.
+     */
+    private Optional<List<Response>> countInHotWindow(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                      boolean unique) {
+        Optional<LocalDateTime> coveredFrom = hotStatsWindow.coveredFrom();
+        if (coveredFrom.isEmpty() || end.isBefore(coveredFrom.get())) {
+            return Optional.empty();
+        }
+        if (!start.isBefore(coveredFrom.get())) {
+            return statsMetrics.query("hot", () -> hotStatsWindow.count(start, end, uris, unique));
+        }
+        if (unique) {
+            return Optional.empty();
+        }
+        return statsMetrics.query("hot_rollup", () -> hotStatsWindow.count(coveredFrom.get(), end, uris, false)
+                .map(recent -> readThroughBuffer(pending -> {
+                    List<Response> parts = new ArrayList<>(countWithRollups(start, coveredFrom.get(), false, uris,
+                            pending));
+                    parts.addAll(recent);
+                    return sortByTotal(parts);
+                })));
+    }
+
+    private List<Response> countUniqueExact(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                            PendingHits pending) {
+        List<Response> parts = new ArrayList<>(hitsJdbcRepository.countUniqueIps(start, end, uris));
+        parts.addAll(toResponses(countPendingUniqueIps(start, end, uris, pending)));
+        return sortByTotal(parts);
+    }
+
+    /**
+     * Оценивает число уникальных IP объединением почасовых скетчей HyperLogLog.
+     * IP из неполных часов на концах диапазона читаются из сырой таблицы и добавляются в те же скетчи.
+     * Погрешность оценки описана в {@link HyperLogLog}.
+     */
+    private List<Response> countUniqueWithSketches(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                   PendingHits pending) {
+        LocalDateTime hourFrom = RollupBucket.HOUR.ceil(start);
+        LocalDateTime hourTo = RollupBucket.HOUR.floor(end);
+        if (!hourFrom.isBefore(hourTo)) {
+            return countUniqueExact(start, end, uris, pending);
+        }
+        Map<List<String>, HyperLogLog> sketches = new HashMap<>();
+        statsSketchRepository.findSketches(hourFrom, hourTo, uris,
+                (key, sketch) -> sketches.merge(key, sketch, HyperLogLog::merge));
+        statsSketchRepository.findIps(start, hourFrom, false, uris,
+                (key, ip) -> sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(ip));
+        statsSketchRepository.findIps(hourTo, end, true, uris,
+                (key, ip) -> sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(ip));
+        groupPending(pending.between(start, end, true), uris).forEach((key, hits) -> {
+            HyperLogLog sketch = sketches.computeIfAbsent(key, k -> new HyperLogLog());
+            hits.forEach(hit -> sketch.add(hit.getIp()));
+        });
+        return sketches.entrySet().stream()
+                .map(e -> new Response(e.getKey().get(0), e.getKey().get(1), e.getValue().estimate()))
+                .sorted(Comparator.comparing(Response::getTotal).reversed())
+                .toList();
+    }
+
+    private List<Response> countWithRollups(LocalDateTime start, LocalDateTime end, boolean endInclusive,
+                                            List<String> uris, PendingHits pending) {
+        List<Response> parts = new ArrayList<>();
+        for (CountRange range : rollupRanges(start, end, endInclusive)) {
+            if (range.bucket() == null) {
+                parts.addAll(hitsJdbcRepository.countHits(range.from(), range.to(), range.toInclusive(), uris));
+            } else {
+                parts.addAll(statsRollupRepository.sumBuckets(range.bucket(), range.from(), range.to(), uris));
+            }
+        }
+        parts.addAll(toResponses(countPending(pending.between(start, end, endInclusive), uris)));
+        return sortByTotal(parts);
+    }
+
+    /**
+     * Выполняет подсчет в транзакции только для чтения, снимок БД которой согласован со снимком незаписанных
+     * хитов буфера (см. {@link HitsIngestBuffer#pending}): читатель не ждет пишущий поток, а досчитывает
+     * незаписанные хиты в памяти.
+     */
+    private <T> T readThroughBuffer(Function<PendingHits, T> query) {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        return readOnlyTransaction.execute(
+                status -> query.apply(hitsIngestBuffer.pending(hitsJdbcRepository::beginSnapshot)));
+    }
+
+    /**
+     * Группирует незаписанные хиты по именам [app, uri], оставляя только uri из фильтра uris, если он задан.
+     */
+    private Map<List<String>, List<Requests>> groupPending(List<Requests> hits, Collection<String> uris) {
+        if (hits.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, String> applications = dictionaryRepository.findNames(Dictionary.APPLICATIONS,
+                hits.stream().map(Requests::getAppId).collect(Collectors.toSet()));
+        Map<Integer, String> uriNames = dictionaryRepository.findNames(Dictionary.URIS,
+                hits.stream().map(Requests::getUriId).collect(Collectors.toSet()));
+        Set<String> uriFilter = uris == null ? null : new HashSet<>(uris);
+        return hits.stream()
+                .filter(hit -> uriFilter == null || uriFilter.contains(uriNames.get(hit.getUriId())))
+                .collect(Collectors.groupingBy(
+                        hit -> List.of(applications.get(hit.getAppId()), uriNames.get(hit.getUriId()))));
+    }
+
+    private Map<List<String>, Long> countPending(List<Requests> hits, List<String> uris) {
+        Map<List<String>, Long> totals = new HashMap<>();
+        groupPending(hits, uris).forEach((key, keyHits) -> totals.put(key, (long) keyHits.size()));
+        return totals;
+    }
+
+    /**
+     * Число IP незаписанных хитов с moment в [start, end], которых у той же пары (app, uri) за этот диапазон
+     * еще нет в БД: столько различных IP нужно добавить к COUNT(DISTINCT ip) из БД.
+     */
+    private Map<List<String>, Long> countPendingUniqueIps(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                          PendingHits pending) {
+        Map<List<String>, Long> totals = new HashMap<>();
+        Map<List<String>, List<Requests>> groups = groupPending(pending.between(start, end, true), uris);
+        if (groups.isEmpty()) {
+            return totals;
+        }
+        Set<SeenIp> seen = hitsJdbcRepository.findLastSeen(groups.values().stream()
+                .flatMap(List::stream)
+                .toList(), start, end).keySet();
+        groups.forEach((key, keyHits) -> {
+            long unseen = keyHits.stream()
+                    .map(SeenIp::of)
+                    .filter(ip -> !seen.contains(ip))
+                    .distinct()
+                    .count();
+            if (unseen > 0) {
+                totals.put(key, unseen);
+            }
+        });
+        return totals;
+    }
+
+    /**
+     * Незаписанные хиты по (app_id, uri_id) для подсчета топа, только приложения application, если оно задано.
+     */
+    private List<StatsTopRepository.HitCount> countPendingByIds(List<Requests> hits, String application) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, String> applications = dictionaryRepository.findNames(Dictionary.APPLICATIONS,
+                hits.stream().map(Requests::getAppId).collect(Collectors.toSet()));
+        Map<List<Integer>, Long> counts = hits.stream()
+                .filter(hit -> application == null || application.equals(applications.get(hit.getAppId())))
+                .collect(Collectors.groupingBy(hit -> List.of(hit.getAppId(), hit.getUriId()), Collectors.counting()));
+        return counts.entrySet().stream()
+                .map(e -> new StatsTopRepository.HitCount(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                .toList();
+    }
+
+    /**
+     * Просмотры по незаписанным хитам для окон {@link #getEventViews}. Для unique IP учитывается, только если
+     * в БД у uri окна нет хита с этого IP начиная с since окна (хиты всех приложений).
+     */
+    private Map<Long, Long> countPendingViews(List<UriWindow> windows, LocalDateTime to, boolean unique,
+                                              PendingHits pending) {
+        Map<Long, Long> views = new HashMap<>();
+        LocalDateTime from = windows.stream().map(UriWindow::since).min(Comparator.naturalOrder()).orElse(to);
+        Map<String, List<Requests>> hitsByUri = new HashMap<>();
+        groupPending(pending.between(from, to, true), windows.stream().map(UriWindow::uri).toList())
+                .forEach((key, keyHits) -> hitsByUri.computeIfAbsent(key.get(1), uri -> new ArrayList<>()).addAll(keyHits));
+        if (hitsByUri.isEmpty()) {
+            return views;
+        }
+        Map<UriIp, LocalDateTime> lastSeen = new HashMap<>();
+        if (unique) {
+            hitsJdbcRepository.findLastSeen(hitsByUri.values().stream().flatMap(List::stream).toList(), from, to)
+                    .forEach((seen, moment) -> lastSeen.merge(new UriIp(seen.uriId(), seen.ip()), moment,
+                            (a, b) -> a.isAfter(b) ? a : b));
+        }
+        for (UriWindow window : windows) {
+            List<Requests> windowHits = hitsByUri.getOrDefault(window.uri(), List.of()).stream()
+                    .filter(hit -> !hit.getMoment().isBefore(window.since()))
+                    .toList();
+            long count = !unique ? windowHits.size() : windowHits.stream()
+                    .map(hit -> new UriIp(hit.getUriId(), ByteBuffer.wrap(hit.getIp())))
+                    .filter(ip -> lastSeen.getOrDefault(ip, LocalDateTime.MIN).isBefore(window.since()))
+                    .distinct()
+                    .count();
+            if (count > 0) {
+                views.put(window.key(), count);
+            }
+        }
+        return views;
+    }
+
+    private static List<Response> toResponses(Map<List<String>, Long> totals) {
+        return totals.entrySet().stream()
+                .map(e -> new Response(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                .sorted(Comparator.comparing(Response::getTotal).reversed())
+                .toList();
+    }
+
+    /**
+     * Разбивает [start, end] (или [start, end), если не endInclusive) на самые крупные агрегаты, целиком попадающие в диапазон:
+     * часы в середине, минуты по краям часов и сырые хиты только для неполных минут на концах.
+     * Уникальные IP так не складываются, поэтому для unique используется сырая таблица.
+     */
+    private static List<CountRange> rollupRanges(LocalDateTime start, LocalDateTime end, boolean endInclusive) {
+        LocalDateTime minuteFrom = RollupBucket.MINUTE.ceil(start);
+        LocalDateTime minuteTo = RollupBucket.MINUTE.floor(end);
+        if (!minuteFrom.isBefore(minuteTo)) {
+            return List.of(CountRange.raw(start, end, endInclusive));
+        }
+        List<CountRange> ranges = new ArrayList<>();
+        ranges.add(CountRange.raw(start, minuteFrom, false));
+        LocalDateTime hourFrom = RollupBucket.HOUR.ceil(minuteFrom);
+        LocalDateTime hourTo = RollupBucket.HOUR.floor(minuteTo);
+        if (hourFrom.isBefore(hourTo)) {
+            ranges.add(CountRange.buckets(RollupBucket.MINUTE, minuteFrom, hourFrom));
+            ranges.add(CountRange.buckets(RollupBucket.HOUR, hourFrom, hourTo));
+            ranges.add(CountRange.buckets(RollupBucket.MINUTE, hourTo, minuteTo));
+        } else {
+            ranges.add(CountRange.buckets(RollupBucket.MINUTE, minuteFrom, minuteTo));
+        }
+        ranges.add(CountRange.raw(minuteTo, end, endInclusive));
+        return ranges;
+    }
+
+    private static List<Response> sortByTotal(List<Response> parts) {
+        Map<List<String>, Response> merged = new HashMap<>();
+        for (Response part : parts) {
+            merged.merge(List.of(part.getApplication(), part.getUri()), part,
+                    (a, b) -> new Response(a.getApplication(), a.getUri(), a.getTotal() + b.getTotal()));
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparing(Response::getTotal).reversed())
+                .toList();
+    }
+
+    /**
+     * Кодирует хит для записи: app и uri заменяются id из словарей, IP переводится в двоичный вид.
+     */
+    private Requests toRequest(StatsRequestDto requestDto) {
+        return Mapper.toRequest(requestDto, hitsDictionary.applicationId(requestDto.getApp()),
+                hitsDictionary.uriId(requestDto.getUri()));
+    }
+
+    /**
+     * Хиты записываются в БД асинхронно, поэтому ошибки NOT NULL и длины имен в словарях нужно поймать
+     * до постановки в буфер.
+     */
+    private static void validate(StatsRequestDto requestDto) {
+        if (requestDto.getApp() == null || requestDto.getApp().isBlank()
+                || requestDto.getUri() == null || requestDto.getUri().isBlank()
+                || requestDto.getIp() == null || requestDto.getIp().isBlank()
+                || requestDto.getTimestamp() == null) {
+            throw new ValidationException("Не заполнены обязательные поля хита: " + requestDto);
+        }
+        if (requestDto.getApp().length() > MAX_NAME_LENGTH || requestDto.getUri().length() > MAX_NAME_LENGTH) {
+            throw new ValidationException("app и uri хита длиннее " + MAX_NAME_LENGTH + " символов: " + requestDto);
+        }
+    }
+
+    private record UriIp(int uriId, ByteBuffer ip) {
+    }
 }
\ No newline at end of file
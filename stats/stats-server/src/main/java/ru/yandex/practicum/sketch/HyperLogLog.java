@@ -0,0 +1,112 @@
+package ru.yandex.practicum.sketch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Скетч HyperLogLog для приближенного подсчета числа уникальных значений.
+ * <p>
+ * Используется 2^11 = 2048 однобайтовых регистров, так что скетч занимает 2 КБ независимо от числа значений.
+ * Относительная стандартная ошибка оценки {@link #STANDARD_ERROR} = 1.04 / sqrt(2048) ≈ 2.3%:
+ * примерно в 95% случаев оценка отличается от точного значения не более чем на 4.6%, в 99.7% — не более чем на 6.9%.
+ * Для малых множеств (до ~5000 значений) применяется linear counting, и ошибка заметно меньше.
+ * <p>
+ * Скетчи объединяются без потерь точности ({@link #merge(HyperLogLog)}): скетч объединения бакетов
+ * равен скетчу, построенному по всем их значениям сразу.
+ */
+public class HyperLogLog {
+    public static final int PRECISION = 11;
+    public static final int REGISTERS = 1 << PRECISION;
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length != REGISTERS) {
+            throw new IllegalArgumentException("Неверный размер скетча HyperLogLog: " + bytes.length);
+        }
+        return new HyperLogLog(bytes.clone());
+    }
+
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    public void add(String value) {
+        add(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void add(byte[] value) {
+        long hash = hash64(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // сторожевой бит ограничивает ранг значением 64 - PRECISION + 1
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog other && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+
+    /**
+     * FNV-1a с финальным перемешиванием из MurmurHash3: старшие биты, по которым выбирается регистр,
+     * должны быть равномерными даже для похожих значений вроде IP-адресов одной подсети.
+     */
+    static long hash64(byte[] value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Скетч Space-Saving для поиска самых частых элементов потока (heavy hitters).
+ * <p>
+ * Хранит не больше capacity счетчиков. Новый элемент при заполненном скетче вытесняет элемент с минимальным
+ * счетчиком и наследует его значение как погрешность. Поэтому count элемента — оценка сверху,
+ * а count - error — оценка снизу. Любой элемент с частотой больше total / capacity гарантированно есть в скетче.
+ * <p>
+ * Скетчи объединяются ({@link #merge(SpaceSaving)}) с сохранением оценки сверху: элементу, которого нет
+ * в заполненном скетче, засчитывается минимальный счетчик этого скетча.
+ */
+public class SpaceSaving {
+    private final int capacity;
+    private final Map<Integer, Counter> counters;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Емкость скетча Space-Saving должна быть положительной: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void offer(int item, long increment) {
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count += increment;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(item, new Counter(increment, 0));
+            return;
+        }
+        Map.Entry<Integer, Counter> min = minEntry();
+        counters.remove(min.getKey());
+        counters.put(item, new Counter(min.getValue().count + increment, min.getValue().count));
+    }
+
+    public SpaceSaving merge(SpaceSaving other) {
+        long missingHere = minCountIfFull();
+        long missingThere = other.minCountIfFull();
+        Set<Integer> items = new HashSet<>(counters.keySet());
+        items.addAll(other.counters.keySet());
+        Map<Integer, Counter> merged = new HashMap<>(items.size());
+        for (Integer item : items) {
+            Counter here = counters.get(item);
+            Counter there = other.counters.get(item);
+            merged.put(item, new Counter(
+                    (here == null ? missingHere : here.count) + (there == null ? missingThere : there.count),
+                    (here == null ? missingHere : here.error) + (there == null ? missingThere : there.error)));
+        }
+        counters.clear();
+        merged.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(Comparator.comparingLong((Counter c) -> c.count).reversed()))
+                .limit(capacity)
+                .forEach(e -> counters.put(e.getKey(), e.getValue()));
+        return this;
+    }
+
+    /**
+     * Не больше n элементов с наибольшими счетчиками, по убыванию count.
+     */
+    public List<Entry> top(int n) {
+        return counters.entrySet().stream()
+                .map(e -> new Entry(e.getKey(), e.getValue().count, e.getValue().error))
+                .sorted(Comparator.comparingLong(Entry::count).reversed())
+                .limit(n)
+                .toList();
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + counters.size() * (Integer.BYTES + 2 * Long.BYTES));
+        buffer.putInt(capacity).putInt(counters.size());
+        counters.forEach((item, counter) -> buffer.putInt(item).putLong(counter.count).putLong(counter.error));
+        return buffer.array();
+    }
+
+    public static SpaceSaving fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        SpaceSaving sketch = new SpaceSaving(buffer.getInt());
+        int size = buffer.getInt();
+        if (size > sketch.capacity || buffer.remaining() != size * (Integer.BYTES + 2 * Long.BYTES)) {
+            throw new IllegalArgumentException("Неверный размер скетча Space-Saving: " + bytes.length);
+        }
+        for (int i = 0; i < size; i++) {
+            sketch.counters.put(buffer.getInt(), new Counter(buffer.getLong(), buffer.getLong()));
+        }
+        return sketch;
+    }
+
+    private long minCountIfFull() {
+        return counters.size() < capacity ? 0 : minEntry().getValue().count;
+    }
+
+    private Map.Entry<Integer, Counter> minEntry() {
+        return counters.entrySet().stream()
+                .min(Map.Entry.comparingByValue(Comparator.comparingLong(c -> c.count)))
+                .orElseThrow();
+    }
+
+    /**
+     * Элемент скетча: count — оценка частоты сверху, error — максимальное завышение.
+     */
+    public record Entry(int item, long count, long error) {
+    }
+
+    private static final class Counter {
+        long count;
+        long error;
+
+        Counter(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -1,10 +1,118 @@
-DROP TABLE IF EXISTS hits;
+-- Переход со схем прежних версий. hits без секционирования или с колонками application, uri и текстовым ip
+-- переименовывается в hits_legacy вместе с секциями и индексами; ее хиты переносит в новую схему
+-- HitsLegacyMigration. Агрегаты с колонками application и uri переименовываются в <имя>_legacy и больше
+-- не читаются: агрегаты перенесенных хитов пересчитываются при переносе.
+-- Тело DO записано в одинарных кавычках, потому что скрипт делится на команды по ";" вне кавычек.
+DO '
+DECLARE
+    legacy RECORD;
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema AND table_name = ''hits'' AND column_name = ''application'')
+       OR EXISTS (SELECT 1 FROM information_schema.tables
+                  WHERE table_schema = current_schema AND table_name = ''hits'' AND table_type = ''BASE TABLE''
+                    AND NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(''hits''))) THEN
+        FOR legacy IN SELECT child.relname FROM pg_inherits
+                      JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+                      WHERE pg_inherits.inhparent = to_regclass(''hits'')
+        LOOP
+            EXECUTE format(''ALTER TABLE %I RENAME TO %I'', legacy.relname, ''legacy_'' || legacy.relname);
+        END LOOP;
+        ALTER TABLE hits RENAME TO hits_legacy;
+        ALTER INDEX IF EXISTS pk_requests RENAME TO pk_hits_legacy;
+        ALTER INDEX IF EXISTS ix_hits_moment RENAME TO ix_hits_legacy_moment;
+        ALTER INDEX IF EXISTS ix_hits_uri_moment RENAME TO ix_hits_legacy_uri_moment;
+    END IF;
+    FOR legacy IN SELECT table_name FROM information_schema.columns
+                  WHERE table_schema = current_schema AND column_name = ''application''
+                    AND table_name IN (''hits_minute'', ''hits_hour'', ''hits_hll_hour'')
+    LOOP
+        EXECUTE format(''ALTER TABLE %I RENAME TO %I'', legacy.table_name, legacy.table_name || ''_legacy'');
+        EXECUTE format(''ALTER INDEX IF EXISTS %I RENAME TO %I'',
+                ''pk_'' || legacy.table_name, ''pk_'' || legacy.table_name || ''_legacy'');
+        EXECUTE format(''ALTER INDEX IF EXISTS %I RENAME TO %I'',
+                ''ix_'' || legacy.table_name || ''_bucket'', ''ix_'' || legacy.table_name || ''_legacy_bucket'');
+    END LOOP;
+END';
 
+-- словари app и uri: в hits и в агрегатах хранятся их id (см. HitsDictionary)
+CREATE TABLE IF NOT EXISTS applications (
+     id       INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+     name     VARCHAR(256) NOT NULL,
+     CONSTRAINT pk_applications PRIMARY KEY (id),
+     CONSTRAINT uq_applications_name UNIQUE (name)
+     );
+
+CREATE TABLE IF NOT EXISTS uris (
+     id       INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+     name     VARCHAR(256) NOT NULL,
+     CONSTRAINT pk_uris PRIMARY KEY (id),
+     CONSTRAINT uq_uris_name UNIQUE (name)
+     );
+
+-- hits секционирована по суткам (секции hits_pYYYYMMDD создает HitsPartitionService),
+-- хиты за дни без секции попадают в hits_default;
+-- колонки фиксированной ширины идут перед ip, чтобы в строке не было байтов выравнивания
  CREATE TABLE IF NOT EXISTS hits  (
-     id       BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-     application      VARCHAR(256) NOT NULL,
-     uri      VARCHAR(256) NOT NULL,
-     ip       VARCHAR(15) NOT NULL,
+     id       BIGINT GENERATED BY DEFAULT AS IDENTITY (CACHE 50) NOT NULL,
      moment TIMESTAMP WITHOUT TIME ZONE NOT NULL,
-     CONSTRAINT pk_requests PRIMARY KEY (id)
-     );
\ No newline at end of file
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     ip       BYTEA NOT NULL,
+     CONSTRAINT pk_requests PRIMARY KEY (id, moment)
+     ) PARTITION BY RANGE (moment);
+
+CREATE TABLE IF NOT EXISTS hits_default PARTITION OF hits DEFAULT;
+
+CREATE INDEX IF NOT EXISTS ix_hits_moment ON hits (moment);
+
+CREATE INDEX IF NOT EXISTS ix_hits_uri_moment ON hits (uri_id, moment);
+
+CREATE TABLE IF NOT EXISTS hits_minute (
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     hits     BIGINT NOT NULL,
+     CONSTRAINT pk_hits_minute PRIMARY KEY (app_id, uri_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_minute_bucket ON hits_minute (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_hour (
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     hits     BIGINT NOT NULL,
+     CONSTRAINT pk_hits_hour PRIMARY KEY (app_id, uri_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_hour_bucket ON hits_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_hll_hour (
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     sketch   BYTEA NOT NULL,
+     CONSTRAINT pk_hits_hll_hour PRIMARY KEY (app_id, uri_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_hll_hour_bucket ON hits_hll_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_top_hour (
+     app_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     sketch   BYTEA NOT NULL,
+     CONSTRAINT pk_hits_top_hour PRIMARY KEY (app_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_top_hour_bucket ON hits_top_hour (bucket);
+
+-- суточные скетчи частых uri; sketch NULL только внутри транзакции, создавшей строку (см. StatsTopRepository)
+CREATE TABLE IF NOT EXISTS hits_top_day (
+     app_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     sketch   BYTEA,
+     CONSTRAINT pk_hits_top_day PRIMARY KEY (app_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_top_day_bucket ON hits_top_day (bucket);
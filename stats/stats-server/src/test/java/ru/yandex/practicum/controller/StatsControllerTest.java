@@ -1,5 +1,7 @@
 package ru.yandex.practicum.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,6 +13,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.StatsServer;
 import ru.yandex.practicum.dto.StatsRequestDto;
 import ru.yandex.practicum.dto.StatsResponseDto;
@@ -18,11 +21,17 @@ import ru.yandex.practicum.service.StatsService;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(classes = StatsServer.class)
@@ -36,6 +45,8 @@ class StatsControllerTest {
     @MockBean
     private StatsService statsService;
 
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory()).findAndRegisterModules();
+
     private StatsRequestDto statsRequestDto;
     private StatsResponseDto statsResponseDto;
 
@@ -55,7 +66,7 @@ class StatsControllerTest {
 
     @Test
     void getStats_shouldReturnStats() throws Exception {
-        Mockito.when(statsService.getStats(any(LocalDateTime.class), any(LocalDateTime.class), anyList(), anyBoolean()))
+        Mockito.when(statsService.getStats(any(LocalDateTime.class), any(LocalDateTime.class), anyList(), anyBoolean(), anyBoolean()))
                 .thenReturn(Collections.singletonList(statsResponseDto));
 
         mockMvc.perform(get("/stats")
@@ -70,6 +81,50 @@ class StatsControllerTest {
                 .andExpect(jsonPath("$[0].hits").value(1));
     }
 
+    @Test
+    void getStats_shouldStreamNdjson() throws Exception {
+        StatsResponseDto second = new StatsResponseDto();
+        second.setApp("test-app");
+        second.setUri("/test/2");
+        second.setHits(5L);
+        Mockito.doAnswer(invocation -> {
+            Consumer<StatsResponseDto> consumer = invocation.getArgument(4);
+            consumer.accept(second);
+            consumer.accept(statsResponseDto);
+            return null;
+        }).when(statsService).streamStats(any(LocalDateTime.class), any(LocalDateTime.class), isNull(), eq(false), any());
+
+        MvcResult result = mockMvc.perform(get("/stats")
+                        .param("start", "2024-12-01 00:00:00")
+                        .param("end", "2024-12-15 23:59:59")
+                        .accept(StatsController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(StatsController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string("{\"app\":\"test-app\",\"uri\":\"/test/2\",\"hits\":5}\n" +
+                        "{\"app\":\"test-app\",\"uri\":\"/test\",\"hits\":1}\n"));
+    }
+
+    @Test
+    void getEventViews_shouldReturnViewsByEventId() throws Exception {
+        Mockito.when(statsService.getEventViews(anyList(), eq(true))).thenReturn(Map.of(1L, 3L, 2L, 0L));
+
+        mockMvc.perform(post("/stats/views")
+                        .param("unique", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"eventId\":1,\"since\":\"2024-12-01 00:00:00\"}," +
+                                "{\"eventId\":2,\"since\":\"2024-12-10 12:30:00\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.1").value(3))
+                .andExpect(jsonPath("$.2").value(0));
+
+        Mockito.verify(statsService).getEventViews(argThat(windows -> windows.size() == 2
+                && windows.get(1).getSince().equals(LocalDateTime.of(2024, 12, 10, 12, 30))), eq(true));
+    }
+
     @Test
     void save_shouldReturnSavedHit() throws Exception {
         Mockito.when(statsService.save(any(StatsRequestDto.class))).thenReturn(statsRequestDto);
@@ -82,4 +137,55 @@ class StatsControllerTest {
                 .andExpect(jsonPath("$.uri").value("/test"))
                 .andExpect(jsonPath("$.ip").value("192.168.1.1"));
     }
+
+    @Test
+    void saveAll_shouldAcceptBatch() throws Exception {
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"app\":\"test-app\",\"uri\":\"/test\",\"ip\":\"192.168.1.1\",\"timestamp\":\"2024-12-15 12:00:00\"}," +
+                                "{\"app\":\"test-app\",\"uri\":\"/test/1\",\"ip\":\"192.168.1.2\",\"timestamp\":\"2024-12-15 12:00:01\"}]"))
+                .andExpect(status().isCreated());
+
+        Mockito.verify(statsService).saveAll(argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    void getStats_shouldReturnCborWhenRequested() throws Exception {
+        Mockito.when(statsService.getStats(any(LocalDateTime.class), any(LocalDateTime.class), isNull(), anyBoolean(), anyBoolean()))
+                .thenReturn(Collections.singletonList(statsResponseDto));
+
+        MvcResult result = mockMvc.perform(get("/stats")
+                        .param("start", "2024-12-01 00:00:00")
+                        .param("end", "2024-12-15 23:59:59")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        StatsResponseDto[] stats = cbor.readValue(result.getResponse().getContentAsByteArray(), StatsResponseDto[].class);
+        assertThat(stats).containsExactly(statsResponseDto);
+    }
+
+    @Test
+    void saveAll_shouldAcceptCborBatch() throws Exception {
+        StatsRequestDto hit = new StatsRequestDto("test-app", "/test", "192.168.1.1", LocalDateTime.of(2024, 12, 15, 12, 0));
+
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(new StatsRequestDto[]{hit, hit})))
+                .andExpect(status().isCreated());
+
+        Mockito.verify(statsService).saveAll(argThat(list -> list.size() == 2 && list.get(0).equals(hit)));
+    }
+
+    @Test
+    void saveAll_shouldPassInvalidHitsToServiceInsteadOfRejectingBatch() throws Exception {
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"app\":\"test-app\",\"uri\":\"/test\",\"ip\":\"\",\"timestamp\":\"2024-12-15 12:00:00\"}," +
+                                "{\"app\":\"test-app\",\"uri\":\"/test/1\",\"ip\":\"192.168.1.2\",\"timestamp\":\"2024-12-15 12:00:01\"}]"))
+                .andExpect(status().isCreated());
+
+        Mockito.verify(statsService).saveAll(argThat(list -> list.size() == 2));
+    }
 }
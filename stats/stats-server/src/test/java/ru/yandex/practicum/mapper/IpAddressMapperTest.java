@@ -0,0 +1,29 @@
+package ru.yandex.practicum.mapper;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.exception.ValidationException;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpAddressMapperTest {
+
+    @Test
+    void parsesLiteralsLikeInetAddress() throws Exception {
+        for (String ip : new String[]{"0.0.0.0", "10.0.0.1", "255.255.255.255", "::", "::1", "1::", "2001:db8::8a2e:370:7334",
+                "2001:0db8:0000:0000:0000:ff00:0042:8329", "FE80::1", "::ffff:192.0.2.128", "64:ff9b::192.0.2.33",
+                "1:2:3:4:5:6:7:8", "1:2:3:4:5:6:1.2.3.4"}) {
+            assertArrayEquals(InetAddress.getByName(ip).getAddress(), IpAddressMapper.toBytes(ip), ip);
+        }
+    }
+
+    @Test
+    void rejectsHostNamesAndMalformedLiterals() {
+        for (String ip : new String[]{"", "localhost", "example.com", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1.2.3.-4",
+                "١.٢.٣.٤", ":", ":::", "1:::2", "1::2::3", ":1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7",
+                "1:2:3:4:5:6:7::8", "12345::", "g::1", "fe80::1%eth0", "[::1]", "1.2.3.4::", "::1.2.3.4:5"}) {
+            assertThrows(ValidationException.class, () -> IpAddressMapper.toBytes(ip), ip);
+        }
+    }
+}
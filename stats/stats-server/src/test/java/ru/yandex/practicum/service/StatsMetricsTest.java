@@ -0,0 +1,27 @@
+package ru.yandex.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StatsMetricsTest {
+
+    @Test
+    void ingestedTagsOnlyAllowedApps() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StatsMetrics statsMetrics = new StatsMetrics(registry, List.of("main-server"));
+
+        statsMetrics.ingested("main-server", 3);
+        statsMetrics.ingested("attacker-1", 1);
+        statsMetrics.ingested("attacker-2", 2);
+
+        assertEquals(3, registry.get("stats.hits.ingested").tag("app", "main-server").counter().count());
+        assertEquals(3, registry.get("stats.hits.ingested").tag("app", "other").counter().count());
+        assertNull(registry.find("stats.hits.ingested").tag("app", "attacker-1").counter());
+        assertEquals(2, registry.find("stats.hits.ingested").counters().size());
+    }
+}
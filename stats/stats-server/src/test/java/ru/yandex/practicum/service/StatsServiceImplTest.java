@@ -1,35 +1,103 @@
 package ru.yandex.practicum.service;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.dto.EventViewsRequestDto;
 import ru.yandex.practicum.dto.StatsRequestDto;
+import ru.yandex.practicum.dto.StatsResponseDto;
 import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.mapper.Mapper;
+import ru.yandex.practicum.model.Requests;
+import ru.yandex.practicum.model.RollupBucket;
+import ru.yandex.practicum.repository.DictionaryRepository;
+import ru.yandex.practicum.repository.HitsJdbcRepository;
+import ru.yandex.practicum.repository.StatsRollupRepository;
+import ru.yandex.practicum.repository.StatsSketchRepository;
+import ru.yandex.practicum.repository.StatsStreamRepository;
+import ru.yandex.practicum.repository.StatsTopRepository;
+import ru.yandex.practicum.sketch.HyperLogLog;
+import ru.yandex.practicum.sketch.SpaceSaving;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import(StatsServiceImpl.class)
+@Import({StatsServiceImpl.class, HitsIngestBuffer.class, HitsDictionary.class, HotStatsWindow.class, StatsQueryCache.class,
+        DictionaryRepository.class, HitsJdbcRepository.class, StatsRollupRepository.class, StatsSketchRepository.class,
+        StatsStreamRepository.class, StatsTopRepository.class, StatsMetrics.class})
 @Transactional
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
-@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:test-stats-database",
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:test-stats-database;MODE=PostgreSQL",
         "spring.datasource.driverClassName=org.h2.Driver",
         "spring.datasource.username=sa",
         "spring.datasource.password=password",
-        "spring.sql.init.schema-locations=classpath:test-schema.sql"}) // тестовая схема может отличаться,
+        "spring.sql.init.schema-locations=classpath:test-schema.sql",
+        "stats.ingest.flush-interval-ms=3600000",
+        // пишущий поток не должен фиксировать пачки в обход тестовой транзакции
+        "stats.ingest.batch-size=100000",
+        // окно в памяти не откатывается вместе с тестовой транзакцией, см. getStatsFromHotWindowMatchesDatabase
+        "stats.hot-window.enabled=false",
+        // кеш не сбрасывается хитами и вернул бы результат предыдущего теста с тем же запросом,
+        // см. getStatsCachesResultUntilEntryExpires
+        "stats.cache.enabled=false"}) // тестовая схема может отличаться,
 // если штатная БД будет не h2
 @DataJpaTest
 class StatsServiceImplTest {
     @Autowired
     private final StatsServiceImpl statsService;
+    @Autowired
+    private final HitsIngestBuffer hitsIngestBuffer;
+    @Autowired
+    private final HitsJdbcRepository hitsJdbcRepository;
+    @Autowired
+    private final StatsRollupRepository statsRollupRepository;
+    @Autowired
+    private final StatsSketchRepository statsSketchRepository;
+    @Autowired
+    private final HitsDictionary hitsDictionary;
+    @Autowired
+    private final StatsStreamRepository statsStreamRepository;
+    @Autowired
+    private final StatsTopRepository statsTopRepository;
+    @Autowired
+    private final DictionaryRepository dictionaryRepository;
+    @Autowired
+    private final PlatformTransactionManager transactionManager;
+    @Autowired
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void flushBuffer() {
+        // сбрасываем остаток буфера внутри тестовой транзакции, чтобы он откатился вместе с ней
+        hitsIngestBuffer.flush();
+    }
 
     @Test
     void save() {
@@ -53,6 +121,37 @@ class StatsServiceImplTest {
         assertEquals(resultRequestDto.getTimestamp().toString(), requestDto.getTimestamp().toString());
     }
 
+    @Test
+    void saveAll() {
+        LocalDateTime nowTime = LocalDateTime.now();
+        List<StatsRequestDto> batch = List.of(
+                new StatsRequestDto("application-name", "any-uri", "192.168.0.10", nowTime),
+                new StatsRequestDto("application-name", "any-uri", "192.168.0.11", nowTime),
+                new StatsRequestDto("application-name", "any-uri2", "192.168.0.10", nowTime));
+
+        assertDoesNotThrow(() -> statsService.saveAll(batch));
+
+        var result = statsService.getStats(nowTime.minusMinutes(1), nowTime.plusMinutes(1), List.of("any-uri"), false);
+
+        assertEquals(result.getFirst().getHits(), 2);
+    }
+
+    @Test
+    void saveAllSkipsInvalidHitsAndKeepsTheRest() {
+        LocalDateTime nowTime = LocalDateTime.now();
+
+        assertDoesNotThrow(() -> statsService.saveAll(List.of(
+                new StatsRequestDto(null, "mixed-uri", "192.168.0.10", nowTime),
+                new StatsRequestDto("application-name", "mixed-uri", "192.168.0.256", nowTime),
+                new StatsRequestDto("application-name", "mixed-uri", "192.168.0.10", null),
+                new StatsRequestDto("application-name", "mixed-uri", "192.168.0.10", nowTime),
+                new StatsRequestDto("application-name", "mixed-uri", "2001:db8::1", nowTime))));
+
+        var result = statsService.getStats(nowTime.minusMinutes(1), nowTime.plusMinutes(1), List.of("mixed-uri"), false);
+
+        assertEquals(2, result.getFirst().getHits());
+    }
+
     @Test
     void getStats() {
         LocalDateTime nowTime = LocalDateTime.now();
@@ -84,4 +183,443 @@ class StatsServiceImplTest {
         assertEquals(result3.getFirst().getHits(), 2);
         assertEquals(result4.getFirst().getHits(), 3);
     }
-}
\ No newline at end of file
+
+    @Test
+    void saveStoresIpv4AndIpv6Addresses() {
+        LocalDateTime nowTime = LocalDateTime.now();
+        statsService.saveAll(List.of(
+                new StatsRequestDto("application-name", "ip-uri", "192.168.0.10", nowTime),
+                new StatsRequestDto("application-name", "ip-uri", "::ffff:192.168.0.10", nowTime),
+                new StatsRequestDto("application-name", "ip-uri", "2001:db8::1", nowTime),
+                new StatsRequestDto("application-name", "ip-uri", "2001:0db8:0:0:0:0:0:1", nowTime)));
+
+        var unique = statsService.getStats(nowTime.minusMinutes(1), nowTime.plusMinutes(1), List.of("ip-uri"), true);
+
+        // IPv4-mapped адрес совпадает с обычным IPv4, разные записи одного IPv6 — тоже один адрес
+        assertEquals(2, unique.getFirst().getHits());
+        assertThrows(ValidationException.class, () -> statsService.save(
+                new StatsRequestDto("application-name", "ip-uri", "192.168.0.256", nowTime)));
+        assertThrows(ValidationException.class, () -> statsService.save(
+                new StatsRequestDto("application-name", "ip-uri", "localhost", nowTime)));
+    }
+
+    @Test
+    void saveRejectsNamesLongerThanDictionaryColumn() {
+        LocalDateTime nowTime = LocalDateTime.now();
+
+        assertThrows(ValidationException.class, () -> statsService.save(
+                new StatsRequestDto("application-name", "/" + "u".repeat(256), "192.168.0.10", nowTime)));
+        // в пакете длинное имя не отвергает запрос, а пропускает хит
+        statsService.saveAll(List.of(new StatsRequestDto("a".repeat(257), "long-app-uri", "192.168.0.10", nowTime)));
+        assertTrue(statsService.getStats(nowTime.minusMinutes(1), nowTime.plusMinutes(1), List.of("long-app-uri"), false)
+                .isEmpty());
+        assertDoesNotThrow(() -> statsService.save(
+                new StatsRequestDto("application-name", "/" + "u".repeat(255), "192.168.0.10", nowTime)));
+    }
+
+    /**
+     * Откат пачки в H2 не отменяет уже выполненные INSERT-ы тестовой транзакции, поэтому тест пишет
+     * в собственных транзакциях буфера и сам удаляет свои строки.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void flushSkipsOnlyHitsRejectedByDatabase() {
+        LocalDateTime moment = LocalDateTime.of(2024, 12, 6, 10, 0, 0);
+        int appId = hitsDictionary.applicationId("application-name");
+        int uriId = hitsDictionary.uriId("rejected-uri");
+        try {
+            for (int i = 0; i < 7; i++) {
+                // хит без IP нарушает NOT NULL, и БД отвергнет всю пачку с ним
+                byte[] ip = i == 3 ? null : new byte[]{10, 4, 0, (byte) i};
+                hitsIngestBuffer.add(new Requests(null, appId, uriId, ip, moment.plusSeconds(i)));
+            }
+            hitsIngestBuffer.flush();
+
+            assertEquals(6, hitsJdbcRepository.countHits(moment, moment.plusMinutes(1), true, List.of("rejected-uri"))
+                    .getFirst().getTotal());
+            assertEquals(6, statsService.getStats(moment, moment.plusMinutes(1), List.of("rejected-uri"), true)
+                    .getFirst().getHits());
+        } finally {
+            MapSqlParameterSource params = new MapSqlParameterSource("uriId", uriId);
+            for (String table : List.of("hits", "hits_minute", "hits_hour", "hits_hll_hour")) {
+                jdbcTemplate.update("DELETE FROM " + table + " WHERE uri_id = :uriId", params);
+            }
+            jdbcTemplate.update("DELETE FROM hits_top_hour WHERE bucket = :bucket",
+                    new MapSqlParameterSource("bucket", moment));
+            jdbcTemplate.update("DELETE FROM hits_top_day WHERE bucket = :bucket",
+                    new MapSqlParameterSource("bucket", moment.truncatedTo(ChronoUnit.DAYS)));
+        }
+    }
+
+    @Test
+    void getStatsFromRollupsMatchesRawHits() {
+        Random random = new Random(42);
+        LocalDateTime origin = LocalDateTime.of(2024, 12, 1, 10, 17, 23);
+        List<String> uris = List.of("/events/1", "/events/2", "/events/3");
+        List<StatsRequestDto> hits = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            hits.add(new StatsRequestDto("ewm-main-service",
+                    uris.get(random.nextInt(uris.size())),
+                    "10.0.0." + random.nextInt(50),
+                    origin.plusSeconds(random.nextInt(4 * 3600))));
+        }
+        statsService.saveAll(hits);
+        hitsIngestBuffer.flush();
+
+        List<LocalDateTime[]> ranges = List.of(
+                new LocalDateTime[]{origin, origin.plusHours(4)},
+                new LocalDateTime[]{origin.plusSeconds(17), origin.plusMinutes(3)},
+                new LocalDateTime[]{origin.plusMinutes(42).plusSeconds(5), origin.plusHours(3).plusMinutes(1)},
+                new LocalDateTime[]{LocalDateTime.of(2024, 12, 1, 11, 0), LocalDateTime.of(2024, 12, 1, 13, 0)},
+                new LocalDateTime[]{origin.plusSeconds(30), origin.plusSeconds(30)});
+        for (LocalDateTime[] range : ranges) {
+            var raw = hitsJdbcRepository.countHits(range[0], range[1], true, null).stream()
+                    .map(Mapper::toResponseDto).toList();
+            var rawForUri = hitsJdbcRepository.countHits(range[0], range[1], true, List.of("/events/2")).stream()
+                    .map(Mapper::toResponseDto).toList();
+
+            assertEquals(toHitsByUri(raw), toHitsByUri(statsService.getStats(range[0], range[1], null, false)));
+            assertEquals(toHitsByUri(raw), toHitsByUri(stream(range[0], range[1], null, false)));
+            assertEquals(toHitsByUri(statsService.getStats(range[0], range[1], List.of("/events/2"), true)),
+                    toHitsByUri(stream(range[0], range[1], List.of("/events/2"), true)));
+            assertEquals(toHitsByUri(rawForUri),
+                    toHitsByUri(statsService.getStats(range[0], range[1], List.of("/events/2"), false)));
+        }
+    }
+
+    @Test
+    void getApproximateUniqueStatsMatchesExactWithinErrorBound() {
+        Random random = new Random(5);
+        LocalDateTime origin = LocalDateTime.of(2024, 12, 2, 8, 40, 11);
+        List<StatsRequestDto> hits = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            String uri = "/events/" + (1 + random.nextInt(3));
+            // у каждого события свой пул адресов, часть посетителей возвращается в разные часы
+            String ip = "10." + uri.charAt(uri.length() - 1) + "." + random.nextInt(40) + "." + random.nextInt(250);
+            hits.add(new StatsRequestDto("ewm-main-service", uri, ip, origin.plusSeconds(random.nextInt(6 * 3600))));
+        }
+        statsService.saveAll(hits);
+        hitsIngestBuffer.flush();
+
+        LocalDateTime start = origin.plusMinutes(7);
+        LocalDateTime end = origin.plusHours(5).plusMinutes(33);
+        Map<String, Long> exact = toHitsByUri(statsService.getStats(start, end, null, true, false));
+        Map<String, Long> approximate = toHitsByUri(statsService.getStats(start, end, null, true, true));
+
+        assertEquals(exact.keySet(), approximate.keySet());
+        exact.forEach((uri, count) -> assertTrue(
+                Math.abs(approximate.get(uri) - count) <= count * 3 * HyperLogLog.STANDARD_ERROR,
+                uri + ": exact " + count + ", approximate " + approximate.get(uri)));
+        // диапазон без единого полного часа считается точно
+        assertEquals(toHitsByUri(statsService.getStats(start, start.plusMinutes(30), List.of("/events/2"), true, false)),
+                toHitsByUri(statsService.getStats(start, start.plusMinutes(30), List.of("/events/2"), true, true)));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentSketchWritesKeepEveryIp() throws Exception {
+        LocalDateTime moment = LocalDateTime.of(2024, 12, 7, 10, 0, 0);
+        int appId = hitsDictionary.applicationId("application-name");
+        int uriId = hitsDictionary.uriId("sketch-race-uri");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            HyperLogLog expected = new HyperLogLog();
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 4; writer++) {
+                List<Requests> hits = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    byte[] ip = {10, 5, (byte) writer, (byte) i};
+                    expected.add(ip);
+                    hits.add(new Requests(null, appId, uriId, ip, moment.plusSeconds(i)));
+                }
+                // каждый хит пишется своей транзакцией, и писатели одновременно обновляют скетч одного часа
+                writers.add(executor.submit(() -> hits.forEach(hit -> transaction.executeWithoutResult(
+                        status -> statsSketchRepository.addAll(List.of(hit))))));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            HyperLogLog stored = new HyperLogLog();
+            statsSketchRepository.findSketches(moment, moment.plusHours(1), List.of("sketch-race-uri"),
+                    (key, sketch) -> stored.merge(sketch));
+
+            assertArrayEquals(expected.toBytes(), stored.toBytes());
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.update("DELETE FROM hits_hll_hour WHERE uri_id = :uriId",
+                    new MapSqlParameterSource("uriId", uriId));
+        }
+    }
+
+    @Test
+    void getTopMatchesExactCountsForSkewedHits() {
+        Random random = new Random(17);
+        LocalDateTime origin = LocalDateTime.of(2024, 12, 5, 9, 50, 0);
+        statsService.saveAll(skewedHits(random, origin, 20_000, 4 * 3600));
+        hitsIngestBuffer.flush();
+
+        LocalDateTime start = origin.plusMinutes(3);
+        LocalDateTime end = origin.plusHours(3).plusMinutes(20);
+        List<StatsResponseDto> exact = statsService.getStats(start, end, null, false).stream()
+                .filter(dto -> dto.getApp().equals("ewm-main-service"))
+                .limit(5)
+                .toList();
+        List<StatsResponseDto> top = statsService.getTop(start, end, 5, "ewm-main-service", null);
+
+        assertEquals(exact.stream().map(StatsResponseDto::getUri).toList(),
+                top.stream().map(StatsResponseDto::getUri).toList());
+        for (int i = 0; i < top.size(); i++) {
+            assertTrue(top.get(i).getHits() >= exact.get(i).getHits(), top.get(i) + " below exact " + exact.get(i));
+        }
+        assertEquals(List.of("/events/1"), statsService.getTop(start, end, 1, null, "/events/1").stream()
+                .map(StatsResponseDto::getUri)
+                .toList());
+        assertThrows(ValidationException.class, () -> statsService.getTop(start, end, 0, null, null));
+    }
+
+    @Test
+    void getTopOverSeveralDaysMatchesExactCounts() {
+        Random random = new Random(23);
+        LocalDateTime origin = LocalDateTime.of(2024, 12, 10, 18, 0, 0);
+        statsService.saveAll(skewedHits(random, origin, 4_000, 3 * 24 * 3600));
+        hitsIngestBuffer.flush();
+        // суточных скетчей нет, как для дней, записанных до появления hits_top_day: первый день читается
+        // из почасовых скетчей, а второй заполняется из них при следующей записи
+        jdbcTemplate.update("DELETE FROM hits_top_day", new MapSqlParameterSource());
+        statsService.saveAll(skewedHits(random, origin.plusHours(12), 4_000, 24 * 3600));
+        hitsIngestBuffer.flush();
+
+        LocalDateTime start = origin.plusMinutes(7);
+        LocalDateTime end = origin.plusDays(3).minusMinutes(13);
+        List<StatsResponseDto> exact = statsService.getStats(start, end, null, false).stream()
+                .filter(dto -> dto.getApp().equals("ewm-main-service"))
+                .limit(5)
+                .toList();
+        List<StatsResponseDto> top = statsService.getTop(start, end, 5, "ewm-main-service", null);
+
+        assertEquals(exact.stream().map(StatsResponseDto::getUri).toList(),
+                top.stream().map(StatsResponseDto::getUri).toList());
+        for (int i = 0; i < top.size(); i++) {
+            assertTrue(top.get(i).getHits() >= exact.get(i).getHits(), top.get(i) + " below exact " + exact.get(i));
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentTopWritesKeepEveryHit() throws Exception {
+        LocalDateTime moment = LocalDateTime.of(2024, 12, 8, 10, 0, 0);
+        int appId = hitsDictionary.applicationId("top-race-app");
+        int uriId = hitsDictionary.uriId("top-race-uri");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 4; writer++) {
+                List<Requests> hits = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    hits.add(new Requests(null, appId, uriId, new byte[]{10, 6, (byte) writer, (byte) i},
+                            moment.plusSeconds(i)));
+                }
+                // каждый хит пишется своей транзакцией, и писатели одновременно создают строки одного часа и дня
+                writers.add(executor.submit(() -> hits.forEach(hit -> transaction.executeWithoutResult(
+                        status -> statsTopRepository.addAll(List.of(hit))))));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            SpaceSaving hour = new SpaceSaving(statsTopRepository.getCapacity());
+            statsTopRepository.findSketches(moment, moment.plusHours(1), "top-race-app",
+                    (app, sketch) -> hour.merge(sketch));
+            SpaceSaving day = new SpaceSaving(statsTopRepository.getCapacity());
+            statsTopRepository.findSketches(moment.truncatedTo(ChronoUnit.DAYS), moment.truncatedTo(ChronoUnit.DAYS)
+                    .plusDays(1), "top-race-app", (app, sketch) -> day.merge(sketch));
+
+            assertEquals(List.of(new SpaceSaving.Entry(uriId, 200, 0)), hour.top(1));
+            assertEquals(List.of(new SpaceSaving.Entry(uriId, 200, 0)), day.top(1));
+        } finally {
+            executor.shutdownNow();
+            MapSqlParameterSource params = new MapSqlParameterSource("appId", appId);
+            jdbcTemplate.update("DELETE FROM hits_top_hour WHERE app_id = :appId", params);
+            jdbcTemplate.update("DELETE FROM hits_top_day WHERE app_id = :appId", params);
+        }
+    }
+
+    @Test
+    void getEventViewsCountsEachEventFromItsOwnStart() {
+        Random random = new Random(23);
+        LocalDateTime origin = LocalDateTime.now().minusDays(3).withNano(0);
+        List<StatsRequestDto> hits = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            hits.add(new StatsRequestDto(i % 2 == 0 ? "main-server" : "ewm-main-service",
+                    "/events/" + (1 + random.nextInt(4)),
+                    "10.3.0." + random.nextInt(60),
+                    origin.plusSeconds(random.nextInt(3 * 24 * 3600))));
+        }
+        statsService.saveAll(hits);
+
+        List<EventViewsRequestDto> windows = List.of(
+                new EventViewsRequestDto(1L, origin),
+                new EventViewsRequestDto(2L, origin.plusHours(20).plusSeconds(13)),
+                new EventViewsRequestDto(3L, origin.plusDays(2)),
+                new EventViewsRequestDto(5L, origin));
+        for (boolean unique : new boolean[]{false, true}) {
+            Map<Long, Long> views = statsService.getEventViews(windows, unique);
+
+            for (EventViewsRequestDto window : windows) {
+                String uri = "/events/" + window.getEventId();
+                long expected = hits.stream()
+                        .filter(hit -> hit.getUri().equals(uri) && !hit.getTimestamp().isBefore(window.getSince()))
+                        .map(hit -> unique ? hit.getIp() : hit)
+                        .distinct()
+                        .count();
+                assertEquals(expected, views.get(window.getEventId()), uri + ", unique " + unique);
+            }
+            assertEquals(windows.size(), views.size());
+        }
+    }
+
+    @Test
+    void getStatsFromHotWindowMatchesDatabase() {
+        LocalDateTime now = LocalDateTime.of(2024, 12, 3, 12, 0, 0, 500_000_000);
+        MutableClock clock = new MutableClock(now.minusHours(30));
+        StatsServiceImpl hotService = new StatsServiceImpl(hitsJdbcRepository, statsRollupRepository,
+                statsSketchRepository, hitsIngestBuffer, hitsDictionary, new HotStatsWindow(true, 24, clock),
+                new StatsQueryCache(false, RollupBucket.MINUTE, 0, Duration.ZERO, null), statsStreamRepository,
+                statsTopRepository, dictionaryRepository, transactionManager, new StatsMetrics(null, List.of()));
+        clock.set(now);
+
+        Random random = new Random(11);
+        List<StatsRequestDto> hits = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            hits.add(new StatsRequestDto("ewm-main-service",
+                    "/events/" + (1 + random.nextInt(3)),
+                    "10.1.0." + random.nextInt(80),
+                    now.minusSeconds(random.nextInt(26 * 3600))));
+        }
+        hotService.saveAll(hits);
+
+        List<LocalDateTime[]> ranges = List.of(
+                new LocalDateTime[]{now.minusHours(2), now},
+                new LocalDateTime[]{now.minusHours(23).plusSeconds(17), now.minusMinutes(3).plusSeconds(41)},
+                new LocalDateTime[]{now.minusHours(26), now},
+                new LocalDateTime[]{now.minusHours(25), now.minusHours(23)});
+        for (LocalDateTime[] range : ranges) {
+            for (boolean unique : new boolean[]{false, true}) {
+                assertEquals(toHitsByUri(statsService.getStats(range[0], range[1], null, unique)),
+                        toHitsByUri(hotService.getStats(range[0], range[1], null, unique)));
+                assertEquals(toHitsByUri(statsService.getStats(range[0], range[1], List.of("/events/2"), unique)),
+                        toHitsByUri(hotService.getStats(range[0], range[1], List.of("/events/2"), unique)));
+            }
+        }
+    }
+
+    @Test
+    void getStatsCachesResultUntilEntryExpires() {
+        AtomicLong nanos = new AtomicLong();
+        LocalDateTime moment = LocalDateTime.of(2024, 12, 4, 10, 0, 10);
+        StatsServiceImpl cachedService = cachedService(nanos, new MutableClock(moment.plusSeconds(10)));
+        StatsRequestDto hit = new StatsRequestDto("application-name", "cache-uri", "192.168.0.10", moment);
+        cachedService.save(hit);
+        LocalDateTime start = moment.minusMinutes(1);
+
+        assertEquals(1, cachedService.getStats(start, moment.plusSeconds(10), List.of("cache-uri"), false)
+                .getFirst().getHits());
+
+        // новые хиты запись не сбрасывают: в пределах текущего бакета end и срока жизни записи отвечает кеш
+        cachedService.save(hit);
+        nanos.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertEquals(1, cachedService.getStats(start, moment.plusSeconds(30), List.of("cache-uri"), false)
+                .getFirst().getHits());
+
+        // запрос с другим бакетом end вычисляется заново
+        assertEquals(2, cachedService.getStats(start, moment.plusMinutes(1), List.of("cache-uri"), false)
+                .getFirst().getHits());
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertEquals(2, cachedService.getStats(start, moment.plusSeconds(30), List.of("cache-uri"), false)
+                .getFirst().getHits());
+    }
+
+    @Test
+    void getStatsCachesPastEndExactly() {
+        LocalDateTime moment = LocalDateTime.of(2024, 12, 4, 10, 0, 10);
+        StatsServiceImpl cachedService = cachedService(new AtomicLong(), new MutableClock(moment.plusDays(1)));
+        cachedService.save(new StatsRequestDto("application-name", "cache-uri", "192.168.0.10", moment));
+        cachedService.save(new StatsRequestDto("application-name", "cache-uri", "192.168.0.10", moment.plusSeconds(20)));
+        LocalDateTime start = moment.minusMinutes(1);
+
+        // оба end в одном бакете, но в прошлом: каждый получает счет за свой период
+        assertEquals(1, cachedService.getStats(start, moment.plusSeconds(10), List.of("cache-uri"), false)
+                .getFirst().getHits());
+        assertEquals(2, cachedService.getStats(start, moment.plusSeconds(30), List.of("cache-uri"), false)
+                .getFirst().getHits());
+        // end на границе бакета тоже входит в ключ как есть
+        assertEquals(2, cachedService.getStats(start, moment.plusSeconds(50), List.of("cache-uri"), false)
+                .getFirst().getHits());
+
+        // повтор того же периода отвечает кеш
+        cachedService.save(new StatsRequestDto("application-name", "cache-uri", "192.168.0.10", moment.plusSeconds(5)));
+        assertEquals(1, cachedService.getStats(start, moment.plusSeconds(10), List.of("cache-uri"), false)
+                .getFirst().getHits());
+    }
+
+    private StatsServiceImpl cachedService(AtomicLong nanos, Clock clock) {
+        return new StatsServiceImpl(hitsJdbcRepository, statsRollupRepository,
+                statsSketchRepository, hitsIngestBuffer, hitsDictionary, new HotStatsWindow(false, 24),
+                new StatsQueryCache(true, RollupBucket.MINUTE, 100, Duration.ofSeconds(10), null, nanos::get, clock),
+                statsStreamRepository, statsTopRepository, dictionaryRepository, transactionManager,
+                new StatsMetrics(null, List.of()));
+    }
+
+    /**
+     * Хиты с распределением uri с длинным хвостом: /events/1 встречается чаще всех, дальше все реже.
+     */
+    private static List<StatsRequestDto> skewedHits(Random random, LocalDateTime origin, int count, int seconds) {
+        List<StatsRequestDto> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int event = (int) Math.floor(Math.pow(2_000, random.nextDouble()));
+            String app = i % 4 == 0 ? "ewm-admin-service" : "ewm-main-service";
+            hits.add(new StatsRequestDto(app, "/events/" + event, "10.2.0." + random.nextInt(250),
+                    origin.plusSeconds(random.nextInt(seconds))));
+        }
+        return hits;
+    }
+
+    private List<StatsResponseDto> stream(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        List<StatsResponseDto> rows = new ArrayList<>();
+        statsService.streamStats(start, end, uris, unique, rows::add);
+        return rows;
+    }
+
+    private static Map<String, Long> toHitsByUri(List<StatsResponseDto> stats) {
+        return stats.stream().collect(Collectors.toMap(StatsResponseDto::getUri, StatsResponseDto::getHits));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(LocalDateTime now) {
+            set(now);
+        }
+
+        void set(LocalDateTime now) {
+            instant = now.atZone(ZoneId.systemDefault()).toInstant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+    private static final double ERROR_BOUND = 3 * HyperLogLog.STANDARD_ERROR;
+
+    @Test
+    void estimateStaysWithinErrorBound() {
+        Random random = new Random(7);
+        for (int cardinality : new int[]{0, 1, 10, 100, 1_000, 10_000, 100_000, 500_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            Set<String> exact = new HashSet<>();
+            while (exact.size() < cardinality) {
+                String ip = randomIp(random);
+                exact.add(ip);
+                sketch.add(ip);
+                // повторные визиты не должны менять оценку
+                sketch.add(ip);
+            }
+
+            long estimate = sketch.estimate();
+
+            assertTrue(Math.abs(estimate - exact.size()) <= Math.max(1, exact.size() * ERROR_BOUND),
+                    "cardinality " + exact.size() + " estimated as " + estimate);
+        }
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        Random random = new Random(11);
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            String ip = randomIp(random);
+            (i % 3 == 0 ? first : second).add(ip);
+            union.add(ip);
+        }
+
+        assertEquals(union, first.merge(second));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add("192.168.0.1");
+        sketch.add("192.168.0.2");
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch, restored);
+        assertEquals(2, restored.estimate());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[10]));
+    }
+
+    private static String randomIp(Random random) {
+        return random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+    private static final int CAPACITY = 100;
+
+    @Test
+    void topContainsHeavyHittersWithBoundedError() {
+        Random random = new Random(3);
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        Map<Integer, Long> exact = new HashMap<>();
+        int total = 200_000;
+        for (int i = 0; i < total; i++) {
+            int item = zipf(random, 10_000);
+            sketch.offer(item, 1);
+            exact.merge(item, 1L, Long::sum);
+        }
+
+        List<SpaceSaving.Entry> top = sketch.top(CAPACITY);
+
+        for (SpaceSaving.Entry entry : top) {
+            long count = exact.getOrDefault(entry.item(), 0L);
+            assertTrue(entry.count() >= count && entry.count() - entry.error() <= count,
+                    "item " + entry.item() + ": exact " + count + ", estimated " + entry);
+            assertTrue(entry.error() <= total / CAPACITY);
+        }
+        exact.forEach((item, count) -> {
+            if (count > total / CAPACITY) {
+                assertTrue(top.stream().anyMatch(entry -> entry.item() == item), "heavy hitter " + item + " missing");
+            }
+        });
+        assertEquals(exactTop(exact, 5), top.stream().limit(5).map(SpaceSaving.Entry::item).toList());
+    }
+
+    @Test
+    void mergeKeepsUpperBounds() {
+        Random random = new Random(13);
+        SpaceSaving first = new SpaceSaving(CAPACITY);
+        SpaceSaving second = new SpaceSaving(CAPACITY);
+        Map<Integer, Long> exact = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int item = zipf(random, 5_000);
+            (i % 2 == 0 ? first : second).offer(item, 1);
+            exact.merge(item, 1L, Long::sum);
+        }
+
+        SpaceSaving merged = first.merge(second);
+
+        assertEquals(CAPACITY, merged.top(Integer.MAX_VALUE).size());
+        merged.top(CAPACITY).forEach(entry ->
+                assertTrue(entry.count() >= exact.getOrDefault(entry.item(), 0L), entry.toString()));
+        assertEquals(exactTop(exact, 5), merged.top(5).stream().map(SpaceSaving.Entry::item).toList());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.offer(1, 5);
+        sketch.offer(2, 3);
+        sketch.offer(3, 1);
+
+        SpaceSaving restored = SpaceSaving.fromBytes(sketch.toBytes());
+
+        assertEquals(2, restored.getCapacity());
+        assertEquals(List.of(new SpaceSaving.Entry(1, 5, 0), new SpaceSaving.Entry(3, 4, 3)), restored.top(2));
+        assertThrows(IllegalArgumentException.class, () -> SpaceSaving.fromBytes(new byte[10]));
+    }
+
+    private static List<Integer> exactTop(Map<Integer, Long> exact, int n) {
+        return exact.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(n)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static int zipf(Random random, int items) {
+        return (int) Math.floor(Math.pow(items, random.nextDouble()));
+    }
+}
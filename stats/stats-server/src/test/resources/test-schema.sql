@@ -1,10 +1,87 @@
+DROP TABLE IF EXISTS applications;
+
+CREATE TABLE IF NOT EXISTS applications (
+     id       INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+     name     VARCHAR(256) NOT NULL,
+     CONSTRAINT pk_applications PRIMARY KEY (id),
+     CONSTRAINT uq_applications_name UNIQUE (name)
+     );
+
+DROP TABLE IF EXISTS uris;
+
+CREATE TABLE IF NOT EXISTS uris (
+     id       INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+     name     VARCHAR(256) NOT NULL,
+     CONSTRAINT pk_uris PRIMARY KEY (id),
+     CONSTRAINT uq_uris_name UNIQUE (name)
+     );
+
 DROP TABLE IF EXISTS hits;
 
  CREATE TABLE IF NOT EXISTS hits  (
-     id       BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-     application      VARCHAR(256) NOT NULL,
-     uri      VARCHAR(256) NOT NULL,
-     ip       VARCHAR(15) NOT NULL,
+     id       BIGINT GENERATED BY DEFAULT AS IDENTITY (CACHE 50) NOT NULL,
      moment TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     ip       BYTEA NOT NULL,
      CONSTRAINT pk_requests PRIMARY KEY (id)
-     );
\ No newline at end of file
+     );
+
+DROP TABLE IF EXISTS hits_minute;
+
+CREATE TABLE IF NOT EXISTS hits_minute (
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     hits     BIGINT NOT NULL,
+     CONSTRAINT pk_hits_minute PRIMARY KEY (app_id, uri_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_minute_bucket ON hits_minute (bucket);
+
+DROP TABLE IF EXISTS hits_hour;
+
+CREATE TABLE IF NOT EXISTS hits_hour (
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     hits     BIGINT NOT NULL,
+     CONSTRAINT pk_hits_hour PRIMARY KEY (app_id, uri_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_hour_bucket ON hits_hour (bucket);
+
+DROP TABLE IF EXISTS hits_hll_hour;
+
+CREATE TABLE IF NOT EXISTS hits_hll_hour (
+     app_id   INTEGER NOT NULL,
+     uri_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     sketch   BYTEA NOT NULL,
+     CONSTRAINT pk_hits_hll_hour PRIMARY KEY (app_id, uri_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_hll_hour_bucket ON hits_hll_hour (bucket);
+
+DROP TABLE IF EXISTS hits_top_hour;
+
+CREATE TABLE IF NOT EXISTS hits_top_hour (
+     app_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     sketch   BYTEA NOT NULL,
+     CONSTRAINT pk_hits_top_hour PRIMARY KEY (app_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_top_hour_bucket ON hits_top_hour (bucket);
+
+DROP TABLE IF EXISTS hits_top_day;
+
+-- суточные скетчи частых uri; sketch NULL только внутри транзакции, создавшей строку (см. StatsTopRepository)
+CREATE TABLE IF NOT EXISTS hits_top_day (
+     app_id   INTEGER NOT NULL,
+     bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+     sketch   BYTEA,
+     CONSTRAINT pk_hits_top_day PRIMARY KEY (app_id, bucket)
+     );
+
+CREATE INDEX IF NOT EXISTS ix_hits_top_day_bucket ON hits_top_day (bucket);